@@ -0,0 +1,88 @@
+package com.team254.benchmarks;
+
+import com.team254.frc2017.Kinematics;
+import com.team254.lib.util.CheesyDriveHelper;
+import com.team254.lib.util.DriveSignal;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-loop drive math: odometry integration as done by RobotStateEstimator every 5 ms, and CheesyDriveHelper as
+ * called from teleopPeriodic. Inputs are replayed from precomputed tables so random number generation isn't measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriveKinematicsBenchmark {
+    private static final int kNumInputs = 1024;
+
+    private double[] mLeftDeltas;
+    private double[] mRightDeltas;
+    private Rotation2d[] mHeadings;
+    private double[] mThrottles;
+    private double[] mWheels;
+    private boolean[] mQuickTurns;
+    private int mIndex = 0;
+
+    private RigidTransform2d mPose;
+    private CheesyDriveHelper mCheesyDriveHelper;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(254);
+        mLeftDeltas = new double[kNumInputs];
+        mRightDeltas = new double[kNumInputs];
+        mHeadings = new Rotation2d[kNumInputs];
+        mThrottles = new double[kNumInputs];
+        mWheels = new double[kNumInputs];
+        mQuickTurns = new boolean[kNumInputs];
+        double heading = 0.0;
+        for (int i = 0; i < kNumInputs; ++i) {
+            // Up to ~10 ft/s of wheel travel over one 5 ms loop.
+            mLeftDeltas[i] = 0.6 * random.nextDouble();
+            mRightDeltas[i] = 0.6 * random.nextDouble();
+            heading += 0.01 * random.nextGaussian();
+            mHeadings[i] = Rotation2d.fromRadians(heading);
+            mThrottles[i] = 2.0 * random.nextDouble() - 1.0;
+            mWheels[i] = 2.0 * random.nextDouble() - 1.0;
+            mQuickTurns[i] = random.nextInt(8) == 0;
+        }
+        mPose = new RigidTransform2d();
+        mCheesyDriveHelper = new CheesyDriveHelper();
+    }
+
+    private int nextIndex() {
+        mIndex = (mIndex + 1) % kNumInputs;
+        return mIndex;
+    }
+
+    @Benchmark
+    public RigidTransform2d integrateForwardKinematics() {
+        final int i = nextIndex();
+        mPose = Kinematics.integrateForwardKinematics(mPose, mLeftDeltas[i], mRightDeltas[i], mHeadings[i]);
+        return mPose;
+    }
+
+    @Benchmark
+    public DriveSignal cheesyDrive() {
+        final int i = nextIndex();
+        return mCheesyDriveHelper.cheesyDrive(mThrottles[i], mWheels[i], mQuickTurns[i]);
+    }
+}
@@ -0,0 +1,78 @@
+package com.team254.benchmarks;
+
+import com.team254.lib.util.InterpolatingDouble;
+import com.team254.lib.util.InterpolatingPoseBuffer;
+import com.team254.lib.util.InterpolatingTreeMap;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Translation2d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up interpolated poses from two seconds of 200 Hz pose history, the way RobotState.getFieldToVehicle does, in
+ * the InterpolatingTreeMap RobotState used to keep and in the InterpolatingPoseBuffer it keeps now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpolationBenchmark {
+    private static final int kNumSamples = 400;
+    private static final double kDt = 0.005;
+    private static final int kNumQueries = 256;
+
+    private InterpolatingTreeMap<InterpolatingDouble, RigidTransform2d> mTreeMap;
+    private InterpolatingPoseBuffer mPoseBuffer;
+    private double[] mQueryTimes;
+    private InterpolatingDouble[] mQueryKeys;
+    private int mQueryIndex = 0;
+
+    @Setup
+    public void setup() {
+        mTreeMap = new InterpolatingTreeMap<>(kNumSamples);
+        mPoseBuffer = new InterpolatingPoseBuffer(kNumSamples);
+        for (int i = 0; i < kNumSamples; ++i) {
+            final double t = i * kDt;
+            RigidTransform2d pose = new RigidTransform2d(new Translation2d(100.0 * t, 20.0 * Math.sin(t)),
+                    Rotation2d.fromRadians(0.5 * t));
+            mTreeMap.put(new InterpolatingDouble(t), pose);
+            mPoseBuffer.put(t, pose);
+        }
+        // Vision lookups ask for poses somewhere in the last few hundred milliseconds.
+        mQueryTimes = new double[kNumQueries];
+        mQueryKeys = new InterpolatingDouble[kNumQueries];
+        for (int i = 0; i < kNumQueries; ++i) {
+            mQueryTimes[i] = (kNumSamples - 1) * kDt - 0.3 * i / kNumQueries - 0.0013;
+            mQueryKeys[i] = new InterpolatingDouble(mQueryTimes[i]);
+        }
+    }
+
+    private int nextQuery() {
+        mQueryIndex = (mQueryIndex + 1) % kNumQueries;
+        return mQueryIndex;
+    }
+
+    @Benchmark
+    public RigidTransform2d treeMap() {
+        return mTreeMap.getInterpolated(mQueryKeys[nextQuery()]);
+    }
+
+    @Benchmark
+    public RigidTransform2d poseBuffer() {
+        return mPoseBuffer.getInterpolated(mQueryTimes[nextQuery()]);
+    }
+}
@@ -0,0 +1,71 @@
+package com.team254.benchmarks;
+
+import com.team254.frc2017.Constants;
+import com.team254.lib.util.motion.MotionProfile;
+import com.team254.lib.util.motion.MotionProfileConstraints;
+import com.team254.lib.util.motion.MotionProfileGenerator;
+import com.team254.lib.util.motion.MotionProfileGoal;
+import com.team254.lib.util.motion.MotionProfileGoal.CompletionBehavior;
+import com.team254.lib.util.motion.MotionState;
+import com.team254.lib.util.motion.SetpointGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures motion profile generation with the path following constraints.
+ *
+ * generateProfile builds a profile for a path-segment-sized move starting from a moving state, like PathSegment does for
+ * every segment when a path is built and ProfileFollower does whenever its goal changes. getSetpoint steps a
+ * SetpointGenerator along an unchanging goal one loop period at a time, which is the steady state case where the
+ * profile is not regenerated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotionProfileBenchmark {
+    private static final double kMoveDistance = 80.0;
+
+    private MotionProfileConstraints mConstraints;
+    private MotionProfileGoal mGoal;
+    private MotionState mStartState;
+
+    private SetpointGenerator mSetpointGenerator;
+    private MotionState mSetpointState;
+
+    @Setup
+    public void setup() {
+        mConstraints = new MotionProfileConstraints(Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel);
+        mGoal = new MotionProfileGoal(kMoveDistance, 0.0, CompletionBehavior.OVERSHOOT,
+                Constants.kPathFollowingGoalPosTolerance, Constants.kPathFollowingGoalVelTolerance);
+        mStartState = new MotionState(0.0, 0.0, 40.0, 0.0);
+        mSetpointGenerator = new SetpointGenerator();
+        mSetpointState = mStartState;
+    }
+
+    @Benchmark
+    public MotionProfile generateProfile() {
+        return MotionProfileGenerator.generateProfile(mConstraints, mGoal, mStartState);
+    }
+
+    @Benchmark
+    public SetpointGenerator.Setpoint getSetpoint() {
+        SetpointGenerator.Setpoint setpoint = mSetpointGenerator.getSetpoint(mConstraints, mGoal, mSetpointState,
+                mSetpointState.t() + Constants.kLooperDt);
+        mSetpointState = setpoint.final_setpoint ? mStartState : setpoint.motion_state;
+        return setpoint;
+    }
+}
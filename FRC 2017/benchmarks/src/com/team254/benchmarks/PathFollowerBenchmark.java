@@ -0,0 +1,86 @@
+package com.team254.benchmarks;
+
+import com.team254.frc2017.Constants;
+import com.team254.frc2017.paths.PathBuilder;
+import com.team254.frc2017.paths.profiles.PathAdapter;
+import com.team254.lib.util.control.Lookahead;
+import com.team254.lib.util.control.Path;
+import com.team254.lib.util.control.PathFollower;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Translation2d;
+import com.team254.lib.util.math.Twist2d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one PathFollower.update, the bulk of the drive loop's work in auto, while a simulated robot drives the red
+ * hopper path from PathAdapter. The simulated robot follows each command perfectly. When the path is finished, the
+ * follower restarts on a copy of the path, which costs a few small allocations once every few hundred updates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathFollowerBenchmark {
+    private Path mTemplatePath;
+    private RigidTransform2d mStartPose;
+    private PathFollower.Parameters mParameters;
+
+    private PathFollower mFollower;
+    private RigidTransform2d mPose;
+    private double mTime;
+    private double mDisplacement;
+    private double mVelocity;
+
+    @Setup
+    public void setup() {
+        mTemplatePath = PathBuilder.buildPathFromWaypoints(PathAdapter.getRedHopperWaypoints());
+        Translation2d start = PathAdapter.getRedGearPosition();
+        mStartPose = new RigidTransform2d(start,
+                new Translation2d(start, PathAdapter.getRedGearTurnPosition()).direction());
+        mParameters = new PathFollower.Parameters(
+                new Lookahead(Constants.kMinLookAhead, Constants.kMaxLookAhead, Constants.kMinLookAheadSpeed,
+                        Constants.kMaxLookAheadSpeed),
+                Constants.kInertiaSteeringGain, Constants.kPathFollowingProfileKp, Constants.kPathFollowingProfileKi,
+                Constants.kPathFollowingProfileKv, Constants.kPathFollowingProfileKffv,
+                Constants.kPathFollowingProfileKffa, Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
+                Constants.kPathFollowingGoalPosTolerance, Constants.kPathFollowingGoalVelTolerance,
+                Constants.kPathStopSteeringDistance);
+        restart();
+    }
+
+    private void restart() {
+        mFollower = new PathFollower(new Path(mTemplatePath), false, mParameters);
+        mPose = mStartPose;
+        mTime = 0.0;
+        mDisplacement = 0.0;
+        mVelocity = 0.0;
+    }
+
+    @Benchmark
+    public Twist2d update() {
+        if (mFollower.isFinished()) {
+            restart();
+        }
+        final Twist2d command = mFollower.update(mTime, mPose, mDisplacement, mVelocity);
+        final double dt = Constants.kLooperDt;
+        mPose = mPose.transformBy(RigidTransform2d.exp(command.scaled(dt)));
+        mDisplacement += command.dx * dt;
+        mVelocity = command.dx;
+        mTime += dt;
+        return command;
+    }
+}
@@ -0,0 +1,96 @@
+package com.team254.benchmarks;
+
+import com.team254.frc2017.Constants;
+import com.team254.frc2017.paths.PathBuilder;
+import com.team254.frc2017.paths.profiles.PathAdapter;
+import com.team254.lib.util.control.AdaptivePurePursuitController;
+import com.team254.lib.util.control.Lookahead;
+import com.team254.lib.util.control.Path;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Translation2d;
+import com.team254.lib.util.math.Twist2d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares AdaptivePurePursuitController.update, which does its arc math with PoseMath, against the same calculation
+ * done with the immutable RigidTransform2d API the way update used to. Run with "-prof gc" to see the allocation rate.
+ *
+ * The path is the red hopper path from PathAdapter. The robot is kept near the start of the first segment so the path
+ * never advances during the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PurePursuitBenchmark {
+    private static final int kNumPoses = 64;
+
+    private Lookahead mLookahead;
+    private Path mPath;
+    private AdaptivePurePursuitController mController;
+    private RigidTransform2d[] mPoses;
+    private int mPoseIndex = 0;
+
+    @Setup
+    public void setup() {
+        mPath = PathBuilder.buildPathFromWaypoints(PathAdapter.getRedHopperWaypoints());
+        mLookahead = new Lookahead(Constants.kMinLookAhead, Constants.kMaxLookAhead, Constants.kMinLookAheadSpeed,
+                Constants.kMaxLookAheadSpeed);
+        mController = new AdaptivePurePursuitController(mPath, false, mLookahead);
+
+        // Poses within an inch of the start, up to two inches off the path and ten degrees off its heading.
+        final Translation2d start = PathAdapter.getRedGearPosition();
+        final Rotation2d heading = new Translation2d(start, PathAdapter.getRedGearTurnPosition()).direction();
+        mPoses = new RigidTransform2d[kNumPoses];
+        for (int i = 0; i < kNumPoses; ++i) {
+            RigidTransform2d offset = new RigidTransform2d(
+                    new Translation2d((double) i / kNumPoses, 2.0 * Math.sin(i)),
+                    Rotation2d.fromDegrees(10.0 * Math.cos(i)));
+            mPoses[i] = new RigidTransform2d(start, heading).transformBy(offset);
+        }
+    }
+
+    private RigidTransform2d nextPose() {
+        mPoseIndex = (mPoseIndex + 1) % kNumPoses;
+        return mPoses[mPoseIndex];
+    }
+
+    @Benchmark
+    public AdaptivePurePursuitController.Command kernelUpdate() {
+        return mController.update(nextPose());
+    }
+
+    @Benchmark
+    public AdaptivePurePursuitController.Command legacyUpdate() {
+        final RigidTransform2d pose = nextPose();
+        final Path.TargetPointReport report = mPath.getTargetPoint(pose.getTranslation(), mLookahead);
+        final AdaptivePurePursuitController.Arc arc = new AdaptivePurePursuitController.Arc(pose,
+                report.lookahead_point);
+        double scale_factor = 1.0;
+        if (report.lookahead_point_speed < 1E-6 && report.remaining_path_distance < arc.length) {
+            scale_factor = Math.max(0.0, report.remaining_path_distance / arc.length);
+        }
+        return new AdaptivePurePursuitController.Command(
+                new Twist2d(scale_factor * arc.length, 0.0,
+                        arc.length * AdaptivePurePursuitController.getDirection(pose, report.lookahead_point)
+                                * Math.abs(scale_factor) / arc.radius),
+                report.closest_point_distance, report.max_speed,
+                report.lookahead_point_speed * Math.signum(scale_factor), report.lookahead_point,
+                report.remaining_path_distance);
+    }
+}
@@ -0,0 +1,102 @@
+package com.team254.benchmarks;
+
+import com.team254.frc2017.RobotState;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Twist2d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reader and writer throughput on RobotState with one estimator thread writing observations while three
+ * threads read the latest state.
+ *
+ * The "snapshot" group reads through the published snapshot. The "locked" group takes the RobotState monitor around
+ * each read, which is what the synchronized accessors did before snapshots were added, so comparing the two groups
+ * shows the before and after.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotStateContentionBenchmark {
+    private static final double kDt = 0.005;
+
+    private RobotState mRobotState;
+    private Twist2d mMeasuredVelocity;
+    private Twist2d mPredictedVelocity;
+    private Rotation2d mGyroAngle;
+    private double mTimestamp;
+
+    @Setup
+    public void setup() {
+        mRobotState = RobotState.getInstance();
+        mRobotState.reset(0, new RigidTransform2d());
+        mMeasuredVelocity = new Twist2d(0.5, 0, 0.001);
+        mPredictedVelocity = new Twist2d(100.0, 0, 0.2);
+        mGyroAngle = Rotation2d.fromDegrees(1.0);
+        mTimestamp = 0;
+    }
+
+    private void writeObservation() {
+        mTimestamp += kDt;
+        mRobotState.generateOdometryFromSensors(0.5, 0.5, mGyroAngle);
+        mRobotState.addObservations(mTimestamp, mMeasuredVelocity, mPredictedVelocity);
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public void snapshotWriter() {
+        writeObservation();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(3)
+    public void snapshotReader(Blackhole bh) {
+        RobotState.Snapshot snapshot = mRobotState.getSnapshot();
+        bh.consume(snapshot.field_to_vehicle);
+        bh.consume(snapshot.distance_driven);
+        bh.consume(snapshot.predicted_velocity);
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedWriter() {
+        writeObservation();
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(3)
+    public void lockedReader(Blackhole bh) {
+        // Drive used to make three synchronized calls per update: pose, distance driven and predicted velocity.
+        synchronized (mRobotState) {
+            bh.consume(mRobotState.getSnapshot().field_to_vehicle);
+        }
+        synchronized (mRobotState) {
+            bh.consume(mRobotState.getSnapshot().distance_driven);
+        }
+        synchronized (mRobotState) {
+            bh.consume(mRobotState.getSnapshot().predicted_velocity);
+        }
+    }
+}
@@ -17,7 +17,20 @@ import java.util.HashMap;
  * determined through calibrations.
  */
 public class Constants extends ConstantsBase {
+    private static Constants mInstance = new Constants();
+
+    /**
+     * The instance used to set constants by name (from the constants file or a live editor) and to subscribe to
+     * changes. The constants themselves are read directly as static fields.
+     */
+    public static Constants getInstance() {
+        return mInstance;
+    }
+
     public static double kLooperDt = 0.005;
+    public static double kSuperstructureLooperDt = 0.02;
+    public static double kDashboardPublishPeriod = 0.1;
+    public static double kWebTelemetryPublishPeriod = 0.02;
 
     
     /* ROBOT PHYSICAL CONSTANTS */
@@ -33,6 +46,19 @@ public class Constants extends ConstantsBase {
     public static double kCenterToRearBumperDistance = 16.99;
     public static double kCenterToSideBumperDistance = 17.225;
 
+    // Pose of the camera frame w.r.t. the robot frame
+    public static double kCameraXOffset = -3.3211;
+    public static double kCameraYOffset = 0.0;
+    public static double kCameraZOffset = 20.9;
+    public static double kCameraPitchAngleDegrees = 29.56; // Measured on 4/26
+    public static double kCameraYawAngleDegrees = 0.0;
+    public static double kCameraDeadband = 0.0;
+    public static double kCameraFrameRate = 30.0;
+
+    // Boiler
+    public static double kBoilerTargetTopHeight = 88.0;
+    public static double kBoilerRadius = 7.5;
+
     
     
     /* CONTROL LOOP GAINS */
@@ -151,8 +177,10 @@ public class Constants extends ConstantsBase {
                                                      // our speed
                                                      // in inches per sec
     public static double kSegmentCompletionTolerance = 0.1; // inches
+    public static double kPathSegmentSearchDistance = 48.0; // inches past the current segment to look for a closer one
     public static double kPathFollowingMaxAccel = 120.0; // inches per second^2
     public static double kPathFollowingMaxVel = 120.0; // inches per second
+    public static double kPathFollowingMaxCentripetalAccel = 100.0; // inches per second^2, used by SplinePathBuilder
     public static double kPathFollowingProfileKp = 5.00;
     public static double kPathFollowingProfileKi = 0.03;
     public static double kPathFollowingProfileKv = 0.02;
@@ -162,6 +190,22 @@ public class Constants extends ConstantsBase {
     public static double kPathFollowingGoalVelTolerance = 12.0;
     public static double kPathStopSteeringDistance = 9.0;
 
+    // Goal tracker constants
+    public static double kMaxGoalTrackAge = 1.0; // seconds without seeing a goal before its track is dropped
+    public static double kMaxTrackerDistance = 18.0; // inches an observation can be from a track and still join it
+    public static double kAutoAimPredictionTime = 0.25; // seconds ahead to predict the robot pose when aiming
+    public static double kTrackReportComparatorStablityWeight = 1.0;
+    public static double kTrackReportComparatorAgeWeight = 1.0;
+    public static double kTrackReportComparatorSwitchingWeight = 3.0;
+
+    // Shooter RPM lookup
+    public static double kShooterRpmTableResolution = 0.5; // inches between entries of the compiled RPM table
+    public static boolean kShooterUseOnlineFit = false; // refit the RPM curve from shots logged during practice
+    public static int kShooterOnlineFitDegree = 2;
+    public static double kShooterOnlineFitForgettingFactor = 0.98;
+    public static int kShooterOnlineFitMinShots = 8; // shots before the online fit replaces the calibration
+    public static double kShooterOnlineFitMinR2 = 0.9;
+
    
    
     
@@ -0,0 +1,51 @@
+package com.team254.frc2017;
+
+import com.team254.lib.util.control.Lookahead;
+import com.team254.lib.util.control.PathFollower;
+import com.team254.lib.util.math.Twist2d;
+
+/**
+ * The parts of Drive's path following that don't touch hardware: the follower gains, turning the follower's command
+ * into wheel velocities, and limiting those to what the drive can do. Drive and the simulator both call these, so a
+ * simulated path is driven by the same math as a real one.
+ */
+public class DriveController {
+    private static final Kinematics.DriveVelocity kStopped = new Kinematics.DriveVelocity(0, 0);
+
+    public static PathFollower.Parameters getPathFollowerParameters() {
+        return new PathFollower.Parameters(
+                new Lookahead(Constants.kMinLookAhead, Constants.kMaxLookAhead, Constants.kMinLookAheadSpeed,
+                        Constants.kMaxLookAheadSpeed),
+                Constants.kInertiaSteeringGain, Constants.kPathFollowingProfileKp, Constants.kPathFollowingProfileKi,
+                Constants.kPathFollowingProfileKv, Constants.kPathFollowingProfileKffv,
+                Constants.kPathFollowingProfileKffa, Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
+                Constants.kPathFollowingGoalPosTolerance, Constants.kPathFollowingGoalVelTolerance,
+                Constants.kPathStopSteeringDistance);
+    }
+
+    /**
+     * Scales both sides down by the same factor if either is faster than kDriveHighGearMaxSetpoint, so the robot keeps
+     * the curvature it was asked for instead of one side saturating.
+     */
+    public static Kinematics.DriveVelocity limitVelocity(double left_inches_per_sec, double right_inches_per_sec) {
+        final double max_desired = Math.max(Math.abs(left_inches_per_sec), Math.abs(right_inches_per_sec));
+        final double scale = max_desired > Constants.kDriveHighGearMaxSetpoint
+                ? Constants.kDriveHighGearMaxSetpoint / max_desired : 1.0;
+        return new Kinematics.DriveVelocity(left_inches_per_sec * scale, right_inches_per_sec * scale);
+    }
+
+    /**
+     * Updates the path follower with the robot's latest state and returns the wheel velocities to drive at, already
+     * limited. Uses one snapshot so the pose, distance and velocity all come from the same estimator update.
+     */
+    public static Kinematics.DriveVelocity updatePathFollower(PathFollower path_follower, double timestamp,
+            RobotState.Snapshot state) {
+        Twist2d command = path_follower.update(timestamp, state.field_to_vehicle, state.distance_driven,
+                state.predicted_velocity.dx);
+        if (path_follower.isFinished()) {
+            return kStopped;
+        }
+        Kinematics.DriveVelocity setpoint = Kinematics.inverseKinematics(command);
+        return limitVelocity(setpoint.left, setpoint.right);
+    }
+}
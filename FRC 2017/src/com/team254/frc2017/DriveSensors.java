@@ -0,0 +1,19 @@
+package com.team254.frc2017;
+
+import com.team254.lib.util.math.Rotation2d;
+
+/**
+ * The drive sensors RobotStateEstimator reads. Drive implements this with the real encoders and NavX, and the
+ * simulator's DifferentialDrivePlant with modeled ones, so both run the same estimator.
+ */
+public interface DriveSensors {
+    double getLeftDistanceInches();
+
+    double getRightDistanceInches();
+
+    double getLeftVelocityInchesPerSec();
+
+    double getRightVelocityInchesPerSec();
+
+    Rotation2d getGyroAngle();
+}
@@ -5,11 +5,14 @@ import edu.wpi.first.wpilibj.IterativeRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
+import com.team254.frc2017.auto.AutoActionRunner;
 import com.team254.frc2017.auto.AutoModeExecuter;
 import com.team254.frc2017.loops.Looper;
 import com.team254.frc2017.loops.RobotStateEstimator;
 import com.team254.frc2017.paths.profiles.PathAdapter;
 import com.team254.frc2017.subsystems.*;
+import com.team254.frc2017.vision.VisionProcessor;
+import com.team254.frc2017.web.WebServer;
 import com.team254.lib.util.*;
 import com.team254.lib.util.math.RigidTransform2d;
 
@@ -75,6 +78,18 @@ public class Robot extends IterativeRobot {
 
             mSubsystemManager.registerEnabledLoops(mEnabledLooper);
             mEnabledLooper.register(RobotStateEstimator.getInstance());
+            mEnabledLooper.register(VisionProcessor.getInstance());
+            mEnabledLooper.register(AutoActionRunner.getInstance());
+
+            TelemetryRegistry.getInstance().addSink(new TelemetryRegistry.SmartDashboardSink(),
+                    Constants.kDashboardPublishPeriod);
+            WebServer.startServer();
+
+            // Values tuned on the robot override the defaults. They are reloaded every time the robot is disabled.
+            Constants.getInstance().addListener(changed_keys -> mSuperstructure.reloadConstants());
+            // Change constants between loop ticks, so a loop never runs with half of a new set of gains.
+            Constants.getInstance().addUpdateBarrier(mEnabledLooper::runPaused);
+            Constants.getInstance().loadFromFile();
 
             
             AutoModeSelector.initAutoModeSelector();
@@ -213,6 +228,7 @@ public class Robot extends IterativeRobot {
 
             mDrive.setOpenLoop(DriveSignal.NEUTRAL);
 
+            Constants.getInstance().loadFromFile();
             PathAdapter.calculatePaths();
 
             // If are tuning, dump map so far.
@@ -254,10 +270,10 @@ public class Robot extends IterativeRobot {
      * Helper function that is called in all periodic functions
      */
     public void allPeriodic() {
-        mRobotState.outputToSmartDashboard();
         mSubsystemManager.outputToSmartDashboard();
         mSubsystemManager.writeToLog();
         mEnabledLooper.outputToSmartDashboard();
+        StateMachine.printAllNewTransitions();
        
         ConnectionMonitor.getInstance().setLastPacketTime(Timer.getFPGATimestamp());
     }
@@ -2,15 +2,18 @@ package com.team254.frc2017;
 
 
 
+import com.team254.frc2017.vision.GoalTracker;
+import com.team254.frc2017.vision.GoalTracker.TrackReport;
+import com.team254.frc2017.vision.TargetInfo;
 import com.team254.lib.util.*;
 import com.team254.lib.util.math.RigidTransform2d;
 import com.team254.lib.util.math.Rotation2d;
 import com.team254.lib.util.math.Translation2d;
 import com.team254.lib.util.math.Twist2d;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -39,6 +42,10 @@ import java.util.Optional;
  * 2. Vehicle-to-camera: This is a constant.
  *
  * 3. Camera-to-goal: This is a pure translation, and is measured by the vision system.
+ *
+ * The camera pipeline takes tens of milliseconds, so by the time a vision update arrives the robot has moved. Each
+ * update is placed on the field using the field-to-vehicle pose from when the frame was captured, and goals are
+ * tracked in field coordinates by a GoalTracker.
  */
 
 public class RobotState {
@@ -48,34 +55,97 @@ public class RobotState {
         return instance_;
     }
 
-    private static final int kObservationBufferSize = 100;
+    private static final int kObservationBufferSize = 400; // 2 seconds of history at 200 Hz
+
+    private static final RigidTransform2d kVehicleToCamera = new RigidTransform2d(
+            new Translation2d(Constants.kCameraXOffset, Constants.kCameraYOffset), new Rotation2d());
+
+    /**
+     * An immutable view of the latest robot state. A new snapshot is published after every observation, so readers can
+     * grab a consistent pose, velocity and distance without taking the RobotState lock.
+     */
+    public static class Snapshot {
+        public final double timestamp;
+        public final RigidTransform2d field_to_vehicle;
+        public final Twist2d predicted_velocity;
+        public final Twist2d measured_velocity;
+        public final double distance_driven;
+
+        public Snapshot(double timestamp, RigidTransform2d field_to_vehicle, Twist2d predicted_velocity,
+                Twist2d measured_velocity, double distance_driven) {
+            this.timestamp = timestamp;
+            this.field_to_vehicle = field_to_vehicle;
+            this.predicted_velocity = predicted_velocity;
+            this.measured_velocity = measured_velocity;
+            this.distance_driven = distance_driven;
+        }
+    }
 
-  
-    // FPGATimestamp -> RigidTransform2d or Rotation2d
-    private InterpolatingTreeMap<InterpolatingDouble, RigidTransform2d> field_to_vehicle_;
+    // FPGATimestamp -> RigidTransform2d
+    private final InterpolatingPoseBuffer field_to_vehicle_ = new InterpolatingPoseBuffer(kObservationBufferSize);
     private Twist2d vehicle_velocity_predicted_;
     private Twist2d vehicle_velocity_measured_;
     private double distance_driven_;
-  
-   
+    private GoalTracker goal_tracker_;
+    private Rotation2d camera_pitch_correction_;
+    private Rotation2d camera_yaw_correction_;
+    private double differential_height_;
+    private ShooterAimingParameters cached_shooter_aiming_params_ = null;
+
+    // Written only while holding the RobotState lock, read without it.
+    private volatile Snapshot snapshot_;
+
+    private final TelemetryRegistry telemetry_ = TelemetryRegistry.getInstance();
+    private final int pose_x_channel_ = telemetry_.registerNumber("robot_pose_x");
+    private final int pose_y_channel_ = telemetry_.registerNumber("robot_pose_y");
+    private final int pose_theta_channel_ = telemetry_.registerNumber("robot_pose_theta");
+    private final int velocity_channel_ = telemetry_.registerNumber("robot velocity");
 
-    private RobotState() {
+    /**
+     * Creates a RobotState separate from the robot's. Robot code should use getInstance(); this is for simulations,
+     * which each need their own.
+     */
+    public RobotState() {
         reset(0, new RigidTransform2d());
     }
 
+    private void publishSnapshot() {
+        final Snapshot snapshot = new Snapshot(field_to_vehicle_.lastTimestamp(), field_to_vehicle_.lastValue(),
+                vehicle_velocity_predicted_, vehicle_velocity_measured_, distance_driven_);
+        snapshot_ = snapshot;
+        telemetry_.set(pose_x_channel_, snapshot.field_to_vehicle.getTranslation().x());
+        telemetry_.set(pose_y_channel_, snapshot.field_to_vehicle.getTranslation().y());
+        telemetry_.set(pose_theta_channel_, snapshot.field_to_vehicle.getRotation().getDegrees());
+        telemetry_.set(velocity_channel_, snapshot.measured_velocity.dx);
+    }
+
     /**
      * Resets the field to robot transform (robot's position on the field)
      */
     public synchronized void reset(double start_time, RigidTransform2d initial_field_to_vehicle) {
-        field_to_vehicle_ = new InterpolatingTreeMap<>(kObservationBufferSize);
-        field_to_vehicle_.put(new InterpolatingDouble(start_time), initial_field_to_vehicle);
+        field_to_vehicle_.clear();
+        field_to_vehicle_.put(start_time, initial_field_to_vehicle);
         vehicle_velocity_predicted_ = Twist2d.identity();
-        vehicle_velocity_measured_ = Twist2d.identity();             
+        vehicle_velocity_measured_ = Twist2d.identity();
         distance_driven_ = 0.0;
+        goal_tracker_ = new GoalTracker();
+        camera_pitch_correction_ = Rotation2d.fromDegrees(-Constants.kCameraPitchAngleDegrees);
+        camera_yaw_correction_ = Rotation2d.fromDegrees(-Constants.kCameraYawAngleDegrees);
+        differential_height_ = Constants.kBoilerTargetTopHeight - Constants.kCameraZOffset;
+        cached_shooter_aiming_params_ = null;
+        publishSnapshot();
     }
 
     public synchronized void resetDistanceDriven() {
         distance_driven_ = 0.0;
+        publishSnapshot();
+    }
+
+    /**
+     * @return The most recently published state. Never blocks.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot_;
     }
 
     /**
@@ -83,62 +153,139 @@ public class RobotState {
      * to fill in the gaps.
      */
     public synchronized RigidTransform2d getFieldToVehicle(double timestamp) {
-        return field_to_vehicle_.getInterpolated(new InterpolatingDouble(timestamp));
+        return field_to_vehicle_.getInterpolated(timestamp);
     }
 
-    public synchronized Map.Entry<InterpolatingDouble, RigidTransform2d> getLatestFieldToVehicle() {
-        return field_to_vehicle_.lastEntry();
+    public Map.Entry<InterpolatingDouble, RigidTransform2d> getLatestFieldToVehicle() {
+        final Snapshot snapshot = snapshot_;
+        return new AbstractMap.SimpleImmutableEntry<>(new InterpolatingDouble(snapshot.timestamp),
+                snapshot.field_to_vehicle);
     }
 
-    public synchronized RigidTransform2d getPredictedFieldToVehicle(double lookahead_time) {
-        return getLatestFieldToVehicle().getValue()
-                .transformBy(RigidTransform2d.exp(vehicle_velocity_predicted_.scaled(lookahead_time)));
+    public RigidTransform2d getPredictedFieldToVehicle(double lookahead_time) {
+        final Snapshot snapshot = snapshot_;
+        return snapshot.field_to_vehicle
+                .transformBy(RigidTransform2d.exp(snapshot.predicted_velocity.scaled(lookahead_time)));
     }
 
-
-
     public synchronized void addFieldToVehicleObservation(double timestamp, RigidTransform2d observation) {
-        field_to_vehicle_.put(new InterpolatingDouble(timestamp), observation);
+        field_to_vehicle_.put(timestamp, observation);
+        publishSnapshot();
     }
 
     public synchronized void addObservations(double timestamp, Twist2d measured_velocity,
             Twist2d predicted_velocity) {
-        addFieldToVehicleObservation(timestamp,
-                Kinematics.integrateForwardKinematics(getLatestFieldToVehicle().getValue(), measured_velocity));
+        field_to_vehicle_.put(timestamp,
+                Kinematics.integrateForwardKinematics(field_to_vehicle_.lastValue(), measured_velocity));
         vehicle_velocity_measured_ = measured_velocity;
         vehicle_velocity_predicted_ = predicted_velocity;
+        publishSnapshot();
     }
 
-
-
-
+    /**
+     * Integrates encoder and gyro deltas into the distance driven. The new distance is published with the next call to
+     * addObservations.
+     */
     public synchronized Twist2d generateOdometryFromSensors(double left_encoder_delta_distance,
             double right_encoder_delta_distance, Rotation2d current_gyro_angle) {
-        final RigidTransform2d last_measurement = getLatestFieldToVehicle().getValue();
+        final RigidTransform2d last_measurement = field_to_vehicle_.lastValue();
         final Twist2d delta = Kinematics.forwardKinematics(last_measurement.getRotation(),
                 left_encoder_delta_distance, right_encoder_delta_distance, current_gyro_angle);
         distance_driven_ += delta.dx;
         return delta;
     }
 
-    public synchronized double getDistanceDriven() {
-        return distance_driven_;
+    public RigidTransform2d getFieldToCamera(double timestamp) {
+        return getFieldToVehicle(timestamp).transformBy(kVehicleToCamera);
+    }
+
+    /**
+     * Adds the targets from one camera frame. The targets are placed on the field using where the robot was when the
+     * frame was captured (not where it is now), then handed to the goal tracker.
+     *
+     * @param timestamp
+     *            When the frame was captured (see VisionUpdate.getCapturedAtTimestamp())
+     * @param vision_update
+     *            The targets seen in the frame. An empty list still ages the goal tracks.
+     */
+    public void addVisionUpdate(double timestamp, List<TargetInfo> vision_update) {
+        List<Translation2d> field_to_goals = new ArrayList<>();
+        RigidTransform2d field_to_camera = getFieldToCamera(timestamp);
+        if (!(vision_update == null || vision_update.isEmpty())) {
+            for (TargetInfo target : vision_update) {
+                double ydeadband = (target.getY() > -Constants.kCameraDeadband
+                        && target.getY() < Constants.kCameraDeadband) ? 0.0 : target.getY();
+
+                // Compensate for camera yaw
+                double xyaw = target.getX() * camera_yaw_correction_.cos() + ydeadband * camera_yaw_correction_.sin();
+                double yyaw = ydeadband * camera_yaw_correction_.cos() - target.getX() * camera_yaw_correction_.sin();
+                double zyaw = target.getZ();
+
+                // Compensate for camera pitch
+                double xr = zyaw * camera_pitch_correction_.sin() + xyaw * camera_pitch_correction_.cos();
+                double yr = yyaw;
+                double zr = zyaw * camera_pitch_correction_.cos() - xyaw * camera_pitch_correction_.sin();
+
+                // Find the intersection with the goal. A target below the camera's horizon can't be the goal.
+                if (zr > 0) {
+                    double scaling = differential_height_ / zr;
+                    double distance = Math.hypot(xr, yr) * scaling + Constants.kBoilerRadius;
+                    Rotation2d angle = new Rotation2d(xr, yr, true);
+                    field_to_goals.add(field_to_camera
+                            .transformBy(RigidTransform2d
+                                    .fromTranslation(new Translation2d(distance * angle.cos(), distance * angle.sin())))
+                            .getTranslation());
+                }
+            }
+        }
+        synchronized (this) {
+            goal_tracker_.update(timestamp, field_to_goals);
+        }
+    }
+
+    /**
+     * @return The range and angle to the best goal track, from where the robot will be kAutoAimPredictionTime from
+     *         now, or empty if no goal has been seen within kMaxGoalTrackAge.
+     */
+    public synchronized Optional<ShooterAimingParameters> getAimingParameters() {
+        final double now = field_to_vehicle_.lastTimestamp();
+        List<TrackReport> reports = goal_tracker_.getTracks();
+        for (int i = reports.size() - 1; i >= 0; --i) {
+            if (now - reports.get(i).latest_timestamp > Constants.kMaxGoalTrackAge) {
+                reports.remove(i);
+            }
+        }
+        if (reports.isEmpty()) {
+            return Optional.empty();
+        }
+        Collections.sort(reports, new GoalTracker.TrackReportComparator(
+                Constants.kTrackReportComparatorStablityWeight, Constants.kTrackReportComparatorAgeWeight,
+                Constants.kTrackReportComparatorSwitchingWeight,
+                cached_shooter_aiming_params_ == null ? -1 : cached_shooter_aiming_params_.getTrackId(), now));
+        TrackReport report = reports.get(0);
+        Translation2d robot_to_goal = getPredictedFieldToVehicle(Constants.kAutoAimPredictionTime).getTranslation()
+                .inverse().translateBy(report.field_to_goal);
+        Rotation2d robot_to_goal_rotation = Rotation2d.fromRadians(Math.atan2(robot_to_goal.y(), robot_to_goal.x()));
+        ShooterAimingParameters params = new ShooterAimingParameters(robot_to_goal.norm(), robot_to_goal_rotation,
+                report.latest_timestamp, report.stability, report.id);
+        cached_shooter_aiming_params_ = params;
+        return Optional.of(params);
+    }
+
+    public synchronized void resetVision() {
+        goal_tracker_.reset();
+        cached_shooter_aiming_params_ = null;
     }
 
-    public synchronized Twist2d getPredictedVelocity() {
-        return vehicle_velocity_predicted_;
+    public double getDistanceDriven() {
+        return snapshot_.distance_driven;
     }
 
-    public synchronized Twist2d getMeasuredVelocity() {
-        return vehicle_velocity_measured_;
+    public Twist2d getPredictedVelocity() {
+        return snapshot_.predicted_velocity;
     }
 
-    public void outputToSmartDashboard() {
-        RigidTransform2d odometry = getLatestFieldToVehicle().getValue();
-        SmartDashboard.putNumber("robot_pose_x", odometry.getTranslation().x());
-        SmartDashboard.putNumber("robot_pose_y", odometry.getTranslation().y());
-        SmartDashboard.putNumber("robot_pose_theta", odometry.getRotation().getDegrees());
-        SmartDashboard.putNumber("robot velocity", vehicle_velocity_measured_.dx);
-       
-}
+    public Twist2d getMeasuredVelocity() {
+        return snapshot_.measured_velocity;
+    }
 }
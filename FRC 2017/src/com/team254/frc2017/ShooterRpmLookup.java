@@ -0,0 +1,183 @@
+package com.team254.frc2017;
+
+import com.team254.lib.util.DenseLookupTable;
+import com.team254.lib.util.InterpolatingDouble;
+import com.team254.lib.util.InterpolatingTreeMap;
+import com.team254.lib.util.math.Polynomial;
+import com.team254.lib.util.math.PolynomialRegression;
+import com.team254.lib.util.math.RecursivePolynomialRegression;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Maps the range to the goal to a flywheel RPM setpoint. The shooter asks for a setpoint every loop while aiming, so a
+ * lookup has to be cheap: the calibration (an interpolating map or a fit polynomial) is compiled once into a
+ * DenseLookupTable or a Polynomial, and each lookup is then a few arithmetic operations with no allocation.
+ *
+ * The compiled calibration is swapped in with a single volatile write, so it can be replaced from any thread (e.g.
+ * after a refit during practice) while the loop keeps reading; a lookup sees either the old calibration or the new one.
+ *
+ * Shots can be logged with addShot() and refit() fits a new polynomial to them. For calibrating during practice,
+ * startOnlineFit() also feeds every shot that went in to a RecursivePolynomialRegression, and the fit is swapped in
+ * after each shot once there are enough shots and it explains them well enough.
+ */
+public class ShooterRpmLookup {
+    private static ShooterRpmLookup mInstance = new ShooterRpmLookup();
+
+    public static ShooterRpmLookup getInstance() {
+        return mInstance;
+    }
+
+    private static final int kMaxLoggedShots = 256;
+
+    private volatile DoubleUnaryOperator mRangeToRpm = null;
+
+    // Ring buffer of logged shots.
+    private final double[] mShotRanges = new double[kMaxLoggedShots];
+    private final double[] mShotRpms = new double[kMaxLoggedShots];
+    private int mNumShots = 0;
+    private int mNextShot = 0;
+
+    private RecursivePolynomialRegression mOnlineFit = null;
+    private double mOnlineFitMinRange;
+    private double mOnlineFitMaxRange;
+    private boolean mOnlineFitPublished = false;
+
+    private ShooterRpmLookup() {
+    }
+
+    /**
+     * @return The RPM to shoot from range, or 0 if there is no calibration yet.
+     */
+    public double getRpm(double range) {
+        final DoubleUnaryOperator range_to_rpm = mRangeToRpm;
+        return range_to_rpm == null ? 0.0 : range_to_rpm.applyAsDouble(range);
+    }
+
+    public boolean hasCalibration() {
+        return mRangeToRpm != null;
+    }
+
+    /**
+     * Replaces the calibration. Lookups in progress finish with the old one.
+     */
+    public void setCalibration(DoubleUnaryOperator range_to_rpm) {
+        mRangeToRpm = range_to_rpm;
+    }
+
+    /**
+     * Uses a fit polynomial, clamping the range to [min_range, max_range].
+     */
+    public void setCalibration(PolynomialRegression regression, double min_range, double max_range) {
+        setCalibration(Polynomial.fromRegression(regression, min_range, max_range));
+    }
+
+    /**
+     * Uses an interpolating map, compiled into a table with an entry every resolution inches.
+     */
+    public void setCalibration(InterpolatingTreeMap<InterpolatingDouble, InterpolatingDouble> map,
+            double resolution) {
+        setCalibration(DenseLookupTable.fromMap(map, resolution));
+    }
+
+    /**
+     * Logs a shot. Only shots that went in are kept, since a miss doesn't say what the right RPM would have been. Once
+     * the buffer is full, the oldest shot is forgotten.
+     */
+    public synchronized void addShot(double range, double rpm, boolean hit) {
+        if (!hit) {
+            return;
+        }
+        if (mOnlineFit != null) {
+            mOnlineFit.addPoint(range, rpm);
+            if (mOnlineFit.count() >= Constants.kShooterOnlineFitMinShots
+                    && mOnlineFit.R2() >= Constants.kShooterOnlineFitMinR2) {
+                setCalibration(mOnlineFit.toPolynomial(mOnlineFitMinRange, mOnlineFitMaxRange));
+                mOnlineFitPublished = true;
+            }
+        }
+        mShotRanges[mNextShot] = range;
+        mShotRpms[mNextShot] = rpm;
+        mNextShot = (mNextShot + 1) % kMaxLoggedShots;
+        mNumShots = Math.min(mNumShots + 1, kMaxLoggedShots);
+    }
+
+    public synchronized int getNumShots() {
+        return mNumShots;
+    }
+
+    public synchronized void clearShots() {
+        mNumShots = 0;
+        mNextShot = 0;
+    }
+
+    /**
+     * Starts fitting a polynomial to shots as they are added, clamped to [min_range, max_range]. The current
+     * calibration stays in use until the fit is good enough. Does nothing if a fit is already running.
+     */
+    public synchronized void startOnlineFit(int degree, double min_range, double max_range) {
+        if (mOnlineFit != null) {
+            return;
+        }
+        mOnlineFit = new RecursivePolynomialRegression(degree, Constants.kShooterOnlineFitForgettingFactor, min_range,
+                max_range);
+        mOnlineFitMinRange = min_range;
+        mOnlineFitMaxRange = max_range;
+        mOnlineFitPublished = false;
+    }
+
+    /**
+     * Stops fitting. The last published fit stays in use.
+     */
+    public synchronized void stopOnlineFit() {
+        mOnlineFit = null;
+    }
+
+    public synchronized boolean isOnlineFitRunning() {
+        return mOnlineFit != null;
+    }
+
+    /**
+     * @return True if the online fit is running and has replaced the calibration.
+     */
+    public synchronized boolean isUsingOnlineFit() {
+        return mOnlineFit != null && mOnlineFitPublished;
+    }
+
+    /**
+     * @return A description of the online fit, or null if it isn't running.
+     */
+    public synchronized String getOnlineFitStatus() {
+        return mOnlineFit == null ? null : mOnlineFit.toString();
+    }
+
+    /**
+     * Fits a polynomial to the logged shots and uses it, clamped to the range of ranges that were shot from. Don't call
+     * this from a loop; the fit is a full least squares solve.
+     *
+     * @return The fit (e.g. to check its R^2), or null if there were not more shots than the degree.
+     */
+    public PolynomialRegression refit(int degree) {
+        final double[] ranges;
+        final double[] rpms;
+        synchronized (this) {
+            if (mNumShots <= degree) {
+                return null;
+            }
+            ranges = new double[mNumShots];
+            rpms = new double[mNumShots];
+            System.arraycopy(mShotRanges, 0, ranges, 0, mNumShots);
+            System.arraycopy(mShotRpms, 0, rpms, 0, mNumShots);
+        }
+        double min_range = Double.POSITIVE_INFINITY;
+        double max_range = Double.NEGATIVE_INFINITY;
+        for (double range : ranges) {
+            min_range = Math.min(min_range, range);
+            max_range = Math.max(max_range, range);
+        }
+        PolynomialRegression regression = new PolynomialRegression(ranges, rpms, degree);
+        setCalibration(regression, min_range, max_range);
+        System.out.println("Refit shooter RPM from " + ranges.length + " shots: " + regression);
+        return regression;
+    }
+}
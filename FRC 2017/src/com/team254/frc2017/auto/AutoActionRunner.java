@@ -0,0 +1,197 @@
+package com.team254.frc2017.auto;
+
+import com.team254.frc2017.auto.actions.Action;
+import com.team254.frc2017.loops.Loop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs auto mode actions from the enabled Looper, so that every Action's start, update, isFinished and done calls
+ * happen on the loop thread in step with the subsystem loops, instead of on the auto mode thread at its own rate.
+ * (When the loops stop, the Looper calls onStop instead, holding the same lock as onLoop, so the current action can
+ * still only be touched by one thread at a time.)
+ *
+ * Each run of an auto mode claims the runner with startRun(), on the thread that starts the mode and before the mode's
+ * thread exists. That returns a run id. The auto mode thread hands over an action, or a sequence of actions, with
+ * run(), which blocks until they are all done. The first one starts on the next loop iteration, and each of the rest
+ * starts in the same loop iteration that the one before it finished, so the timing of a sequence doesn't depend on
+ * when the auto mode thread gets scheduled. cancel() ends the run: the auto mode thread
+ * is woken with an AutoModeEndedException, and the current action's done method is called on the next loop iteration
+ * (or in onStop). A run that was cancelled, or that a later startRun() replaced, can never queue another action.
+ *
+ * The loop timestamps at which each action started and finished are recorded for debugging. A cancelled action's end
+ * time is when its done method was called.
+ */
+public class AutoActionRunner implements Loop {
+    private static AutoActionRunner mInstance = new AutoActionRunner();
+
+    public static AutoActionRunner getInstance() {
+        return mInstance;
+    }
+
+    /**
+     * When an action ran. The end time is NaN while the action is running.
+     */
+    public static class ActionRecord {
+        public final String name;
+        public final double start_time;
+        public double end_time = Double.NaN;
+        public boolean cancelled = false;
+
+        public ActionRecord(String name, double start_time) {
+            this.name = name;
+            this.start_time = start_time;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + start_time + " to " + end_time + (cancelled ? " (cancelled)" : "");
+        }
+    }
+
+    private final ArrayDeque<Action> mPendingActions = new ArrayDeque<>();
+    private Action mCurrentAction = null;
+    private ActionRecord mCurrentRecord = null;
+    private boolean mCancelCurrentAction = false;
+    private boolean mCancelled = false;
+    private int mRunId = 0;
+    private final List<ActionRecord> mHistory = new ArrayList<>();
+
+    private AutoActionRunner() {
+    }
+
+    /**
+     * Starts a new run, replacing (and cancelling) any earlier one, and clears the recorded history. Call on the thread
+     * that starts the auto mode, before the auto mode thread is created.
+     *
+     * @return The id to pass to run() and cancel().
+     */
+    public synchronized int startRun() {
+        cancel();
+        mCancelled = false;
+        mHistory.clear();
+        return ++mRunId;
+    }
+
+    private boolean isRunEnded(int run_id) {
+        return mCancelled || run_id != mRunId;
+    }
+
+    /**
+     * Runs an action from the loop and waits for it to finish.
+     *
+     * @throws AutoModeEndedException
+     *             If the run is cancelled (or replaced) before the action finishes.
+     */
+    public void run(int run_id, Action action) throws AutoModeEndedException {
+        run(run_id, Collections.singletonList(action));
+    }
+
+    /**
+     * Runs actions one after another from the loop and waits for the last one to finish.
+     *
+     * @throws AutoModeEndedException
+     *             If the run is cancelled (or replaced) before the actions finish.
+     */
+    public synchronized void run(int run_id, List<Action> actions) throws AutoModeEndedException {
+        if (isRunEnded(run_id)) {
+            throw new AutoModeEndedException();
+        }
+        mPendingActions.addAll(actions);
+        while (!mPendingActions.isEmpty() || mCurrentAction != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                cancel(run_id);
+            }
+            if (isRunEnded(run_id)) {
+                throw new AutoModeEndedException();
+            }
+        }
+    }
+
+    /**
+     * Cancels the given run, if it is still the current one.
+     */
+    public synchronized void cancel(int run_id) {
+        if (run_id == mRunId) {
+            cancel();
+        }
+    }
+
+    /**
+     * Ends the current run. The current action's done method is called from the loop.
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+        mPendingActions.clear();
+        if (mCurrentAction != null) {
+            mCancelCurrentAction = true;
+        }
+        notifyAll();
+    }
+
+    private void finishCancelledAction(double timestamp) {
+        if (mCancelCurrentAction && mCurrentAction != null) {
+            mCurrentAction.done();
+            mCurrentRecord.cancelled = true;
+            mCurrentRecord.end_time = timestamp;
+            mCurrentAction = null;
+            notifyAll();
+        }
+        mCancelCurrentAction = false;
+    }
+
+    public synchronized List<ActionRecord> getHistory() {
+        return new ArrayList<>(mHistory);
+    }
+
+    public synchronized void printHistory() {
+        for (ActionRecord record : mHistory) {
+            System.out.println(record);
+        }
+    }
+
+    @Override
+    public synchronized void onStart(double timestamp) {
+        finishCancelledAction(timestamp);
+    }
+
+    private void startNextAction(double timestamp) {
+        mCurrentAction = mPendingActions.poll();
+        if (mCurrentAction != null) {
+            mCurrentRecord = new ActionRecord(mCurrentAction.getClass().getSimpleName(), timestamp);
+            mHistory.add(mCurrentRecord);
+            mCurrentAction.start();
+        }
+    }
+
+    @Override
+    public synchronized void onLoop(double timestamp) {
+        finishCancelledAction(timestamp);
+        if (mCurrentAction == null) {
+            startNextAction(timestamp);
+        }
+        // Each action that is already finished hands over to the next one in this same iteration.
+        while (mCurrentAction != null && mCurrentAction.isFinished()) {
+            mCurrentAction.done();
+            mCurrentRecord.end_time = timestamp;
+            startNextAction(timestamp);
+            if (mCurrentAction == null) {
+                notifyAll();
+            }
+        }
+        if (mCurrentAction != null) {
+            mCurrentAction.update();
+        }
+    }
+
+    @Override
+    public synchronized void onStop(double timestamp) {
+        cancel();
+        finishCancelledAction(timestamp);
+    }
+}
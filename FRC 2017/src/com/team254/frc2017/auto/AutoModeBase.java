@@ -2,27 +2,46 @@ package com.team254.frc2017.auto;
 
 import com.team254.frc2017.auto.actions.Action;
 
+import java.util.List;
+
 /**
  * An abstract class that is the basis of the robot's autonomous routines. This is implemented in auto modes (which are
- * routines that do actions).
+ * routines that do actions). The routine runs on its own thread, but the actions themselves are run from the enabled
+ * Looper by the AutoActionRunner.
+ * 
+ * @see AutoActionRunner
  */
 public abstract class AutoModeBase {
-    protected double m_update_rate = 1.0 / 50.0;
-    protected boolean m_active = false;
+    protected volatile boolean m_active = false;
+    private int m_run_id = -1;
 
     protected abstract void routine() throws AutoModeEndedException;
 
-    public void run() {
+    /**
+     * Claims the AutoActionRunner for a new run of this mode. Call on the thread that starts the mode, before the
+     * thread that calls run() is created, so that a stop() in between can't be undone.
+     */
+    public void prepare() {
+        m_run_id = AutoActionRunner.getInstance().startRun();
         m_active = true;
+    }
+
+    public void run() {
+        if (!m_active) {
+            System.out.println("Auto mode stopped before it started");
+            return;
+        }
         try {
             routine();
         } catch (AutoModeEndedException e) {
             System.out.println("Auto mode done, ended early");
+            AutoActionRunner.getInstance().printHistory();
             return;
         }
 
         done();
         System.out.println("Auto mode done");
+        AutoActionRunner.getInstance().printHistory();
     }
 
     public void done() {
@@ -30,6 +49,7 @@ public abstract class AutoModeBase {
 
     public void stop() {
         m_active = false;
+        AutoActionRunner.getInstance().cancel(m_run_id);
     }
 
     public boolean isActive() {
@@ -46,20 +66,18 @@ public abstract class AutoModeBase {
 
     public void runAction(Action action) throws AutoModeEndedException {
         isActiveWithThrow();
-        action.start();
-
-        while (isActiveWithThrow() && !action.isFinished()) {
-            action.update();
-            long waitTime = (long) (m_update_rate * 1000.0);
-
-            try {
-                Thread.sleep(waitTime);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        AutoActionRunner.getInstance().run(m_run_id, action);
+        isActiveWithThrow();
+    }
 
-        action.done();
+    /**
+     * Runs the actions one after another. Unlike calling runAction for each, the next action starts in the same loop
+     * iteration that the one before it finished.
+     */
+    public void runActions(List<Action> actions) throws AutoModeEndedException {
+        isActiveWithThrow();
+        AutoActionRunner.getInstance().run(m_run_id, actions);
+        isActiveWithThrow();
     }
 
 }
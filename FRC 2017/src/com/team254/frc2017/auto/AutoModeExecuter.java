@@ -15,6 +15,9 @@ public class AutoModeExecuter {
 
     public void start() {
         if (m_thread == null) {
+            if (m_auto_mode != null) {
+                m_auto_mode.prepare();
+            }
             m_thread = new Thread(new CrashTrackingRunnable() {
                 @Override
                 public void runCrashTracked() {
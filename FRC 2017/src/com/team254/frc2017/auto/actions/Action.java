@@ -2,9 +2,11 @@ package com.team254.frc2017.auto.actions;
 
 /**
  * Action Interface, an interface that describes an iterative action. It is run by an autonomous action, called by the
- * method runAction in AutoModeBase (or more commonly in autonomous modes that extend AutoModeBase)
+ * method runAction in AutoModeBase (or more commonly in autonomous modes that extend AutoModeBase). All of its methods
+ * are called from the enabled Looper's thread.
  *
  * @see com.team254.frc2017.auto.AutoModeBase#runAction
+ * @see com.team254.frc2017.auto.AutoActionRunner
  */
 public interface Action {
 
@@ -0,0 +1,267 @@
+package com.team254.frc2017.auto.actions;
+
+import com.team254.frc2017.subsystems.Drive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Composite action that runs a set of named actions, each of which starts as soon as its trigger fires: when other
+ * actions in the graph finish, when the drive passes a path marker, when a sensor predicate becomes true, or any
+ * combination of those. Actions with no trigger start right away. This lets an auto mode overlap independent
+ * mechanisms, e.g. start shooting at a marker partway along a path while the drive keeps going.
+ *
+ * The graph finishes when every action in it has finished. Graphs are built with a Builder, which checks that every
+ * dependency names an action in the graph and that there are no cycles. Actions are updated in dependency order, so an
+ * action that depends on another one can start in the same loop that the other one finishes.
+ *
+ * Use {@link RaceAction} as a node for "whichever finishes first" branches.
+ *
+ * @see Builder
+ */
+public class ActionGraph implements Action {
+
+    /**
+     * A condition for starting an action.
+     */
+    public interface Trigger {
+        public boolean isMet(ActionGraph graph);
+
+        /**
+         * @return The names of the actions this trigger waits for, used to validate the graph.
+         */
+        public default List<String> getDependencies() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Fires once the named action has finished.
+     */
+    public static Trigger after(String name) {
+        return new Trigger() {
+            @Override
+            public boolean isMet(ActionGraph graph) {
+                return graph.hasFinished(name);
+            }
+
+            @Override
+            public List<String> getDependencies() {
+                return Arrays.asList(name);
+            }
+        };
+    }
+
+    /**
+     * Fires once the drive has passed the given path marker.
+     */
+    public static Trigger afterMarker(String marker) {
+        return graph -> Drive.getInstance().hasPassedMarker(marker);
+    }
+
+    /**
+     * Fires once the predicate is true, e.g. a sensor reading.
+     */
+    public static Trigger when(BooleanSupplier predicate) {
+        return graph -> predicate.getAsBoolean();
+    }
+
+    public static Trigger allOf(Trigger... triggers) {
+        return combine(true, triggers);
+    }
+
+    public static Trigger anyOf(Trigger... triggers) {
+        return combine(false, triggers);
+    }
+
+    private static Trigger combine(boolean all, Trigger... triggers) {
+        final List<String> dependencies = new ArrayList<>();
+        for (Trigger trigger : triggers) {
+            dependencies.addAll(trigger.getDependencies());
+        }
+        return new Trigger() {
+            @Override
+            public boolean isMet(ActionGraph graph) {
+                for (Trigger trigger : triggers) {
+                    if (trigger.isMet(graph) != all) {
+                        return !all;
+                    }
+                }
+                return all;
+            }
+
+            @Override
+            public List<String> getDependencies() {
+                return dependencies;
+            }
+        };
+    }
+
+    private enum NodeState {
+        WAITING, RUNNING, FINISHED
+    }
+
+    private static class Node {
+        public final String name;
+        public final Action action;
+        public final Trigger trigger;
+        public NodeState state = NodeState.WAITING;
+
+        public Node(String name, Action action, Trigger trigger) {
+            this.name = name;
+            this.action = action;
+            this.trigger = trigger;
+        }
+    }
+
+    /**
+     * Collects the actions of a graph and checks them when the graph is built.
+     */
+    public static class Builder {
+        private final Map<String, Node> mNodes = new LinkedHashMap<>();
+
+        /**
+         * Adds an action that starts as soon as the graph starts.
+         */
+        public Builder add(String name, Action action) {
+            return add(name, action, null);
+        }
+
+        /**
+         * Adds an action that starts once trigger fires.
+         */
+        public Builder add(String name, Action action, Trigger trigger) {
+            if (mNodes.containsKey(name)) {
+                throw new IllegalArgumentException("Action graph already has an action named " + name);
+            }
+            mNodes.put(name, new Node(name, action, trigger));
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException
+         *             If the graph is empty, depends on an action that isn't in it, or has a cycle.
+         */
+        public ActionGraph build() {
+            if (mNodes.isEmpty()) {
+                throw new IllegalArgumentException("Action graph has no actions");
+            }
+            for (Node node : mNodes.values()) {
+                for (String dependency : getDependencies(node)) {
+                    if (!mNodes.containsKey(dependency)) {
+                        throw new IllegalArgumentException(
+                                "Action " + node.name + " depends on " + dependency + ", which isn't in the graph");
+                    }
+                }
+            }
+            // Depth-first topological sort.
+            List<Node> order = new ArrayList<>();
+            Map<String, NodeState> visited = new HashMap<>();
+            for (Node node : mNodes.values()) {
+                visit(node, visited, order);
+            }
+            return new ActionGraph(order);
+        }
+
+        private static List<String> getDependencies(Node node) {
+            return node.trigger == null ? Collections.<String> emptyList() : node.trigger.getDependencies();
+        }
+
+        // Uses RUNNING to mark nodes on the current search path and FINISHED for nodes already in the order.
+        private void visit(Node node, Map<String, NodeState> visited, List<Node> order) {
+            NodeState state = visited.get(node.name);
+            if (state == NodeState.FINISHED) {
+                return;
+            }
+            if (state == NodeState.RUNNING) {
+                throw new IllegalArgumentException("Action graph has a cycle through " + node.name);
+            }
+            visited.put(node.name, NodeState.RUNNING);
+            for (String dependency : getDependencies(node)) {
+                visit(mNodes.get(dependency), visited, order);
+            }
+            visited.put(node.name, NodeState.FINISHED);
+            order.add(node);
+        }
+    }
+
+    private final List<Node> mNodes;
+    private final Map<String, Node> mNodesByName = new HashMap<>();
+
+    private ActionGraph(List<Node> nodes) {
+        mNodes = nodes;
+        for (Node node : nodes) {
+            mNodesByName.put(node.name, node);
+        }
+    }
+
+    public boolean hasFinished(String name) {
+        return mNodesByName.get(name).state == NodeState.FINISHED;
+    }
+
+    @Override
+    public boolean isFinished() {
+        for (Node node : mNodes) {
+            if (node.state != NodeState.FINISHED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void start() {
+        for (Node node : mNodes) {
+            node.state = NodeState.WAITING;
+        }
+        startReadyNodes();
+    }
+
+    @Override
+    public void update() {
+        for (Node node : mNodes) {
+            if (node.state == NodeState.RUNNING) {
+                if (node.action.isFinished()) {
+                    node.action.done();
+                    node.state = NodeState.FINISHED;
+                } else {
+                    node.action.update();
+                }
+            } else if (node.state == NodeState.WAITING) {
+                startIfReady(node);
+            }
+        }
+    }
+
+    private void startReadyNodes() {
+        for (Node node : mNodes) {
+            startIfReady(node);
+        }
+    }
+
+    private void startIfReady(Node node) {
+        if (node.trigger == null || node.trigger.isMet(this)) {
+            node.action.start();
+            node.state = NodeState.RUNNING;
+        }
+    }
+
+    /**
+     * Ends any actions that are still running, e.g. when the graph is cancelled.
+     */
+    @Override
+    public void done() {
+        for (Node node : mNodes) {
+            if (node.state == NodeState.RUNNING) {
+                node.action.done();
+                node.state = NodeState.FINISHED;
+            }
+        }
+    }
+}
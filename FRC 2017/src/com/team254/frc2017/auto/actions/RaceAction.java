@@ -0,0 +1,52 @@
+package com.team254.frc2017.auto.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Composite action, running all sub-actions at the same time until any one of them is done. Unlike
+ * {@link ParallelAction}, which waits for every action, this finishes as soon as the first action finishes; done is
+ * then called on all of them, which ends the ones still running.
+ * 
+ * @param A
+ *            List of Action objects
+ */
+public class RaceAction implements Action {
+
+    private final ArrayList<Action> mActions;
+
+    public RaceAction(List<Action> actions) {
+        mActions = new ArrayList<>(actions);
+    }
+
+    @Override
+    public boolean isFinished() {
+        for (Action action : mActions) {
+            if (action.isFinished()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void update() {
+        for (Action action : mActions) {
+            action.update();
+        }
+    }
+
+    @Override
+    public void done() {
+        for (Action action : mActions) {
+            action.done();
+        }
+    }
+
+    @Override
+    public void start() {
+        for (Action action : mActions) {
+            action.start();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.team254.frc2017.auto.actions;
+
+import com.team254.frc2017.RobotState;
+import com.team254.frc2017.paths.PathBuilder.Waypoint;
+import com.team254.frc2017.paths.PathPlanner;
+import com.team254.frc2017.subsystems.Drive;
+import com.team254.lib.util.control.Path;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Plans a path from wherever the robot is when the action starts through the given waypoints, and drives it. The path
+ * is built on the PathPlanner thread; the drive keeps doing whatever it was doing until the path is ready. The action
+ * finishes once the robot reaches the end of the path, or right away if the path can't be built.
+ * 
+ * @see PathPlanner
+ * @see DrivePathAction
+ */
+public class ReplanPathAction implements Action {
+
+    private List<Waypoint> mWaypoints;
+    private boolean mReversed;
+    private CompletableFuture<Path> mPlan = null;
+    private boolean mDriving = false;
+    private boolean mFailed = false;
+    private Drive mDrive = Drive.getInstance();
+
+    public ReplanPathAction(List<Waypoint> waypoints, boolean reversed) {
+        mWaypoints = waypoints;
+        mReversed = reversed;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mFailed || (mDriving && mDrive.isDoneWithPath());
+    }
+
+    @Override
+    public void update() {
+        if (mDriving || !mPlan.isDone()) {
+            return;
+        }
+        try {
+            mDrive.setWantDrivePath(mPlan.join(), mReversed);
+            mDriving = true;
+        } catch (CompletionException e) {
+            System.out.println("Failed to plan path");
+            e.printStackTrace();
+            mFailed = true;
+        }
+    }
+
+    @Override
+    public void done() {
+        if (!mDriving) {
+            mPlan.cancel(false);
+        }
+    }
+
+    @Override
+    public void start() {
+        mPlan = PathPlanner.getInstance().planFrom(RobotState.getInstance().getLatestFieldToVehicle().getValue(),
+                mReversed, mWaypoints);
+    }
+}
@@ -9,6 +9,8 @@ import com.team254.frc2017.paths.BoilerGearToShootBlue;
 import com.team254.frc2017.paths.PathContainer;
 import com.team254.frc2017.paths.StartToBoilerGearBlue;
 
+import java.util.Arrays;
+
 /**
  * Scores the preload gear onto the boiler-side peg then shoots the 10 preloaded fuel
  * 
@@ -18,10 +20,8 @@ public class BoilerGearThenShootModeBlue extends AutoModeBase {
 
     @Override
     protected void routine() throws AutoModeEndedException {
-        runAction(new WaitAction(2));
         PathContainer gearPath = new StartToBoilerGearBlue();
-        runAction(new ResetPoseFromPathAction(gearPath));
-        runAction(new DrivePathAction(gearPath));       
-        runAction(new DrivePathAction(new BoilerGearToShootBlue()));             
+        runActions(Arrays.asList(new WaitAction(2), new ResetPoseFromPathAction(gearPath),
+                new DrivePathAction(gearPath), new DrivePathAction(new BoilerGearToShootBlue())));
     }
 }
@@ -0,0 +1,113 @@
+package com.team254.frc2017.loops;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a rolling window of execution times (in nanoseconds) for a single loop, along with the number of samples that
+ * exceeded the loop's time budget. Samples are written into a preallocated ring buffer so that recording a sample from
+ * the loop thread never allocates; percentiles are computed on demand by the (non real-time) reporting thread.
+ */
+public class LoopStats {
+    private static final double kNanosToMillis = 1.0e-6;
+
+    private final String name_;
+    private final long budget_nanos_;
+    private final long[] samples_;
+    // Only touched while holding update_lock_, so that two threads calling update() can't sort it at the same time.
+    private final long[] sorted_;
+    private final Object update_lock_ = new Object();
+    private int next_ = 0;
+    private int count_ = 0;
+    private long max_ = 0;
+    private long overruns_ = 0;
+
+    private volatile double p50_ms_ = 0;
+    private volatile double p99_ms_ = 0;
+    private volatile double max_ms_ = 0;
+    private volatile long reported_overruns_ = 0;
+
+    /**
+     * @param name
+     *            Name used when reporting these stats.
+     * @param budget_seconds
+     *            Samples longer than this are counted as overruns.
+     * @param window
+     *            Number of samples to keep for computing percentiles.
+     */
+    public LoopStats(String name, double budget_seconds, int window) {
+        name_ = name;
+        budget_nanos_ = (long) (budget_seconds * 1.0e9);
+        samples_ = new long[window];
+        sorted_ = new long[window];
+    }
+
+    public String getName() {
+        return name_;
+    }
+
+    public synchronized void addSample(long nanos) {
+        samples_[next_] = nanos;
+        next_ = (next_ + 1) % samples_.length;
+        if (count_ < samples_.length) {
+            ++count_;
+        }
+        if (nanos > max_) {
+            max_ = nanos;
+        }
+        if (nanos > budget_nanos_) {
+            ++overruns_;
+        }
+    }
+
+    public synchronized void reset() {
+        next_ = 0;
+        count_ = 0;
+        max_ = 0;
+        overruns_ = 0;
+    }
+
+    /**
+     * Recomputes the reported percentiles from the current window. Sorting happens under update_lock_ rather than the
+     * lock addSample takes, so that the loop thread is only held up for the copy.
+     */
+    public void update() {
+        synchronized (update_lock_) {
+            int count;
+            synchronized (this) {
+                count = count_;
+                System.arraycopy(samples_, 0, sorted_, 0, count);
+                max_ms_ = max_ * kNanosToMillis;
+                reported_overruns_ = overruns_;
+            }
+            if (count == 0) {
+                p50_ms_ = 0;
+                p99_ms_ = 0;
+                return;
+            }
+            Arrays.sort(sorted_, 0, count);
+            p50_ms_ = sorted_[percentileIndex(0.5, count)] * kNanosToMillis;
+            p99_ms_ = sorted_[percentileIndex(0.99, count)] * kNanosToMillis;
+        }
+    }
+
+    private static int percentileIndex(double percentile, int count) {
+        return Math.min(count - 1, (int) Math.ceil(percentile * count) - 1);
+    }
+
+    /** Values below are as of the last call to update(). */
+    public double getP50Ms() {
+        return p50_ms_;
+    }
+
+    public double getP99Ms() {
+        return p99_ms_;
+    }
+
+    public double getMaxMs() {
+        return max_ms_;
+    }
+
+    public long getOverruns() {
+        return reported_overruns_;
+    }
+}
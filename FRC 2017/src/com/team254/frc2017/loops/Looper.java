@@ -2,89 +2,282 @@ package com.team254.frc2017.loops;
 
 import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import com.team254.frc2017.Constants;
 import com.team254.lib.util.CrashTrackingRunnable;
+import com.team254.lib.util.TelemetryRegistry;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This code runs all of the robot's loops. Loop objects are stored in a List object. They are started when the robot
  * powers up and stopped after the match.
+ *
+ * Loops are organized into groups. Each group has its own Notifier (and therefore its own thread) and its own period,
+ * so a slow mechanism loop can't delay the drive loop. Loops that don't ask for a group go into the default group,
+ * which runs every kPeriod. Within a group, each loop can run at a slower rate that is a whole multiple of the group
+ * period.
+ *
+ * The execution time of every loop, and of each group period as a whole, is measured so that a loop that blows the
+ * time budget can be identified from the dashboard.
  */
 public class Looper {
     public final double kPeriod = Constants.kLooperDt;
+    public static final String kDefaultGroup = "control";
+    public static final String kSuperstructureGroup = "superstructure";
+    public static final String kMechanismGroup = "mechanism";
+    private static final int kStatsWindow = 1000;
 
     private boolean running_;
 
-    private final Notifier notifier_;
-    private final List<Loop> loops_;
-    private final Object taskRunningLock_ = new Object();
-    private double timestamp_ = 0;
-    private double dt_ = 0;
+    private final Map<String, LoopGroup> groups_;
 
-    private final CrashTrackingRunnable runnable_ = new CrashTrackingRunnable() {
-        @Override
-        public void runCrashTracked() {
-            synchronized (taskRunningLock_) {
-                if (running_) {
-                    double now = Timer.getFPGATimestamp();
+    /**
+     * Publishes the percentiles of one LoopStats to telemetry channels named after it.
+     */
+    private static class StatsChannels {
+        private final LoopStats stats_;
+        private final int p50_channel_;
+        private final int p99_channel_;
+        private final int max_channel_;
+        private final int overruns_channel_;
+
+        public StatsChannels(LoopStats stats) {
+            TelemetryRegistry telemetry = TelemetryRegistry.getInstance();
+            String prefix = "looper_" + stats.getName();
+            stats_ = stats;
+            p50_channel_ = telemetry.registerNumber(prefix + "_p50_ms");
+            p99_channel_ = telemetry.registerNumber(prefix + "_p99_ms");
+            max_channel_ = telemetry.registerNumber(prefix + "_max_ms");
+            overruns_channel_ = telemetry.registerNumber(prefix + "_overruns");
+        }
 
-                    for (Loop loop : loops_) {
-                        loop.onLoop(now);
+        public void output() {
+            TelemetryRegistry telemetry = TelemetryRegistry.getInstance();
+            stats_.update();
+            telemetry.set(p50_channel_, stats_.getP50Ms());
+            telemetry.set(p99_channel_, stats_.getP99Ms());
+            telemetry.set(max_channel_, stats_.getMaxMs());
+            telemetry.set(overruns_channel_, stats_.getOverruns());
+        }
+    }
+
+    private static class ScheduledLoop {
+        public final Loop loop;
+        public final int divisor;
+        public final LoopStats stats;
+        public final StatsChannels channels;
+
+        public ScheduledLoop(Loop loop, int divisor, LoopStats stats) {
+            this.loop = loop;
+            this.divisor = divisor;
+            this.stats = stats;
+            this.channels = new StatsChannels(stats);
+        }
+    }
+
+    /**
+     * A set of loops that run serially on one Notifier.
+     */
+    private static class LoopGroup {
+        private final String name_;
+        private final double period_;
+        private final Notifier notifier_;
+        private final List<ScheduledLoop> loops_ = new ArrayList<>();
+        private final Object taskRunningLock_ = new Object();
+        private final LoopStats period_stats_;
+        private final StatsChannels period_channels_;
+        private final int dt_channel_;
+        private boolean running_ = false;
+        private double timestamp_ = 0;
+        private double dt_ = 0;
+        private long tick_ = 0;
+
+        private final CrashTrackingRunnable runnable_ = new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                synchronized (taskRunningLock_) {
+                    if (running_) {
+                        double now = Timer.getFPGATimestamp();
+                        long period_start = System.nanoTime();
+
+                        for (int i = 0; i < loops_.size(); ++i) {
+                            ScheduledLoop scheduled = loops_.get(i);
+                            if (tick_ % scheduled.divisor != 0) {
+                                continue;
+                            }
+                            long loop_start = System.nanoTime();
+                            scheduled.loop.onLoop(now);
+                            scheduled.stats.addSample(System.nanoTime() - loop_start);
+                        }
+                        period_stats_.addSample(System.nanoTime() - period_start);
+
+                        ++tick_;
+                        dt_ = now - timestamp_;
+                        timestamp_ = now;
                     }
+                }
+            }
+        };
+
+        public LoopGroup(String name, double period) {
+            name_ = name;
+            period_ = period;
+            notifier_ = new Notifier(runnable_);
+            period_stats_ = new LoopStats(name + "_period", period, kStatsWindow);
+            period_channels_ = new StatsChannels(period_stats_);
+            dt_channel_ = TelemetryRegistry.getInstance().registerNumber("looper_" + name + "_dt");
+        }
 
-                    dt_ = now - timestamp_;
-                    timestamp_ = now;
+        public void register(Loop loop, double period) {
+            int divisor = Math.max(1, (int) Math.round(period / period_));
+            LoopStats stats = new LoopStats(getLoopName(loop), divisor * period_, kStatsWindow);
+            synchronized (taskRunningLock_) {
+                loops_.add(new ScheduledLoop(loop, divisor, stats));
+            }
+        }
+
+        public void start() {
+            synchronized (taskRunningLock_) {
+                timestamp_ = Timer.getFPGATimestamp();
+                tick_ = 0;
+                period_stats_.reset();
+                for (ScheduledLoop scheduled : loops_) {
+                    scheduled.stats.reset();
+                    scheduled.loop.onStart(timestamp_);
+                }
+                running_ = true;
+            }
+            notifier_.startPeriodic(period_);
+        }
+
+        public void stop() {
+            notifier_.stop();
+            synchronized (taskRunningLock_) {
+                running_ = false;
+                timestamp_ = Timer.getFPGATimestamp();
+                for (ScheduledLoop scheduled : loops_) {
+                    System.out.println("Stopping " + scheduled.loop);
+                    scheduled.loop.onStop(timestamp_);
                 }
             }
         }
-    };
+
+        public void printStats() {
+            printStats(period_stats_);
+            for (ScheduledLoop scheduled : loops_) {
+                printStats(scheduled.stats);
+            }
+        }
+
+        private static void printStats(LoopStats stats) {
+            stats.update();
+            System.out.println("Loop " + stats.getName() + ": p50 " + stats.getP50Ms() + " ms, p99 "
+                    + stats.getP99Ms() + " ms, max " + stats.getMaxMs() + " ms, overruns " + stats.getOverruns());
+        }
+
+        public void outputToSmartDashboard() {
+            TelemetryRegistry.getInstance().set(dt_channel_, dt_);
+            period_channels_.output();
+            for (int i = 0; i < loops_.size(); ++i) {
+                loops_.get(i).channels.output();
+            }
+        }
+    }
 
     public Looper() {
-        notifier_ = new Notifier(runnable_);
         running_ = false;
-        loops_ = new ArrayList<>();
+        groups_ = new LinkedHashMap<>();
+        groups_.put(kDefaultGroup, new LoopGroup(kDefaultGroup, kPeriod));
     }
 
     public synchronized void register(Loop loop) {
-        synchronized (taskRunningLock_) {
-            loops_.add(loop);
+        register(loop, kPeriod);
+    }
+
+    /**
+     * Registers a loop in the default group to run once every period seconds. The period is rounded to the nearest
+     * multiple of kPeriod.
+     */
+    public synchronized void register(Loop loop, double period) {
+        groups_.get(kDefaultGroup).register(loop, period);
+    }
+
+    /**
+     * Registers a loop to run once every period seconds on the named group's thread. The first loop registered in a
+     * group sets the group's period; later loops are rounded to a multiple of it.
+     */
+    public synchronized void register(Loop loop, String group, double period) {
+        LoopGroup loop_group = groups_.get(group);
+        if (loop_group == null) {
+            loop_group = new LoopGroup(group, period);
+            groups_.put(group, loop_group);
+            loop_group.register(loop, period);
+            if (running_) {
+                loop_group.start();
+            }
+        } else {
+            loop_group.register(loop, period);
         }
     }
 
+    private static String getLoopName(Loop loop) {
+        Class<?> clazz = loop.getClass();
+        // Subsystems declare their loops as anonymous classes, so name those after the enclosing class.
+        while (clazz.getSimpleName().isEmpty() && clazz.getEnclosingClass() != null) {
+            clazz = clazz.getEnclosingClass();
+        }
+        return clazz.getSimpleName();
+    }
+
     public synchronized void start() {
         if (!running_) {
             System.out.println("Starting loops");
-            synchronized (taskRunningLock_) {
-                timestamp_ = Timer.getFPGATimestamp();
-                for (Loop loop : loops_) {
-                    loop.onStart(timestamp_);
-                }
-                running_ = true;
+            for (LoopGroup group : groups_.values()) {
+                group.start();
             }
-            notifier_.startPeriodic(kPeriod);
+            running_ = true;
         }
     }
 
     public synchronized void stop() {
         if (running_) {
             System.out.println("Stopping loops");
-            notifier_.stop();
-            synchronized (taskRunningLock_) {
-                running_ = false;
-                timestamp_ = Timer.getFPGATimestamp();
-                for (Loop loop : loops_) {
-                    System.out.println("Stopping " + loop);
-                    loop.onStop(timestamp_);
-                }
+            running_ = false;
+            for (LoopGroup group : groups_.values()) {
+                group.stop();
             }
+            for (LoopGroup group : groups_.values()) {
+                group.printStats();
+            }
+        }
+    }
+
+    /**
+     * Runs update on the calling thread while no loop in any group is running, waiting for any loops that are in the
+     * middle of a tick to finish. Each group's next tick sees everything update wrote.
+     */
+    public synchronized void runPaused(Runnable update) {
+        runPaused(new ArrayList<>(groups_.values()).iterator(), update);
+    }
+
+    private static void runPaused(Iterator<LoopGroup> groups, Runnable update) {
+        if (!groups.hasNext()) {
+            update.run();
+            return;
+        }
+        synchronized (groups.next().taskRunningLock_) {
+            runPaused(groups, update);
         }
     }
 
-    public void outputToSmartDashboard() {
-        SmartDashboard.putNumber("looper_dt", dt_);
+    public synchronized void outputToSmartDashboard() {
+        for (LoopGroup group : groups_.values()) {
+            group.outputToSmartDashboard();
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.team254.frc2017.loops;
 
+import com.team254.frc2017.DriveSensors;
 import com.team254.frc2017.Kinematics;
 import com.team254.frc2017.RobotState;
 import com.team254.frc2017.subsystems.Drive;
@@ -9,19 +10,27 @@ import com.team254.lib.util.math.Twist2d;
 /**
  * Periodically estimates the state of the robot using the robot's distance traveled (compares two waypoints), gyroscope
  * orientation, and velocity, among various other factors. Similar to a car's odometer.
+ *
+ * The singleton reads Drive into the global RobotState; the simulator makes its own from a simulated drive.
  */
 public class RobotStateEstimator implements Loop {
-    static RobotStateEstimator instance_ = new RobotStateEstimator();
+    static RobotStateEstimator instance_ = null;
 
+    // Created on first use so that the simulator can load this class without creating Drive (and its hardware).
     public static RobotStateEstimator getInstance() {
+        if (instance_ == null) {
+            instance_ = new RobotStateEstimator(RobotState.getInstance(), Drive.getInstance());
+        }
         return instance_;
     }
 
-    RobotStateEstimator() {
+    public RobotStateEstimator(RobotState robot_state, DriveSensors drive) {
+        robot_state_ = robot_state;
+        drive_ = drive;
     }
 
-    RobotState robot_state_ = RobotState.getInstance();
-    Drive drive_ = Drive.getInstance();
+    final RobotState robot_state_;
+    final DriveSensors drive_;
     double left_encoder_prev_distance_ = 0;
     double right_encoder_prev_distance_ = 0;
 
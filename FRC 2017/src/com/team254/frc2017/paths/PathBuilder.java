@@ -1,13 +1,14 @@
 package com.team254.frc2017.paths;
 
-import com.team254.frc2017.auto.actions.WaitForPathMarkerAction;
 import com.team254.lib.util.control.Path;
 import com.team254.lib.util.control.PathSegment;
 import com.team254.lib.util.math.RigidTransform2d;
 import com.team254.lib.util.math.Rotation2d;
 import com.team254.lib.util.math.Translation2d;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Class used to convert a list of Waypoints into a Path object consisting of arc and line PathSegments
@@ -38,6 +39,26 @@ public class PathBuilder {
         return p;
     }
 
+    /**
+     * Builds several paths at once on the common fork-join pool (and the calling thread). The segments of one path have
+     * to be profiled in order, since each starts at the speed the previous one ends at, so the parallelism is across
+     * paths.
+     * 
+     * @return The paths, in the same order as the waypoint lists.
+     */
+    public static List<Path> buildPathsFromWaypoints(List<List<Waypoint>> waypoint_lists) {
+        List<ForkJoinTask<Path>> tasks = new ArrayList<>();
+        for (List<Waypoint> w : waypoint_lists) {
+            tasks.add(ForkJoinTask.adapt(() -> buildPathFromWaypoints(w)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        List<Path> paths = new ArrayList<>();
+        for (ForkJoinTask<Path> task : tasks) {
+            paths.add(task.join());
+        }
+        return paths;
+    }
+
     private static Waypoint getPoint(List<Waypoint> w, int i) {
         if (i > w.size())
             return w.get(w.size() - 1);
@@ -50,7 +71,7 @@ public class PathBuilder {
      * that is used by the WaitForPathMarkerAction.
      *
      * @see PathBuilder
-     * @see WaitForPathMarkerAction
+     * @see com.team254.frc2017.auto.actions.WaitForPathMarkerAction
      */
     public static class Waypoint {
         Translation2d position;
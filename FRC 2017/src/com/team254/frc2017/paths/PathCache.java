@@ -0,0 +1,177 @@
+package com.team254.frc2017.paths;
+
+import com.team254.frc2017.Constants;
+import com.team254.frc2017.paths.PathBuilder.Waypoint;
+import com.team254.lib.util.control.Path;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Saves built Paths to disk so they don't have to be rebuilt (and re-profiled) every time the robot code starts.
+ *
+ * Each path is stored in its own file, named after the path, along with a SHA-256 key of everything that went into
+ * building it: the waypoints, the constants PathBuilder and PathSegment use, a caller-supplied context string (e.g. the
+ * robot and field profiles) and the file format version. A file is only used if its key matches; otherwise the path is
+ * rebuilt and the file rewritten. Files are written to a temporary file first and renamed into place, so a crash while
+ * saving leaves either the old file or the new one.
+ *
+ * @see Path#write(java.io.DataOutput)
+ */
+public class PathCache {
+    public static final int kMagic = 0x32353450; // "254P"
+    // Bump this whenever PathBuilder, PathSegment or MotionProfileGenerator change how a path is built, or the binary
+    // format changes. The key only covers the inputs, so a path cached by the old code would otherwise still be used.
+    public static final int kFormatVersion = 1;
+    public static final String kSuffix = ".path";
+
+    private final File mDirectory;
+    private final String mContext;
+
+    /**
+     * @param directory
+     *            Where to keep the cached paths. Created if it doesn't exist.
+     * @param context
+     *            Anything besides the waypoints and Constants that the paths depend on. Part of every key.
+     */
+    public PathCache(String directory, String context) {
+        mDirectory = new File(directory);
+        mContext = context;
+    }
+
+    /**
+     * Loads the named path if it was saved with the same waypoints, and builds and saves it otherwise.
+     */
+    public Path getPath(String name, List<Waypoint> waypoints) {
+        return getPaths(Arrays.asList(name), Arrays.asList(waypoints)).get(0);
+    }
+
+    /**
+     * Like getPath, for several paths. The ones that aren't cached are built in parallel.
+     *
+     * @return The paths, in the same order as the names.
+     */
+    public List<Path> getPaths(List<String> names, List<List<Waypoint>> waypoint_lists) {
+        List<Path> paths = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        List<List<Waypoint>> missing_waypoints = new ArrayList<>();
+        for (int i = 0; i < names.size(); ++i) {
+            final byte[] key = computeKey(waypoint_lists.get(i));
+            keys.add(key);
+            final Path path = load(names.get(i), key);
+            paths.add(path);
+            if (path == null) {
+                missing.add(i);
+                missing_waypoints.add(waypoint_lists.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return paths;
+        }
+        final List<Path> built = PathBuilder.buildPathsFromWaypoints(missing_waypoints);
+        for (int j = 0; j < missing.size(); ++j) {
+            final int i = missing.get(j);
+            paths.set(i, built.get(j));
+            save(names.get(i), keys.get(i), built.get(j));
+        }
+        return paths;
+    }
+
+    private File getFile(String name) {
+        return new File(mDirectory, name + kSuffix);
+    }
+
+    private byte[] computeKey(List<Waypoint> waypoints) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(kFormatVersion);
+            out.writeUTF(mContext);
+            out.writeDouble(Constants.kPathFollowingMaxAccel);
+            out.writeInt(waypoints.size());
+            for (Waypoint w : waypoints) {
+                out.writeDouble(w.position.x());
+                out.writeDouble(w.position.y());
+                out.writeDouble(w.radius);
+                out.writeDouble(w.speed);
+                out.writeBoolean(w.marker != null);
+                if (w.marker != null) {
+                    out.writeUTF(w.marker);
+                }
+            }
+            out.flush();
+            return MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Neither can happen: the stream is in memory and every JVM has SHA-256.
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The cached path, or null if there isn't one with a matching key or it can't be read.
+     */
+    private Path load(String name, byte[] key) {
+        final File file = getFile(name);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != kMagic || in.readInt() != kFormatVersion) {
+                return null;
+            }
+            byte[] file_key = new byte[key.length];
+            in.readFully(file_key);
+            if (!Arrays.equals(key, file_key)) {
+                System.out.println("Path " + name + " has changed, rebuilding");
+                return null;
+            }
+            return Path.read(in);
+        } catch (Exception e) {
+            // A truncated or corrupt file can fail in many ways; any of them just means a cache miss.
+            System.out.println("Failed to load cached path " + name + ", rebuilding");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void save(String name, byte[] key, Path path) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            System.out.println("Couldn't create path cache directory " + mDirectory);
+            return;
+        }
+        final File file = getFile(name);
+        final File temp = new File(mDirectory, name + kSuffix + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(kMagic);
+            out.writeInt(kFormatVersion);
+            out.write(key);
+            path.write(out);
+        } catch (IOException e) {
+            System.out.println("Failed to save path " + name);
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Failed to save path " + name);
+            e.printStackTrace();
+        }
+    }
+}
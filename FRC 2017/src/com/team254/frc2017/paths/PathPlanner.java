@@ -0,0 +1,80 @@
+package com.team254.frc2017.paths;
+
+import com.team254.frc2017.paths.PathBuilder.Waypoint;
+import com.team254.lib.util.control.Path;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Translation2d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds paths on a background thread so that a new path can be planned during a match (e.g. after the robot is knocked
+ * off course, or after its pose is corrected) without stalling the caller.
+ *
+ * Requests are handled one at a time, in order, by a single worker thread. Each returns a CompletableFuture that
+ * completes with the built path (already profiled by PathBuilder), or exceptionally if PathBuilder rejects the
+ * waypoints.
+ *
+ * @see com.team254.frc2017.auto.actions.ReplanPathAction
+ */
+public class PathPlanner {
+    // How far planFrom drives straight along the robot's heading before turning toward the first waypoint.
+    private static final double kLeadInDistance = 12.0; // inches
+
+    private static PathPlanner mInstance = new PathPlanner();
+
+    public static PathPlanner getInstance() {
+        return mInstance;
+    }
+
+    private final ExecutorService mExecutor;
+
+    private PathPlanner() {
+        mExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("PathPlanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Builds a path through the given waypoints on the planner thread.
+     */
+    public CompletableFuture<Path> plan(List<Waypoint> waypoints) {
+        final List<Waypoint> copy = new ArrayList<>();
+        for (Waypoint w : waypoints) {
+            copy.add(new Waypoint(w));
+        }
+        return CompletableFuture.supplyAsync(() -> PathBuilder.buildPathFromWaypoints(copy), mExecutor);
+    }
+
+    /**
+     * Builds a path that starts at the given pose (normally the robot's latest pose from RobotState) and continues
+     * through the given waypoints.
+     *
+     * Paths are made of lines and arcs through points, so a heading can't be given directly. Instead the path starts
+     * with a short straight lead-in along the direction the robot will drive (backwards if reversed), so the robot
+     * doesn't have to turn in place to pick up the path. The lead-in is skipped if the first waypoint is too close to
+     * fit it.
+     */
+    public CompletableFuture<Path> planFrom(RigidTransform2d start_pose, boolean reversed, List<Waypoint> waypoints) {
+        List<Waypoint> path_waypoints = new ArrayList<>();
+        final Translation2d start = start_pose.getTranslation();
+        path_waypoints.add(new Waypoint(start, 0, 0));
+        if (!waypoints.isEmpty()) {
+            final Waypoint first = waypoints.get(0);
+            if (new Translation2d(start, first.position).norm() > 2.0 * kLeadInDistance) {
+                final Translation2d lead_in = start_pose.getRotation().toTranslation()
+                        .scale(reversed ? -kLeadInDistance : kLeadInDistance);
+                path_waypoints.add(new Waypoint(start.translateBy(lead_in), 0, first.speed));
+            }
+        }
+        path_waypoints.addAll(waypoints);
+        return plan(path_waypoints);
+    }
+}
@@ -0,0 +1,119 @@
+package com.team254.frc2017.paths;
+
+import com.team254.frc2017.Constants;
+import com.team254.lib.util.control.Path;
+import com.team254.lib.util.control.PathSegment;
+import com.team254.lib.util.control.QuinticHermiteSpline;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Translation2d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a Path through a list of poses out of quintic Hermite splines, as a smoother alternative to the lines and
+ * fixed-radius arcs that PathBuilder makes.
+ *
+ * The splines are sampled finely enough that each sample is close to a straight line, and each pair of samples becomes
+ * a line PathSegment, so the result can be followed by PathFollower like any other Path. The speed at each sample is
+ * limited by the maximum speed and by the maximum centripetal acceleration at the spline's curvature there. A forward
+ * pass then limits acceleration from a stop at the start, and a backward pass limits deceleration to a stop at the end.
+ *
+ * @see QuinticHermiteSpline
+ * @see PathBuilder
+ */
+public class SplinePathBuilder {
+    private static final double kEpsilon = 1E-9;
+    private static final double kMaxSampleLength = 3.0; // inches
+    private static final double kMaxSampleAngle = Math.toRadians(5.0);
+    private static final int kMaxSampleDepth = 16;
+
+    public static Path buildPathFromPoses(List<RigidTransform2d> poses, double max_speed) {
+        return buildPathFromPoses(poses, max_speed, Constants.kPathFollowingMaxAccel,
+                Constants.kPathFollowingMaxCentripetalAccel);
+    }
+
+    public static Path buildPathFromPoses(List<RigidTransform2d> poses, double max_speed, double max_accel,
+            double max_centripetal_accel) {
+        if (poses.size() < 2)
+            throw new Error("Path must contain at least 2 poses");
+
+        // Sample the splines. limits holds the highest speed allowed by the curvature at each sample and on the pieces
+        // of spline on either side of it.
+        List<Translation2d> points = new ArrayList<>();
+        List<Double> limits = new ArrayList<>();
+        for (int i = 0; i < poses.size() - 1; ++i) {
+            QuinticHermiteSpline spline = new QuinticHermiteSpline(poses.get(i), poses.get(i + 1));
+            if (i == 0) {
+                points.add(spline.getPoint(0));
+                limits.add(max_speed);
+            }
+            sample(spline, 0, 1, 0, max_speed, max_centripetal_accel, points, limits);
+        }
+
+        // Forward and backward passes.
+        final int n = points.size();
+        double[] speeds = new double[n];
+        for (int i = 1; i < n; ++i) {
+            final double distance = new Translation2d(points.get(i - 1), points.get(i)).norm();
+            speeds[i] = Math.min(limits.get(i), Math.sqrt(speeds[i - 1] * speeds[i - 1] + 2 * max_accel * distance));
+        }
+        speeds[n - 1] = 0;
+        for (int i = n - 2; i >= 0; --i) {
+            final double distance = new Translation2d(points.get(i), points.get(i + 1)).norm();
+            speeds[i] = Math.min(speeds[i], Math.sqrt(speeds[i + 1] * speeds[i + 1] + 2 * max_accel * distance));
+        }
+
+        Path p = new Path();
+        int num_segments = 0;
+        for (int i = 0; i < n - 1; ++i) {
+            final Translation2d start = points.get(i);
+            final Translation2d end = points.get(i + 1);
+            if (new Translation2d(start, end).norm() > kEpsilon) {
+                p.addSegment(new PathSegment(start.x(), start.y(), end.x(), end.y(),
+                        Math.max(speeds[i], speeds[i + 1]), p.getLastMotionState(), speeds[i + 1]));
+                ++num_segments;
+            }
+        }
+        // Only possible when every pose is in the same place.
+        if (num_segments == 0)
+            throw new Error("Path must contain at least 2 poses in different places");
+        p.extrapolateLast();
+        // Rebuilds every segment's speed profile, so they all use max_accel.
+        p.verifySpeeds(max_accel);
+        return p;
+    }
+
+    /**
+     * Appends samples of the spline after t0 up to and including t1, splitting the interval until each piece is short
+     * and nearly straight.
+     */
+    private static void sample(QuinticHermiteSpline spline, double t0, double t1, int depth, double max_speed,
+            double max_centripetal_accel, List<Translation2d> points, List<Double> limits) {
+        final Translation2d p0 = spline.getPoint(t0);
+        final Translation2d p1 = spline.getPoint(t1);
+        final double angle = Math.abs(spline.getHeading(t0).inverse().rotateBy(spline.getHeading(t1)).getRadians());
+        if (depth < kMaxSampleDepth
+                && (new Translation2d(p0, p1).norm() > kMaxSampleLength || angle > kMaxSampleAngle)) {
+            final double t_mid = (t0 + t1) / 2;
+            sample(spline, t0, t_mid, depth + 1, max_speed, max_centripetal_accel, points, limits);
+            sample(spline, t_mid, t1, depth + 1, max_speed, max_centripetal_accel, points, limits);
+            return;
+        }
+        final double piece_limit = Math.min(
+                speedLimit(spline.getCurvature((t0 + t1) / 2), max_speed, max_centripetal_accel),
+                Math.min(speedLimit(spline.getCurvature(t0), max_speed, max_centripetal_accel),
+                        speedLimit(spline.getCurvature(t1), max_speed, max_centripetal_accel)));
+        final int last = limits.size() - 1;
+        limits.set(last, Math.min(limits.get(last), piece_limit));
+        points.add(p1);
+        limits.add(piece_limit);
+    }
+
+    private static double speedLimit(double curvature, double max_speed, double max_centripetal_accel) {
+        if (Math.abs(curvature) < kEpsilon) {
+            return max_speed;
+        }
+        return Math.min(max_speed, Math.sqrt(max_centripetal_accel / Math.abs(curvature)));
+    }
+}
@@ -1,7 +1,7 @@
 package com.team254.frc2017.paths.profiles;
 
 import com.team254.frc2017.Constants;
-import com.team254.frc2017.paths.PathBuilder;
+import com.team254.frc2017.paths.PathCache;
 import com.team254.frc2017.paths.PathBuilder.Waypoint;
 import com.team254.lib.util.control.Path;
 import com.team254.lib.util.math.RigidTransform2d;
@@ -9,6 +9,8 @@ import com.team254.lib.util.math.Rotation2d;
 import com.team254.lib.util.math.Translation2d;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Uses a field and robot profile to calculate Waypoints for the paths used by the GearThenHopperShoot auto modes.
@@ -51,6 +53,12 @@ public class PathAdapter {
     static final double kFieldHeight = 324; // total height of the field in inches (doesn't really have to be accurate,
                                             // everything is relative)
 
+    // Built paths are saved here so they don't have to be rebuilt on every boot. The waypoints already depend on the
+    // robot and field profiles, but their names are part of the key too.
+    static final String kPathCacheDirectory = "/home/lvuser/path-cache";
+    static final PathCache kPathCache = new PathCache(kPathCacheDirectory,
+            kRobotProfile.getClass().getName() + " " + kFieldProfile.getClass().getName());
+
     public static Translation2d getRedHopperPosition() {
         Translation2d contactPoint = new Translation2d(
                 kFieldProfile.getRedWallToHopper() + kHopperOffsetX + kRobotProfile.getRedHopperXOffset(),
@@ -112,33 +120,40 @@ public class PathAdapter {
 
     private static Path sRedGearPath = null;
 
+    public static List<Waypoint> getRedGearWaypoints() {
+        ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
+        sWaypoints.add(new Waypoint(getRedStartPose().getTranslation(), 0, kSpeed));
+        sWaypoints.add(new Waypoint(getRedCenterPosition(), kLargeRadius, kSpeed));
+        sWaypoints.add(new Waypoint(getRedGearPositionCorrected(), 0, kSpeed));
+        return sWaypoints;
+    }
+
     public static Path getRedGearPath() {
         if (sRedGearPath == null) {
-            ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
-            sWaypoints.add(new Waypoint(getRedStartPose().getTranslation(), 0, kSpeed));
-            sWaypoints.add(new Waypoint(getRedCenterPosition(), kLargeRadius, kSpeed));
-            sWaypoints.add(new Waypoint(getRedGearPositionCorrected(), 0, kSpeed));
-
-            sRedGearPath = PathBuilder.buildPathFromWaypoints(sWaypoints);
+            sRedGearPath = kPathCache.getPath("red_gear", getRedGearWaypoints());
         }
         return sRedGearPath;
     }
 
     private static Path sRedHopperPath = null;
 
+    public static List<Waypoint> getRedHopperWaypoints() {
+        ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
+        sWaypoints.add(new Waypoint(getRedGearPosition(), 0, kSpeed));
+        sWaypoints.add(new Waypoint(getRedGearTurnPosition(), kSmallRadius, kSpeed));
+        sWaypoints.add(new Waypoint(getRedHopperTurnPosition(), kModerateRadius, kSpeed));
+        sWaypoints.add(new Waypoint(getRedHopperPosition(), kSmallRadius, kSpeed));
+
+        Translation2d redHopperEndPosition = new Translation2d(getRedHopperPosition());
+        redHopperEndPosition.setX(kEndHopperPathX); // move X position to desired place
+        redHopperEndPosition.setY(redHopperEndPosition.y() - kHopperSkew); // TODO make constant
+        sWaypoints.add(new Waypoint(redHopperEndPosition, 0, kSpeed));
+        return sWaypoints;
+    }
+
     public static Path getRedHopperPath() {
         if (sRedHopperPath == null) {
-            ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
-            sWaypoints.add(new Waypoint(getRedGearPosition(), 0, kSpeed));
-            sWaypoints.add(new Waypoint(getRedGearTurnPosition(), kSmallRadius, kSpeed));
-            sWaypoints.add(new Waypoint(getRedHopperTurnPosition(), kModerateRadius, kSpeed));
-            sWaypoints.add(new Waypoint(getRedHopperPosition(), kSmallRadius, kSpeed));
-
-            Translation2d redHopperEndPosition = new Translation2d(getRedHopperPosition());
-            redHopperEndPosition.setX(kEndHopperPathX); // move X position to desired place
-            redHopperEndPosition.setY(redHopperEndPosition.y() - kHopperSkew); // TODO make constant
-            sWaypoints.add(new Waypoint(redHopperEndPosition, 0, kSpeed));
-            sRedHopperPath = PathBuilder.buildPathFromWaypoints(sWaypoints);
+            sRedHopperPath = kPathCache.getPath("red_hopper", getRedHopperWaypoints());
         }
         return sRedHopperPath;
 
@@ -200,43 +215,67 @@ public class PathAdapter {
 
     private static Path sBlueGearPath = null;
 
+    public static List<Waypoint> getBlueGearWaypoints() {
+        ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
+        sWaypoints.add(new Waypoint(getBlueStartPose().getTranslation(), 0, kSpeed));
+        sWaypoints.add(new Waypoint(getBlueCenterPosition(), kLargeRadius, kSpeed));
+        sWaypoints.add(new Waypoint(getBlueGearPositionCorrected(), 0, kSpeed));
+        return sWaypoints;
+    }
+
     public static Path getBlueGearPath() {
         if (sBlueGearPath == null) {
-            ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
-            sWaypoints.add(new Waypoint(getBlueStartPose().getTranslation(), 0, kSpeed));
-            sWaypoints.add(new Waypoint(getBlueCenterPosition(), kLargeRadius, kSpeed));
-            sWaypoints.add(new Waypoint(getBlueGearPositionCorrected(), 0, kSpeed));
-
-            sBlueGearPath = PathBuilder.buildPathFromWaypoints(sWaypoints);
+            sBlueGearPath = kPathCache.getPath("blue_gear", getBlueGearWaypoints());
         }
         return sBlueGearPath;
     }
 
     private static Path sBlueHopperPath = null;
 
+    public static List<Waypoint> getBlueHopperWaypoints() {
+        ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
+        sWaypoints.add(new Waypoint(getBlueGearPosition(), 0, 0));
+        sWaypoints.add(new Waypoint(getBlueGearTurnPosition(), kSmallRadius, kSpeed));
+        sWaypoints.add(new Waypoint(getBlueHopperTurnPosition(), kModerateRadius, kSpeed));
+        sWaypoints.add(new Waypoint(getBlueHopperPosition(), kSmallRadius, kSpeed));
+
+        Translation2d blueHopperEndPosition = new Translation2d(getBlueHopperPosition());
+        blueHopperEndPosition.setX(kEndHopperPathX); // move x position to desired place
+        blueHopperEndPosition.setY(blueHopperEndPosition.y() + kHopperSkew);
+        sWaypoints.add(new Waypoint(blueHopperEndPosition, 0, kSpeed));
+        return sWaypoints;
+    }
+
     public static Path getBlueHopperPath() {
         if (sBlueHopperPath == null) {
-            ArrayList<Waypoint> sWaypoints = new ArrayList<Waypoint>();
-            sWaypoints.add(new Waypoint(getBlueGearPosition(), 0, 0));
-            sWaypoints.add(new Waypoint(getBlueGearTurnPosition(), kSmallRadius, kSpeed));
-            sWaypoints.add(new Waypoint(getBlueHopperTurnPosition(), kModerateRadius, kSpeed));
-            sWaypoints.add(new Waypoint(getBlueHopperPosition(), kSmallRadius, kSpeed));
-
-            Translation2d blueHopperEndPosition = new Translation2d(getBlueHopperPosition());
-            blueHopperEndPosition.setX(kEndHopperPathX); // move x position to desired place
-            blueHopperEndPosition.setY(blueHopperEndPosition.y() + kHopperSkew);
-            sWaypoints.add(new Waypoint(blueHopperEndPosition, 0, kSpeed));
-
-            sBlueHopperPath = PathBuilder.buildPathFromWaypoints(sWaypoints);
+            sBlueHopperPath = kPathCache.getPath("blue_hopper", getBlueHopperWaypoints());
         }
         return sBlueHopperPath;
     }
 
+    /**
+     * Loads any paths that haven't been built yet from the path cache, and builds the ones that aren't cached in
+     * parallel.
+     */
     public static void calculatePaths() {
-        getBlueHopperPath();
-        getRedHopperPath();
-        getBlueGearPath();
-        getRedGearPath();
+        if (sBlueHopperPath != null && sRedHopperPath != null && sBlueGearPath != null && sRedGearPath != null) {
+            return;
+        }
+        List<Path> paths = kPathCache.getPaths(Arrays.asList("blue_hopper", "red_hopper", "blue_gear", "red_gear"),
+                Arrays.asList(getBlueHopperWaypoints(), getRedHopperWaypoints(), getBlueGearWaypoints(),
+                        getRedGearWaypoints()));
+        if (sBlueHopperPath == null) {
+            sBlueHopperPath = paths.get(0);
+        }
+        if (sRedHopperPath == null) {
+            sRedHopperPath = paths.get(1);
+        }
+        if (sBlueGearPath == null) {
+            sBlueGearPath = paths.get(2);
+        }
+        if (sRedGearPath == null) {
+            sRedGearPath = paths.get(3);
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,101 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.auto.actions.Action;
+import com.team254.frc2017.auto.actions.SeriesAction;
+import com.team254.frc2017.paths.BoilerGearToShootBlue;
+import com.team254.frc2017.paths.PathContainer;
+import com.team254.frc2017.paths.StartToBoilerGearBlue;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Translation2d;
+
+import java.util.Arrays;
+
+/**
+ * Runs autonomous modes on SimRobots, off the robot and faster than real time, and reports how long they took and how
+ * well the paths were followed.
+ *
+ * The auto mode classes themselves call the Drive and RobotState singletons (and so need robot hardware), so each mode
+ * is rebuilt here from the Sim actions, step for step.
+ *
+ * Usage: AutoSimulator [number of runs]
+ */
+public class AutoSimulator {
+    public static final double kAutoTimeout = 15.0; // seconds, the length of the autonomous period
+
+    /**
+     * What happened in one run of an auto mode.
+     */
+    public static class Result {
+        public final boolean finished;
+        public final double auto_time;
+        public final double max_cross_track_error;
+        public final double rms_cross_track_error;
+        public final double max_along_track_error;
+        public final RigidTransform2d final_pose;
+        // How far the final pose from RobotState is from where the robot really ended up.
+        public final double final_pose_error;
+
+        public Result(boolean finished, double auto_time, SimRobot robot) {
+            this.finished = finished;
+            this.auto_time = auto_time;
+            this.max_cross_track_error = robot.getDrive().getMaxCrossTrackError();
+            this.rms_cross_track_error = robot.getDrive().getRmsCrossTrackError();
+            this.max_along_track_error = robot.getDrive().getMaxAlongTrackError();
+            this.final_pose = robot.getPlant().getPose();
+            this.final_pose_error = new Translation2d(final_pose.getTranslation(),
+                    robot.getRobotState().getSnapshot().field_to_vehicle.getTranslation()).norm();
+        }
+
+        @Override
+        public String toString() {
+            return (finished ? "finished" : "timed out") + " in " + auto_time + " s, cross track error max "
+                    + max_cross_track_error + " rms " + rms_cross_track_error + ", along track error max "
+                    + max_along_track_error + ", final pose " + final_pose + " (estimate off by " + final_pose_error
+                    + ")";
+        }
+    }
+
+    /**
+     * @see com.team254.frc2017.auto.modes.BoilerGearThenShootModeBlue
+     */
+    public static Action getBoilerGearThenShootModeBlue(SimRobot robot) {
+        PathContainer gearPath = new StartToBoilerGearBlue();
+        return new SeriesAction(Arrays.asList(new SimWaitAction(robot, 2),
+                new SimResetPoseFromPathAction(robot, gearPath), new SimDrivePathAction(robot, gearPath),
+                new SimDrivePathAction(robot, new BoilerGearToShootBlue())));
+    }
+
+    /**
+     * Places the robot at its starting pose and runs the mode on it.
+     */
+    public static Result run(SimRobot robot, RigidTransform2d start_pose, Action mode) {
+        robot.getPlant().setPose(start_pose);
+        final double start_time = robot.getClock().getTime();
+        final boolean finished = robot.runAction(mode, kAutoTimeout);
+        robot.getLooper().stop();
+        return new Result(finished, robot.getClock().getTime() - start_time, robot);
+    }
+
+    public static Result runBoilerGearThenShootModeBlue() {
+        SimRobot robot = new SimRobot();
+        return run(robot, new StartToBoilerGearBlue().getStartPose(), getBoilerGearThenShootModeBlue(robot));
+    }
+
+    public static void main(String[] args) {
+        final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        final Result first = runBoilerGearThenShootModeBlue();
+        System.out.println("BoilerGearThenShootModeBlue: " + first);
+        final long start = System.nanoTime();
+        int mismatches = 0;
+        for (int i = 1; i < runs; ++i) {
+            final Result result = runBoilerGearThenShootModeBlue();
+            if (result.auto_time != first.auto_time || result.rms_cross_track_error != first.rms_cross_track_error) {
+                ++mismatches;
+            }
+        }
+        if (runs > 1) {
+            System.out.println((runs - 1) + " more runs in " + (System.nanoTime() - start) / 1e9 + " s, "
+                    + mismatches + " differed from the first");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.Constants;
+import com.team254.frc2017.DriveSensors;
+import com.team254.frc2017.Kinematics;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+
+/**
+ * A model of the drive base for simulation. Each side of the drive follows its velocity setpoint with a first order
+ * lag, limited by a maximum acceleration and speed (standing in for the Talon velocity loops and the motors), and the
+ * true pose of the robot on the field is integrated from the wheel motion using Kinematics.
+ *
+ * The simulated sensors are read through DriveSensors, like Drive's: encoder distances and velocities in inches, and a
+ * gyro whose angle can be set (like the NavX's) without moving the robot.
+ *
+ * The plant's track scrub factor and encoder scale can differ from what the code assumes (Constants), to see how the
+ * controllers cope with a robot that doesn't match its model.
+ */
+public class DifferentialDrivePlant implements DriveSensors {
+    public static final double kDefaultTimeConstant = 0.05; // seconds
+    public static final double kDefaultMaxAccel = 240.0; // inches per second^2
+    public static final double kDefaultMaxVelocity = 160.0; // inches per second
+
+    public static class Parameters {
+        public final double time_constant;
+        public final double max_accel;
+        public final double max_velocity;
+        // How much the robot really turns for a given wheel speed difference, like Constants.kTrackScrubFactor.
+        public final double track_scrub_factor;
+        // Encoder reading per inch of wheel travel (1 for perfectly measured wheels).
+        public final double encoder_scale;
+
+        public Parameters(double time_constant, double max_accel, double max_velocity) {
+            this(time_constant, max_accel, max_velocity, Constants.kTrackScrubFactor, 1.0);
+        }
+
+        public Parameters(double time_constant, double max_accel, double max_velocity, double track_scrub_factor,
+                double encoder_scale) {
+            this.time_constant = time_constant;
+            this.max_accel = max_accel;
+            this.max_velocity = max_velocity;
+            this.track_scrub_factor = track_scrub_factor;
+            this.encoder_scale = encoder_scale;
+        }
+    }
+
+    private final Parameters mParameters;
+    private RigidTransform2d mPose = new RigidTransform2d();
+    private double mLeftSetpoint = 0, mRightSetpoint = 0;
+    private double mLeftVelocity = 0, mRightVelocity = 0;
+    private double mLeftDistance = 0, mRightDistance = 0;
+    private Rotation2d mGyroOffset = new Rotation2d();
+
+    public DifferentialDrivePlant() {
+        this(new Parameters(kDefaultTimeConstant, kDefaultMaxAccel, kDefaultMaxVelocity));
+    }
+
+    public DifferentialDrivePlant(Parameters parameters) {
+        mParameters = parameters;
+    }
+
+    /**
+     * Places the robot at a pose on the field, at rest. The encoders and gyro keep counting from where they were.
+     */
+    public void setPose(RigidTransform2d pose) {
+        final Rotation2d gyro_angle = getGyroAngle();
+        mPose = pose;
+        mLeftSetpoint = mRightSetpoint = 0;
+        mLeftVelocity = mRightVelocity = 0;
+        setGyroAngle(gyro_angle);
+    }
+
+    /**
+     * @return Where the robot really is, as opposed to where RobotState thinks it is.
+     */
+    public RigidTransform2d getPose() {
+        return mPose;
+    }
+
+    /**
+     * Each side is clamped to the plant's max_velocity; limiting the setpoints the way the robot does is up to the
+     * caller (see DriveController).
+     */
+    public void setVelocitySetpoint(double left_inches_per_sec, double right_inches_per_sec) {
+        mLeftSetpoint = left_inches_per_sec;
+        mRightSetpoint = right_inches_per_sec;
+    }
+
+    private double updateVelocity(double velocity, double setpoint, double dt) {
+        final double max_delta = mParameters.max_accel * dt;
+        final double target = Math.max(-mParameters.max_velocity, Math.min(mParameters.max_velocity, setpoint));
+        final double delta = (target - velocity) * Math.min(1.0, dt / mParameters.time_constant);
+        return velocity + Math.max(-max_delta, Math.min(max_delta, delta));
+    }
+
+    /**
+     * Moves the robot forward by dt seconds.
+     */
+    public void update(double dt) {
+        final double left_velocity = updateVelocity(mLeftVelocity, mLeftSetpoint, dt);
+        final double right_velocity = updateVelocity(mRightVelocity, mRightSetpoint, dt);
+        // Trapezoidal integration of the wheel speeds over the step.
+        final double left_delta = (mLeftVelocity + left_velocity) / 2 * dt;
+        final double right_delta = (mRightVelocity + right_velocity) / 2 * dt;
+        final double delta_rotation = (right_delta - left_delta) * mParameters.track_scrub_factor
+                / Constants.kTrackWidthInches;
+        mPose = Kinematics.integrateForwardKinematics(mPose,
+                Kinematics.forwardKinematics(left_delta, right_delta, delta_rotation));
+        mLeftDistance += left_delta;
+        mRightDistance += right_delta;
+        mLeftVelocity = left_velocity;
+        mRightVelocity = right_velocity;
+    }
+
+    @Override
+    public double getLeftDistanceInches() {
+        return mLeftDistance * mParameters.encoder_scale;
+    }
+
+    @Override
+    public double getRightDistanceInches() {
+        return mRightDistance * mParameters.encoder_scale;
+    }
+
+    @Override
+    public double getLeftVelocityInchesPerSec() {
+        return mLeftVelocity * mParameters.encoder_scale;
+    }
+
+    @Override
+    public double getRightVelocityInchesPerSec() {
+        return mRightVelocity * mParameters.encoder_scale;
+    }
+
+    @Override
+    public Rotation2d getGyroAngle() {
+        return mPose.getRotation().rotateBy(mGyroOffset);
+    }
+
+    public void setGyroAngle(Rotation2d angle) {
+        mGyroOffset = mPose.getRotation().inverse().rotateBy(angle);
+    }
+}
@@ -0,0 +1,278 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.Constants;
+import com.team254.frc2017.paths.StartToBoilerGearBlue;
+import com.team254.lib.util.control.Lookahead;
+import com.team254.lib.util.control.PathFollower;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Translation2d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BoilerGearThenShootModeBlue in simulation many times for each of a set of path following gains, on all cores,
+ * and reports the distribution of auto time and tracking error for each gain set.
+ *
+ * Every run starts from a randomly disturbed situation: the robot is placed off the start pose the paths assume (as
+ * when the field or the robot's placement is off by a little), and its drive doesn't quite match Constants (response
+ * time, acceleration, scrub factor, encoder scale). Sample i is disturbed the same way for every gain set, so
+ * differences between gain sets come from the gains and not from luck.
+ *
+ * Usage: MonteCarloSweep [samples per gain set] [seed]
+ */
+public class MonteCarloSweep {
+    public static final double kStartPositionStdDev = 2.0; // inches
+    public static final double kStartHeadingStdDev = 2.0; // degrees
+    public static final double kMinTimeConstant = 0.03; // seconds
+    public static final double kMaxTimeConstant = 0.10; // seconds
+    public static final double kMinMaxAccel = 180.0; // inches per second^2
+    public static final double kMaxMaxAccel = 300.0; // inches per second^2
+    public static final double kTrackScrubFactorStdDev = 0.03;
+    public static final double kEncoderScaleStdDev = 0.01;
+
+    /**
+     * The randomized starting conditions for one run.
+     */
+    public static class Sample {
+        public final RigidTransform2d start_pose;
+        public final DifferentialDrivePlant.Parameters plant_parameters;
+
+        public Sample(RigidTransform2d start_pose, DifferentialDrivePlant.Parameters plant_parameters) {
+            this.start_pose = start_pose;
+            this.plant_parameters = plant_parameters;
+        }
+
+        public static Sample random(Random random, RigidTransform2d nominal_start_pose) {
+            final RigidTransform2d start_pose = nominal_start_pose.transformBy(new RigidTransform2d(
+                    new Translation2d(random.nextGaussian() * kStartPositionStdDev,
+                            random.nextGaussian() * kStartPositionStdDev),
+                    Rotation2d.fromDegrees(random.nextGaussian() * kStartHeadingStdDev)));
+            return new Sample(start_pose,
+                    new DifferentialDrivePlant.Parameters(
+                            kMinTimeConstant + random.nextDouble() * (kMaxTimeConstant - kMinTimeConstant),
+                            kMinMaxAccel + random.nextDouble() * (kMaxMaxAccel - kMinMaxAccel),
+                            DifferentialDrivePlant.kDefaultMaxVelocity,
+                            Constants.kTrackScrubFactor + random.nextGaussian() * kTrackScrubFactorStdDev,
+                            1.0 + random.nextGaussian() * kEncoderScaleStdDev));
+        }
+    }
+
+    /**
+     * Path following parameters to try, with a name to report them by.
+     */
+    public static class GainSet {
+        public final String name;
+        public final PathFollower.Parameters parameters;
+
+        public GainSet(String name, PathFollower.Parameters parameters) {
+            this.name = name;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * The values of one statistic over all the runs of a gain set.
+     */
+    public static class Distribution {
+        private final double[] sorted_;
+
+        public Distribution(double[] values) {
+            sorted_ = Arrays.copyOf(values, values.length);
+            Arrays.sort(sorted_);
+        }
+
+        /**
+         * @return The nearest-rank percentile (0.5 for the median), or NaN if there are no values.
+         */
+        public double getPercentile(double percentile) {
+            if (sorted_.length == 0) {
+                return Double.NaN;
+            }
+            return sorted_[Math.max(0, Math.min(sorted_.length - 1, (int) Math.ceil(percentile * sorted_.length) - 1))];
+        }
+
+        public double getMean() {
+            double sum = 0.0;
+            for (double value : sorted_) {
+                sum += value;
+            }
+            return sorted_.length == 0 ? Double.NaN : sum / sorted_.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %.3f p90 %.3f p99 %.3f max %.3f", getPercentile(0.5), getPercentile(0.9),
+                    getPercentile(0.99), getPercentile(1.0));
+        }
+    }
+
+    /**
+     * How a gain set did over all of its runs. The time and error distributions only include runs that finished.
+     */
+    public static class Summary {
+        public final GainSet gain_set;
+        public final int runs;
+        public final int failures;
+        public final Distribution auto_time;
+        public final Distribution max_cross_track_error;
+        public final Distribution rms_cross_track_error;
+        public final Distribution max_along_track_error;
+
+        public Summary(GainSet gain_set, List<AutoSimulator.Result> results) {
+            this.gain_set = gain_set;
+            this.runs = results.size();
+            int finished = 0;
+            for (AutoSimulator.Result result : results) {
+                if (result.finished) {
+                    ++finished;
+                }
+            }
+            this.failures = runs - finished;
+            double[] auto_time = new double[finished];
+            double[] max_cross_track_error = new double[finished];
+            double[] rms_cross_track_error = new double[finished];
+            double[] max_along_track_error = new double[finished];
+            int i = 0;
+            for (AutoSimulator.Result result : results) {
+                if (result.finished) {
+                    auto_time[i] = result.auto_time;
+                    max_cross_track_error[i] = result.max_cross_track_error;
+                    rms_cross_track_error[i] = result.rms_cross_track_error;
+                    max_along_track_error[i] = result.max_along_track_error;
+                    ++i;
+                }
+            }
+            this.auto_time = new Distribution(auto_time);
+            this.max_cross_track_error = new Distribution(max_cross_track_error);
+            this.rms_cross_track_error = new Distribution(rms_cross_track_error);
+            this.max_along_track_error = new Distribution(max_along_track_error);
+        }
+
+        @Override
+        public String toString() {
+            return gain_set.name + ": " + (runs - failures) + "/" + runs + " finished\n    auto time (s)        "
+                    + auto_time + "\n    max cross track (in) " + max_cross_track_error
+                    + "\n    rms cross track (in) " + rms_cross_track_error + "\n    max along track (in) "
+                    + max_along_track_error;
+        }
+    }
+
+    /**
+     * Drive's parameters with a different profile kp, lookahead and inertia gain.
+     */
+    public static PathFollower.Parameters getPathFollowerParameters(double profile_kp, double lookahead_scale,
+            double inertia_gain) {
+        return new PathFollower.Parameters(
+                new Lookahead(Constants.kMinLookAhead * lookahead_scale, Constants.kMaxLookAhead * lookahead_scale,
+                        Constants.kMinLookAheadSpeed, Constants.kMaxLookAheadSpeed),
+                inertia_gain, profile_kp, Constants.kPathFollowingProfileKi, Constants.kPathFollowingProfileKv,
+                Constants.kPathFollowingProfileKffv, Constants.kPathFollowingProfileKffa,
+                Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
+                Constants.kPathFollowingGoalPosTolerance, Constants.kPathFollowingGoalVelTolerance,
+                Constants.kPathStopSteeringDistance);
+    }
+
+    /**
+     * A grid around the gains in Constants: half, the same and double the profile kp, three lookahead distances and
+     * three inertia gains.
+     */
+    public static List<GainSet> getDefaultGainSets() {
+        List<GainSet> gain_sets = new ArrayList<>();
+        for (double kp_scale : new double[] { 0.5, 1.0, 2.0 }) {
+            for (double lookahead_scale : new double[] { 0.75, 1.0, 1.5 }) {
+                for (double inertia_gain : new double[] { 0.0, 0.002, 0.004 }) {
+                    final double kp = Constants.kPathFollowingProfileKp * kp_scale;
+                    gain_sets.add(new GainSet(
+                            "kp " + kp + ", lookahead " + Constants.kMinLookAhead * lookahead_scale + "-"
+                                    + Constants.kMaxLookAhead * lookahead_scale + ", inertia " + inertia_gain,
+                            getPathFollowerParameters(kp, lookahead_scale, inertia_gain)));
+                }
+            }
+        }
+        return gain_sets;
+    }
+
+    private static AutoSimulator.Result runSample(GainSet gain_set, Sample sample) {
+        SimRobot robot = new SimRobot(new DifferentialDrivePlant(sample.plant_parameters), gain_set.parameters);
+        return AutoSimulator.run(robot, sample.start_pose, AutoSimulator.getBoilerGearThenShootModeBlue(robot));
+    }
+
+    /**
+     * Runs every gain set on the same samples, spread over threads threads.
+     *
+     * @return One summary per gain set, in the same order.
+     */
+    public static List<Summary> run(List<GainSet> gain_sets, int samples_per_gain_set, long seed, int threads)
+            throws InterruptedException, ExecutionException {
+        final RigidTransform2d nominal_start_pose = new StartToBoilerGearBlue().getStartPose();
+        final Random random = new Random(seed);
+        final List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < samples_per_gain_set; ++i) {
+            samples.add(Sample.random(random, nominal_start_pose));
+        }
+
+        // Build (or load) the paths before starting, so the worker threads don't all try to at once.
+        AutoSimulator.getBoilerGearThenShootModeBlue(new SimRobot());
+
+        final AtomicInteger thread_count = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("MonteCarloSweep-" + thread_count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<List<Future<AutoSimulator.Result>>> futures = new ArrayList<>();
+            for (GainSet gain_set : gain_sets) {
+                List<Future<AutoSimulator.Result>> gain_set_futures = new ArrayList<>();
+                for (Sample sample : samples) {
+                    gain_set_futures.add(
+                            executor.submit((Callable<AutoSimulator.Result>) () -> runSample(gain_set, sample)));
+                }
+                futures.add(gain_set_futures);
+            }
+            List<Summary> summaries = new ArrayList<>();
+            for (int i = 0; i < gain_sets.size(); ++i) {
+                List<AutoSimulator.Result> results = new ArrayList<>();
+                for (Future<AutoSimulator.Result> future : futures.get(i)) {
+                    results.add(future.get());
+                }
+                summaries.add(new Summary(gain_sets.get(i), results));
+            }
+            return summaries;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        final int samples = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final long seed = args.length > 1 ? Long.parseLong(args[1]) : 254;
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final List<GainSet> gain_sets = getDefaultGainSets();
+        System.out.println("Running " + gain_sets.size() + " gain sets x " + samples + " samples on " + threads
+                + " threads");
+        final long start = System.nanoTime();
+        List<Summary> summaries = new ArrayList<>(run(gain_sets, samples, seed, threads));
+        System.out.println("Done in " + (System.nanoTime() - start) / 1e9 + " s");
+
+        // Fewest failures first, then fastest p90 auto time.
+        Collections.sort(summaries, Comparator.comparingInt((Summary s) -> s.failures)
+                .thenComparingDouble(s -> s.auto_time.getPercentile(0.9)));
+        for (Summary summary : summaries) {
+            System.out.println(summary);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.team254.frc2017.sim;
+
+/**
+ * Simulated time, in seconds. Only moves when advanced, so a simulation gives the same answer no matter how fast the
+ * computer running it is.
+ */
+public class SimClock {
+    private double mTime;
+
+    public SimClock() {
+        this(0.0);
+    }
+
+    public SimClock(double start_time) {
+        mTime = start_time;
+    }
+
+    public double getTime() {
+        return mTime;
+    }
+
+    public void advance(double dt) {
+        mTime += dt;
+    }
+}
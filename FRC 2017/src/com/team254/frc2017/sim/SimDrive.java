@@ -0,0 +1,123 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.DriveController;
+import com.team254.frc2017.Kinematics;
+import com.team254.frc2017.RobotState;
+import com.team254.frc2017.loops.Loop;
+import com.team254.lib.util.control.Path;
+import com.team254.lib.util.control.PathFollower;
+
+/**
+ * The path following half of Drive, driving a DifferentialDrivePlant instead of Talons. The setpoints come from the
+ * same DriveController.updatePathFollower that Drive calls, so what it does in simulation is what the robot would do,
+ * up to how good the plant model is.
+ *
+ * Also keeps track of how well each path was followed.
+ *
+ * @see com.team254.frc2017.subsystems.Drive
+ */
+public class SimDrive implements Loop {
+    private final DifferentialDrivePlant mPlant;
+    private final RobotState mRobotState;
+    private final PathFollower.Parameters mPathFollowerParameters;
+
+    private PathFollower mPathFollower = null;
+    private Path mCurrentPath = null;
+    private double mCrossTrackError = 0.0;
+    private double mAlongTrackError = 0.0;
+
+    private int mNumSamples = 0;
+    private double mSumSquaredCrossTrackError = 0.0;
+    private double mMaxCrossTrackError = 0.0;
+    private double mMaxAlongTrackError = 0.0;
+
+    public SimDrive(DifferentialDrivePlant plant, RobotState robot_state) {
+        this(plant, robot_state, DriveController.getPathFollowerParameters());
+    }
+
+    public SimDrive(DifferentialDrivePlant plant, RobotState robot_state,
+            PathFollower.Parameters path_follower_parameters) {
+        mPlant = plant;
+        mRobotState = robot_state;
+        mPathFollowerParameters = path_follower_parameters;
+    }
+
+    @Override
+    public void onStart(double timestamp) {
+        stop();
+    }
+
+    @Override
+    public void onLoop(double timestamp) {
+        if (mPathFollower == null) {
+            return;
+        }
+        Kinematics.DriveVelocity setpoint = DriveController.updatePathFollower(mPathFollower, timestamp,
+                mRobotState.getSnapshot());
+        mPlant.setVelocitySetpoint(setpoint.left, setpoint.right);
+        mCrossTrackError = mPathFollower.getCrossTrackError();
+        mAlongTrackError = mPathFollower.getAlongTrackError();
+        ++mNumSamples;
+        mSumSquaredCrossTrackError += mCrossTrackError * mCrossTrackError;
+        mMaxCrossTrackError = Math.max(mMaxCrossTrackError, Math.abs(mCrossTrackError));
+        mMaxAlongTrackError = Math.max(mMaxAlongTrackError, Math.abs(mAlongTrackError));
+    }
+
+    @Override
+    public void onStop(double timestamp) {
+        stop();
+    }
+
+    public void stop() {
+        mPathFollower = null;
+        mCurrentPath = null;
+        mPlant.setVelocitySetpoint(0, 0);
+    }
+
+    /**
+     * Starts following a path, like Drive.setWantDrivePath. The path is consumed as it is followed, so pass a copy of
+     * any path that will be driven again.
+     */
+    public void setWantDrivePath(Path path, boolean reversed) {
+        if (mCurrentPath != path || mPathFollower == null) {
+            mRobotState.resetDistanceDriven();
+            mPathFollower = new PathFollower(path, reversed, mPathFollowerParameters);
+            mCurrentPath = path;
+            mCrossTrackError = 0.0;
+            mAlongTrackError = 0.0;
+        } else {
+            mPlant.setVelocitySetpoint(0, 0);
+        }
+    }
+
+    public boolean isDoneWithPath() {
+        return mPathFollower == null || mPathFollower.isFinished();
+    }
+
+    public boolean hasPassedMarker(String marker) {
+        return mPathFollower != null && mPathFollower.hasPassedMarker(marker);
+    }
+
+    public double getCrossTrackError() {
+        return mCrossTrackError;
+    }
+
+    public double getAlongTrackError() {
+        return mAlongTrackError;
+    }
+
+    public double getMaxCrossTrackError() {
+        return mMaxCrossTrackError;
+    }
+
+    public double getMaxAlongTrackError() {
+        return mMaxAlongTrackError;
+    }
+
+    /**
+     * @return The root mean square cross track error over every loop spent following a path.
+     */
+    public double getRmsCrossTrackError() {
+        return mNumSamples == 0 ? 0.0 : Math.sqrt(mSumSquaredCrossTrackError / mNumSamples);
+    }
+}
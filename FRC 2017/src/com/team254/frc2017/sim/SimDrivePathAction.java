@@ -0,0 +1,42 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.auto.actions.Action;
+import com.team254.frc2017.paths.PathContainer;
+import com.team254.lib.util.control.Path;
+
+/**
+ * DrivePathAction for a SimRobot. Drives a copy of the container's path, since PathAdapter hands out the same Path
+ * every time and following a path consumes it.
+ *
+ * @see com.team254.frc2017.auto.actions.DrivePathAction
+ */
+public class SimDrivePathAction implements Action {
+    private final SimDrive mDrive;
+    private final PathContainer mPathContainer;
+    private final Path mPath;
+
+    public SimDrivePathAction(SimRobot robot, PathContainer p) {
+        mDrive = robot.getDrive();
+        mPathContainer = p;
+        mPath = new Path(mPathContainer.buildPath());
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mDrive.isDoneWithPath();
+    }
+
+    @Override
+    public void update() {
+        // Nothing done here, controller updates in the SimLooper
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void start() {
+        mDrive.setWantDrivePath(mPath, mPathContainer.isReversed());
+    }
+}
@@ -0,0 +1,85 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.Constants;
+import com.team254.frc2017.loops.Loop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs Loops in simulated time. Unlike Looper, there is no Notifier thread: each call to step() advances the clock by
+ * one period and runs every loop that is due, in the order they were registered, on the calling thread.
+ *
+ * @see com.team254.frc2017.loops.Looper
+ */
+public class SimLooper {
+    public final double kPeriod = Constants.kLooperDt;
+
+    private static class ScheduledLoop {
+        public final Loop loop;
+        public final int divisor;
+
+        public ScheduledLoop(Loop loop, int divisor) {
+            this.loop = loop;
+            this.divisor = divisor;
+        }
+    }
+
+    private final SimClock mClock;
+    private final List<ScheduledLoop> mLoops = new ArrayList<>();
+    private boolean mRunning = false;
+    private long mTick = 0;
+
+    public SimLooper(SimClock clock) {
+        mClock = clock;
+    }
+
+    public void register(Loop loop) {
+        register(loop, kPeriod);
+    }
+
+    /**
+     * Registers a loop to run once every period seconds. The period is rounded to the nearest multiple of kPeriod, as
+     * in Looper.
+     */
+    public void register(Loop loop, double period) {
+        mLoops.add(new ScheduledLoop(loop, Math.max(1, (int) Math.round(period / kPeriod))));
+    }
+
+    public void start() {
+        if (!mRunning) {
+            mTick = 0;
+            for (ScheduledLoop scheduled : mLoops) {
+                scheduled.loop.onStart(mClock.getTime());
+            }
+            mRunning = true;
+        }
+    }
+
+    /**
+     * Advances the clock by one period and runs the loops that are due.
+     */
+    public void step() {
+        mClock.advance(kPeriod);
+        if (!mRunning) {
+            return;
+        }
+        final double now = mClock.getTime();
+        for (int i = 0; i < mLoops.size(); ++i) {
+            ScheduledLoop scheduled = mLoops.get(i);
+            if (mTick % scheduled.divisor == 0) {
+                scheduled.loop.onLoop(now);
+            }
+        }
+        ++mTick;
+    }
+
+    public void stop() {
+        if (mRunning) {
+            mRunning = false;
+            for (ScheduledLoop scheduled : mLoops) {
+                scheduled.loop.onStop(mClock.getTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.auto.actions.RunOnceAction;
+import com.team254.frc2017.paths.PathContainer;
+import com.team254.lib.util.math.RigidTransform2d;
+
+/**
+ * ResetPoseFromPathAction for a SimRobot. Like the real one, this only changes where the robot thinks it is (and the
+ * gyro angle), not where it actually is.
+ *
+ * @see com.team254.frc2017.auto.actions.ResetPoseFromPathAction
+ */
+public class SimResetPoseFromPathAction extends RunOnceAction {
+    private final SimRobot mRobot;
+    private final PathContainer mPathContainer;
+
+    public SimResetPoseFromPathAction(SimRobot robot, PathContainer pathContainer) {
+        mRobot = robot;
+        mPathContainer = pathContainer;
+    }
+
+    @Override
+    public void runOnce() {
+        RigidTransform2d startPose = mPathContainer.getStartPose();
+        mRobot.getRobotState().reset(mRobot.getClock().getTime(), startPose);
+        mRobot.getPlant().setGyroAngle(startPose.getRotation());
+    }
+}
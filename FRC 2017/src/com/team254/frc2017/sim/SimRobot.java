@@ -0,0 +1,82 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.DriveController;
+import com.team254.frc2017.RobotState;
+import com.team254.frc2017.auto.actions.Action;
+import com.team254.frc2017.loops.RobotStateEstimator;
+import com.team254.lib.util.control.PathFollower;
+
+/**
+ * A simulated robot: its own clock, drive plant, RobotState, estimator and drive loop, wired together the way Robot
+ * wires the real ones. Nothing is shared with other SimRobots or with the real singletons, so several can run at once
+ * on different threads, and running the same actions on two fresh SimRobots gives exactly the same result.
+ */
+public class SimRobot {
+    private final SimClock mClock = new SimClock();
+    private final DifferentialDrivePlant mPlant;
+    private final RobotState mRobotState = new RobotState();
+    private final SimDrive mDrive;
+    private final SimLooper mLooper = new SimLooper(mClock);
+
+    public SimRobot() {
+        this(new DifferentialDrivePlant(), DriveController.getPathFollowerParameters());
+    }
+
+    public SimRobot(DifferentialDrivePlant plant, PathFollower.Parameters path_follower_parameters) {
+        mPlant = plant;
+        mDrive = new SimDrive(mPlant, mRobotState, path_follower_parameters);
+        // Same order as the enabled looper: estimate the state, then control from it.
+        mLooper.register(new RobotStateEstimator(mRobotState, mPlant));
+        mLooper.register(mDrive);
+    }
+
+    public SimClock getClock() {
+        return mClock;
+    }
+
+    public DifferentialDrivePlant getPlant() {
+        return mPlant;
+    }
+
+    public RobotState getRobotState() {
+        return mRobotState;
+    }
+
+    public SimDrive getDrive() {
+        return mDrive;
+    }
+
+    public SimLooper getLooper() {
+        return mLooper;
+    }
+
+    /**
+     * Moves the plant forward one loop period, then runs the loops on what the sensors read.
+     */
+    public void step() {
+        mPlant.update(mLooper.kPeriod);
+        mLooper.step();
+    }
+
+    /**
+     * Runs an action to completion the way AutoActionRunner does, one update per loop period.
+     *
+     * @return True if the action finished within timeout seconds. Otherwise it is stopped (done is called) at the
+     *         timeout.
+     */
+    public boolean runAction(Action action, double timeout) {
+        mLooper.start();
+        final double end_time = mClock.getTime() + timeout;
+        action.start();
+        while (mClock.getTime() < end_time) {
+            step();
+            if (action.isFinished()) {
+                action.done();
+                return true;
+            }
+            action.update();
+        }
+        action.done();
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.team254.frc2017.sim;
+
+import com.team254.frc2017.auto.actions.Action;
+
+/**
+ * WaitAction on simulated time.
+ *
+ * @see com.team254.frc2017.auto.actions.WaitAction
+ */
+public class SimWaitAction implements Action {
+    private final SimClock mClock;
+    private final double mTimeToWait;
+    private double mStartTime;
+
+    public SimWaitAction(SimRobot robot, double timeToWait) {
+        mClock = robot.getClock();
+        mTimeToWait = timeToWait;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mClock.getTime() - mStartTime >= mTimeToWait;
+    }
+
+    @Override
+    public void update() {
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void start() {
+        mStartTime = mClock.getTime();
+    }
+}
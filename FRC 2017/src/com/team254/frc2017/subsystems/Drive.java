@@ -3,18 +3,19 @@ package com.team254.frc2017.subsystems;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 
 import com.team254.frc2017.Constants;
+import com.team254.frc2017.DriveController;
+import com.team254.frc2017.DriveSensors;
 import com.team254.frc2017.Kinematics;
 import com.team254.frc2017.RobotState;
 import com.team254.frc2017.loops.Loop;
 import com.team254.frc2017.loops.Looper;
 import com.team254.lib.util.DriveSignal;
-import com.team254.lib.util.ReflectingCSVWriter;
+import com.team254.lib.util.MappedTelemetryLog;
+import com.team254.lib.util.TelemetryRegistry;
 import com.team254.lib.util.Util;
-import com.team254.lib.util.control.Lookahead;
 import com.team254.lib.util.control.Path;
 import com.team254.lib.util.control.PathFollower;
 import com.team254.lib.util.drivers.NavX;
@@ -34,7 +35,7 @@ import java.util.Optional;
  * 
  * @see Subsystem.java
  */
-public class Drive extends Subsystem {
+public class Drive extends Subsystem implements DriveSensors {
 
     private static Drive mInstance = new Drive();
 
@@ -94,11 +95,23 @@ public class Drive extends Subsystem {
     private Path mCurrentPath = null;
 
     // Hardware states
-    private boolean mIsOnTarget = false;
+    private volatile boolean mIsOnTarget = false;
     private boolean mIsApproaching = false;
 
     // Logging
-    private final ReflectingCSVWriter<PathFollower.DebugOutput> mCSVWriter;
+    private final MappedTelemetryLog<PathFollower.DebugOutput> mPathFollowerLog;
+
+    // Telemetry
+    private final TelemetryRegistry mTelemetry = TelemetryRegistry.getInstance();
+    private final int mLeftSpeedChannel = mTelemetry.registerNumber("left speed (ips)");
+    private final int mRightSpeedChannel = mTelemetry.registerNumber("right speed (ips)");
+    private final int mCrossTrackErrorChannel = mTelemetry.registerNumber("drive CTE");
+    private final int mAlongTrackErrorChannel = mTelemetry.registerNumber("drive ATE");
+    private final int mLeftPositionChannel = mTelemetry.registerNumber("left position (rotations)");
+    private final int mRightPositionChannel = mTelemetry.registerNumber("right position (rotations)");
+    private final int mGyroVelocityChannel = mTelemetry.registerNumber("gyro vel");
+    private final int mGyroPositionChannel = mTelemetry.registerNumber("gyro pos");
+    private final int mOnTargetChannel = mTelemetry.registerBoolean("drive on target");
 
     private final Loop mLoop = new Loop() {
         @Override
@@ -113,34 +126,53 @@ public class Drive extends Subsystem {
         @Override
         public void onLoop(double timestamp) {
             synchronized (Drive.this) {
+                double cross_track_error = 0.0;
+                double along_track_error = 0.0;
                 switch (mDriveControlState) {
                 case OPEN_LOOP:
-                    return;
+                    break;
                 case VELOCITY_SETPOINT:
-                    return;
+                    break;
                 case PATH_FOLLOWING:
                     if (mPathFollower != null) {
                         updatePathFollower(timestamp);
-                        mCSVWriter.add(mPathFollower.getDebug());
+                        cross_track_error = mPathFollower.getCrossTrackError();
+                        along_track_error = mPathFollower.getAlongTrackError();
+                        mPathFollowerLog.add(mPathFollower.getDebug());
                     }
-                    return;           
+                    break;
                 case TURN_TO_HEADING:
                     updateTurnToHeading(timestamp);
-                    return;                                
+                    break;
                 default:
                     System.out.println("Unexpected drive control state: " + mDriveControlState);
                     break;
                 }
+                publishLoopState(cross_track_error, along_track_error);
             }
         }
 
         @Override
         public void onStop(double timestamp) {
             stop();
-            mCSVWriter.flush();
+            synchronized (Drive.this) {
+                publishLoopState(0.0, 0.0);
+            }
+            mPathFollowerLog.flush();
         }
     };
 
+    /**
+     * The drive loop is the only writer of the tracking error and gyro channels, so publishing them never needs the
+     * Drive lock on the dashboard thread.
+     */
+    private void publishLoopState(double cross_track_error, double along_track_error) {
+        mTelemetry.set(mCrossTrackErrorChannel, cross_track_error);
+        mTelemetry.set(mAlongTrackErrorChannel, along_track_error);
+        mTelemetry.set(mGyroVelocityChannel, mNavXBoard.getYawRateDegreesPerSec());
+        mTelemetry.set(mGyroPositionChannel, mNavXBoard.getYaw().getDegrees());
+    }
+
     private Drive() {
         // Start all Talons in open loop mode.
         
@@ -154,7 +186,8 @@ public class Drive extends Subsystem {
         // Path Following stuff
         mNavXBoard = new NavX(SPI.Port.kMXP);
 
-        mCSVWriter = new ReflectingCSVWriter<PathFollower.DebugOutput>("/home/lvuser/PATH-FOLLOWER-LOGS.csv",
+        // Convert to CSV with BinaryLogToCSV after copying the PATH-FOLLOWER-LOGS.*.seg files off the robot.
+        mPathFollowerLog = new MappedTelemetryLog<PathFollower.DebugOutput>("/home/lvuser/PATH-FOLLOWER-LOGS",
                 PathFollower.DebugOutput.class);
     }
 
@@ -172,7 +205,7 @@ public class Drive extends Subsystem {
             mLeftMaster.changeControlMode(NidecMotor.NidecControlMode.Only_PWM);
             mRightMaster.changeControlMode(NidecMotor.NidecControlMode.Only_PWM);
             
-            mDriveControlState = DriveControlState.OPEN_LOOP;          
+            mDriveControlState = DriveControlState.OPEN_LOOP;
         }
         // Right side is reversed, but reverseOutput doesn't invert PercentVBus.
         // So set negative on the right master.
@@ -206,8 +239,8 @@ public class Drive extends Subsystem {
     public void outputToSmartDashboard() {
         final double left_speed = getLeftVelocityInchesPerSec();
         final double right_speed = getRightVelocityInchesPerSec();   
-        SmartDashboard.putNumber("left speed (ips)", left_speed);
-        SmartDashboard.putNumber("right speed (ips)", right_speed);
+        mTelemetry.set(mLeftSpeedChannel, left_speed);
+        mTelemetry.set(mRightSpeedChannel, right_speed);
         /*if (usesTalonVelocityControl(mDriveControlState)) {
             SmartDashboard.putNumber("left speed error (ips)",
                     rpmToInchesPerSecond(mLeftMaster.getSetpoint()) - left_speed);
@@ -217,20 +250,10 @@ public class Drive extends Subsystem {
             SmartDashboard.putNumber("left speed error (ips)", 0.0);
             SmartDashboard.putNumber("right speed error (ips)", 0.0);
         }*/
-        synchronized (this) {
-            if (mDriveControlState == DriveControlState.PATH_FOLLOWING && mPathFollower != null) {
-                SmartDashboard.putNumber("drive CTE", mPathFollower.getCrossTrackError());
-                SmartDashboard.putNumber("drive ATE", mPathFollower.getAlongTrackError());
-            } else {
-                SmartDashboard.putNumber("drive CTE", 0.0);
-                SmartDashboard.putNumber("drive ATE", 0.0);
-            }
-        }
-        SmartDashboard.putNumber("left position (rotations)", mLeftMaster.getPosition());
-        SmartDashboard.putNumber("right position (rotations)", mRightMaster.getPosition());
-        SmartDashboard.putNumber("gyro vel", getGyroVelocityDegreesPerSec());
-        SmartDashboard.putNumber("gyro pos", getGyroAngle().getDegrees());
-        SmartDashboard.putBoolean("drive on target", isOnTarget());
+        // The tracking error and gyro channels are set by the drive loop (see publishLoopState).
+        mTelemetry.set(mLeftPositionChannel, mLeftMaster.getPosition());
+        mTelemetry.set(mRightPositionChannel, mRightMaster.getPosition());
+        mTelemetry.set(mOnTargetChannel, isOnTarget());
     }
 
     public synchronized void resetEncoders() {
@@ -283,11 +306,10 @@ public class Drive extends Subsystem {
      */
     private synchronized void updateVelocitySetpoint(double left_inches_per_sec, double right_inches_per_sec) {
         if (usesTalonVelocityControl(mDriveControlState)) {
-            final double max_desired = Math.max(Math.abs(left_inches_per_sec), Math.abs(right_inches_per_sec));
-            final double scale = max_desired > Constants.kDriveHighGearMaxSetpoint
-                    ? Constants.kDriveHighGearMaxSetpoint / max_desired : 1.0;
-            mLeftMaster.set(inchesPerSecondToRpm(left_inches_per_sec * scale));
-            mRightMaster.set(inchesPerSecondToRpm(right_inches_per_sec * scale));
+            final Kinematics.DriveVelocity setpoint = DriveController.limitVelocity(left_inches_per_sec,
+                    right_inches_per_sec);
+            mLeftMaster.set(inchesPerSecondToRpm(setpoint.left));
+            mRightMaster.set(inchesPerSecondToRpm(setpoint.right));
         } else {
             System.out.println("Hit a bad velocity control state");
             mLeftMaster.set(0);
@@ -328,22 +350,27 @@ public class Drive extends Subsystem {
         return inchesToRotations(inches_per_second) * 60;
     }
 
+    @Override
     public double getLeftDistanceInches() {
         return rotationsToInches(mLeftMaster.getPosition());
     }
 
+    @Override
     public double getRightDistanceInches() {
         return rotationsToInches(mRightMaster.getPosition());
     }
 
+    @Override
     public double getLeftVelocityInchesPerSec() {
         return rpmToInchesPerSecond(mLeftMaster.getSpeed());
     }
 
+    @Override
     public double getRightVelocityInchesPerSec() {
         return rpmToInchesPerSecond(mRightMaster.getSpeed());
     }
 
+    @Override
     public synchronized Rotation2d getGyroAngle() {
         return mNavXBoard.getYaw();
     }
@@ -373,7 +400,7 @@ public class Drive extends Subsystem {
             // keep position.
             return;
         }*/
-        final Rotation2d field_to_robot = mRobotState.getLatestFieldToVehicle().getValue().getRotation();
+        final Rotation2d field_to_robot = mRobotState.getSnapshot().field_to_vehicle.getRotation();
 
         // Figure out the rotation necessary to turn to face the goal.
         final Rotation2d robot_to_target = field_to_robot.inverse().rotateBy(mTargetHeading);
@@ -401,18 +428,12 @@ public class Drive extends Subsystem {
      * pose, distance driven, and velocity, the updates the wheel velocity setpoints.
      */
     private void updatePathFollower(double timestamp) {
-        RigidTransform2d robot_pose = mRobotState.getLatestFieldToVehicle().getValue();
-        Twist2d command = mPathFollower.update(timestamp, robot_pose,
-                RobotState.getInstance().getDistanceDriven(), RobotState.getInstance().getPredictedVelocity().dx);
-        if (!mPathFollower.isFinished()) {
-            Kinematics.DriveVelocity setpoint = Kinematics.inverseKinematics(command);
-            updateVelocitySetpoint(setpoint.left, setpoint.right);
-        } else {
-            updateVelocitySetpoint(0, 0);
-        }
+        Kinematics.DriveVelocity setpoint = DriveController.updatePathFollower(mPathFollower, timestamp,
+                mRobotState.getSnapshot());
+        updateVelocitySetpoint(setpoint.left, setpoint.right);
     }
 
-    public synchronized boolean isOnTarget() {
+    public boolean isOnTarget() {
         // return true;
         return mIsOnTarget;
     }
@@ -443,16 +464,7 @@ public class Drive extends Subsystem {
         if (mCurrentPath != path || mDriveControlState != DriveControlState.PATH_FOLLOWING) {
             configureTalonsForSpeedControl();
             RobotState.getInstance().resetDistanceDriven();
-            mPathFollower = new PathFollower(path, reversed,
-                    new PathFollower.Parameters(
-                            new Lookahead(Constants.kMinLookAhead, Constants.kMaxLookAhead,
-                                    Constants.kMinLookAheadSpeed, Constants.kMaxLookAheadSpeed),
-                            Constants.kInertiaSteeringGain, Constants.kPathFollowingProfileKp,
-                            Constants.kPathFollowingProfileKi, Constants.kPathFollowingProfileKv,
-                            Constants.kPathFollowingProfileKffv, Constants.kPathFollowingProfileKffa,
-                            Constants.kPathFollowingMaxVel, Constants.kPathFollowingMaxAccel,
-                            Constants.kPathFollowingGoalPosTolerance, Constants.kPathFollowingGoalVelTolerance,
-                            Constants.kPathStopSteeringDistance));
+            mPathFollower = new PathFollower(path, reversed, DriveController.getPathFollowerParameters());
             mDriveControlState = DriveControlState.PATH_FOLLOWING;
             mCurrentPath = path;
         } else {
@@ -509,7 +521,7 @@ public class Drive extends Subsystem {
 
     @Override
     public void writeToLog() {
-        mCSVWriter.write();
+        // The path follower log is memory mapped, so the OS writes it to disk.
     }
 
     public boolean checkSystem() {
@@ -4,6 +4,7 @@ import edu.wpi.first.wpilibj.Timer;
 import com.team254.frc2017.Constants;
 import com.team254.frc2017.loops.Loop;
 import com.team254.frc2017.loops.Looper;
+import com.team254.lib.util.StateMachine;
 import com.team254.lib.util.Util;
 import com.team254.lib.util.drivers.IRSensor;
 import com.team254.lib.util.drivers.NidecMotor;
@@ -40,7 +41,8 @@ public class Feeder extends Subsystem {
        
         mIRInitial = new IRSensor(Constants.kFeederIRInitialPort, Constants.kFeederIRInitialMin, Constants.kFeederIRInitialMax);
         mIRFinal = new IRSensor(Constants.kFeederIRFinalPort, Constants.kFeederIRFinalMin, Constants.kFeederIRFinalMax);
-       
+
+        configureStateMachine();
     }
 
     public enum SystemState {
@@ -57,52 +59,65 @@ public class Feeder extends Subsystem {
         INCREMENT_FEED
     }
 
-    private SystemState mSystemState = SystemState.IDLE;
-    private WantedState mWantedState = WantedState.IDLE;
+    private volatile WantedState mWantedState = WantedState.IDLE;
+    private boolean mHopperEmpty;
+
+    private final StateMachine<SystemState> mStateMachine = new StateMachine<>("Feeder", SystemState.class,
+            SystemState.IDLE);
 
-    private double mCurrentStateStartTime;
-    private boolean mStateChanged;
+    private StateMachine.Guard wants(WantedState state) {
+        return (timestamp, time_in_state) -> mWantedState == state;
+    }
+
+    // The wanted state always wins, except that a finished unjam or increment goes back to idle first. The
+    // superstate's transitions are checked before each state's own.
+    private void configureStateMachine() {
+        StateMachine<SystemState>.StateConfig wanted = mStateMachine.superstate("Feeder")
+                .transition(wants(WantedState.IDLE), SystemState.IDLE)
+                .transition(wants(WantedState.INCREMENT_FEED), SystemState.INCREMENTAL_FEEDING)
+                .transition(wants(WantedState.CONTINUOUS_FEED), SystemState.CONTINUOUS_FEEDING)
+                .transition(wants(WantedState.UNJAM), SystemState.UNJAMMING);
+
+        mStateMachine.state(SystemState.IDLE)
+                .parent(wanted)
+                .onLoop(timestamp -> mTrigger.set(0));
+
+        mStateMachine.state(SystemState.UNJAMMING)
+                .parent(wanted)
+                .onLoop(timestamp -> mTrigger.set(Constants.kFeederUnjamPower))
+                .timeout(Constants.kFeederUnjamPeriod, SystemState.IDLE, "unjam done");
+
+        // Look to see if a ball is available, and feed until it reaches the shooter.
+        mStateMachine.state(SystemState.INCREMENTAL_FEEDING)
+                .parent(wanted)
+                .onEntry(timestamp -> {
+                    mTrigger.set(0);
+                    mHopperEmpty = !mIRInitial.seesBall();
+                })
+                .onLoop(timestamp -> {
+                    if (!mIRFinal.seesBall()) {
+                        mTrigger.set(Constants.kFeederIncrementFeedPower);
+                    }
+                })
+                .timeout(Constants.kFeederClogPeriod, SystemState.UNJAMMING, "clogged")
+                .transition((timestamp, time_in_state) -> mIRFinal.seesBall(), SystemState.IDLE, "ball fed")
+                .transition((timestamp, time_in_state) -> mHopperEmpty, SystemState.IDLE, "hopper empty");
+
+        mStateMachine.state(SystemState.CONTINUOUS_FEEDING)
+                .parent(wanted)
+                .onEntry(timestamp -> mTrigger.set(Constants.kFeederContinuousFeedPower));
+    }
 
     private Loop mLoop = new Loop() {
         @Override
         public void onStart(double timestamp) {
             stop();
-            synchronized (Feeder.this) {
-                mSystemState = SystemState.IDLE;
-                mStateChanged = true;
-                mCurrentStateStartTime = timestamp;
-            }
+            mStateMachine.reset(SystemState.IDLE, timestamp);
         }
 
         @Override
         public void onLoop(double timestamp) {
-            synchronized (Feeder.this) {
-                SystemState newState;
-                switch (mSystemState) {
-                case IDLE:
-                    newState = handleIdle();
-                    break;
-                case UNJAMMING:
-                    newState = handleUnjamming(timestamp, mCurrentStateStartTime);
-                    break;                
-                case CONTINUOUS_FEEDING:
-                    newState = handleContinuousFeeding();
-                    break;  
-                case INCREMENTAL_FEEDING:
-                    newState = handleIncrementalFeeding(timestamp, mCurrentStateStartTime);
-                    break;  
-                default:
-                    newState = SystemState.IDLE;
-                }
-                if (newState != mSystemState) {
-                    System.out.println("Feeder state " + mSystemState + " to " + newState);
-                    mSystemState = newState;
-                    mCurrentStateStartTime = timestamp;
-                    mStateChanged = true;
-                } else {
-                    mStateChanged = false;
-                }
-            }
+            mStateMachine.update(timestamp);
         }
 
         @Override
@@ -111,81 +126,11 @@ public class Feeder extends Subsystem {
         }
     };
 
-    private SystemState defaultStateTransfer() {
-        switch (mWantedState) {
-        case INCREMENT_FEED:
-            return SystemState.INCREMENTAL_FEEDING;
-        case CONTINUOUS_FEED:
-            return SystemState.CONTINUOUS_FEEDING;
-        case UNJAM:
-            return SystemState.UNJAMMING;
-        default:
-            return SystemState.IDLE;
-        }
-    }
-
-    private SystemState handleIdle() {
-        mTrigger.set(0);
-        return defaultStateTransfer();
-    }
-
-    private SystemState handleUnjamming(double now, double startStartedAt) {
-        mTrigger.set(Constants.kFeederUnjamPower);
-        SystemState newState = SystemState.UNJAMMING;
-        if (now - startStartedAt > Constants.kFeederUnjamPeriod) {
-            newState = SystemState.IDLE;
-        }
-        switch (mWantedState) {
-        case INCREMENT_FEED:
-            return SystemState.INCREMENTAL_FEEDING;
-        case CONTINUOUS_FEED:
-            return SystemState.CONTINUOUS_FEEDING;
-        case UNJAM:
-            return newState;
-        default:
-            return SystemState.IDLE;
-        }
-    }
-    
-    //look to see if ball available, and check for output
-    
-    private SystemState handleIncrementalFeeding(double now, double startStartedAt) {
-        SystemState newState = SystemState.INCREMENTAL_FEEDING;
-        if (mStateChanged) {
-           mTrigger.set(0);
-           if(!mIRInitial.seesBall()) {
-               System.out.println("Hopper empty!");
-               newState = SystemState.IDLE;
-           }           
-        }
-        if (now - startStartedAt > Constants.kFeederClogPeriod) {
-            newState = SystemState.UNJAMMING;
-        } else if(mIRFinal.seesBall()) {
-            newState=SystemState.IDLE;
-        }else {
-            mTrigger.set(Constants.kFeederIncrementFeedPower);
-        }
-        
-        switch (mWantedState) {
-        case INCREMENT_FEED:
-            return newState;
-        case CONTINUOUS_FEED:
-            return SystemState.CONTINUOUS_FEEDING;
-        case UNJAM:
-            return SystemState.UNJAMMING;
-        default:
-            return SystemState.IDLE;
-        }
-    }
-
-    private SystemState handleContinuousFeeding() {
-        if (mStateChanged) {
-            mTrigger.set(Constants.kFeederContinuousFeedPower);
-        }
-        return defaultStateTransfer();
+    public SystemState getSystemState() {
+        return mStateMachine.getState();
     }
 
-    public synchronized void setWantedState(WantedState state) {
+    public void setWantedState(WantedState state) {
         mWantedState = state;
     }
 
@@ -206,7 +151,8 @@ public class Feeder extends Subsystem {
 
     @Override
     public void registerEnabledLoops(Looper in) {
-        in.register(mLoop);
+        // The roller state machines time short pulses, so they run at the control rate, but on their own thread.
+        in.register(mLoop, Looper.kMechanismGroup, Constants.kLooperDt);
     }
 
     public boolean checkSystem() {
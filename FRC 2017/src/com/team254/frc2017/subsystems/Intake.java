@@ -4,6 +4,7 @@ import edu.wpi.first.wpilibj.Timer;
 import com.team254.frc2017.Constants;
 import com.team254.frc2017.loops.Loop;
 import com.team254.frc2017.loops.Looper;
+import com.team254.lib.util.StateMachine;
 import com.team254.lib.util.Util;
 import com.team254.lib.util.drivers.IRSensor;
 import com.team254.lib.util.drivers.NidecMotor;
@@ -40,7 +41,8 @@ public class Intake extends Subsystem {
         mRoller.changeControlMode(NidecControlMode.Only_PWM);
        
         mIRAcross = new IRSensor(Constants.kIntakeIRHopperPort, Constants.kIntakeRollerMin, Constants.kIntakeRollerMax);
-          
+
+        configureStateMachine();
     }
     
     //SystemState defines the possible states for the intake, and is set to the wanted state when a change is needed
@@ -56,22 +58,43 @@ public class Intake extends Subsystem {
         INTAKE
     }
     
-    //Current state is idle, desired state is idle
-    private SystemState mSystemState = SystemState.IDLE;
-    private WantedState mWantedState = WantedState.IDLE;
-    
-    private double mCurrentStateStartTime; //time isnce current ste was switched to
-    private boolean mStateChanged; //true if state is changed
+    //Desired state is idle, and the state machine starts in idle
+    private volatile WantedState mWantedState = WantedState.IDLE;
+
+    private final StateMachine<SystemState> mStateMachine = new StateMachine<>("Intake", SystemState.class,
+            SystemState.IDLE);
+
+    private StateMachine.Guard wants(WantedState state) { //True while the wanted state is state
+        return (timestamp, time_in_state) -> mWantedState == state;
+    }
+
+    //Each state lists what it does every loop and which states it can go to. The first transition that is true wins,
+    //and the superstate's transitions (go wherever the wanted state says) are checked before each state's own
+    private void configureStateMachine() {
+        StateMachine<SystemState>.StateConfig wanted = mStateMachine.superstate("Intake")
+                .transition(wants(WantedState.IDLE), SystemState.IDLE)
+                .transition(wants(WantedState.INTAKE), SystemState.ACCUMULATING)
+                .transition(wants(WantedState.UNJAM), SystemState.UNJAMMING);
+
+        mStateMachine.state(SystemState.IDLE)
+                .parent(wanted)
+                .onLoop(timestamp -> mRoller.set(0)); //Shut down rollers
+
+        mStateMachine.state(SystemState.UNJAMMING)
+                .parent(wanted)
+                .onLoop(timestamp -> mRoller.set(Constants.kIntakeUnjamPower)) //Run rollers at unjam speed
+                .timeout(Constants.kIntakeUnjamPeriod, SystemState.IDLE, "unjam done"); //Unjam for a set time
+
+        mStateMachine.state(SystemState.ACCUMULATING)
+                .parent(wanted)
+                .onLoop(timestamp -> mRoller.set(hopperFull ? 0 : Constants.kIntakePower)); //Stop rollers if full
+    }
 
     private Loop mLoop = new Loop() {
         @Override
         public void onStart(double timestamp) {
             stop();
-            synchronized (Intake.this) { //Make all the following code excecute in sequence. equivalent to C#'s Lock() block 
-                mSystemState = SystemState.IDLE;
-                mStateChanged = true;
-                mCurrentStateStartTime = timestamp;
-            } //Disenggae thread-lock
+            mStateMachine.reset(SystemState.IDLE, timestamp);
         }
 
         @Override
@@ -79,30 +102,7 @@ public class Intake extends Subsystem {
              
             hopperSense(timestamp); //Check if hopper is full
             
-            synchronized (Intake.this) { //Engage Threadlock
-                SystemState newState;
-                switch (mSystemState) { //Oh boy here we go
-                case IDLE: //Switch to IDLE
-                    newState = handleIdle();
-                    break;
-                case UNJAMMING: //Switch to UNJAMMING and give it the timestamp and curnt state duration
-                    newState = handleUnjamming(timestamp, mCurrentStateStartTime);
-                    break;                
-                case ACCUMULATING: //Switch to ACCUMULATING
-                    newState = handleAccumulating();
-                    break;                 
-                default: //IDLE is deafult
-                    newState = SystemState.IDLE;
-                }
-                if (newState != mSystemState) { //If new state is dfferent from current state
-                    System.out.println("Intake state " + mSystemState + " to " + newState);
-                    mSystemState = newState;
-                    mCurrentStateStartTime = timestamp; 
-                    mStateChanged = true;
-                } else {
-                    mStateChanged = false;
-                }
-            }
+            mStateMachine.update(timestamp); //Run the current state and change state if needed
         }
 
         @Override
@@ -133,64 +133,12 @@ public class Intake extends Subsystem {
     public boolean getHopperFull() {
         return hopperFull;
     }
-    
-    /* SWITCH STATEMENT EXPLANATION
-    switch (variable or expression) - checks the input to see if it is equal to the value of any case. If no case matches, it will check the default case instead
-    {
-        case 1: - if argument = 1, the code in this case runs
-        CaseIs1();
-        break;
-        
-        case 2:
-        CaseIs2();
-        break;
-    }
-    */
-    private SystemState defaultStateTransfer() {
-        switch (mWantedState) {
-        case INTAKE: //If mWantedState == INTAKE
-            return SystemState.ACCUMULATING;
-        case UNJAM:
-            return SystemState.UNJAMMING;
-        default:
-            return SystemState.IDLE;
-        }
-    }
-
-    private SystemState handleIdle() { //If state is idle
-        mRoller.set(0); //Shut down rollers
-        return defaultStateTransfer(); //Call switch above
-    }
 
-    private SystemState handleUnjamming(double now, double startStartedAt) { //Unjam method
-        mRoller.set(Constants.kIntakeUnjamPower); //Set roller speed to unjam speed as specified elsewhere
-        SystemState newState = SystemState.UNJAMMING;
-        if (now - startStartedAt > Constants.kIntakeUnjamPeriod) { /*if the current time minus the time the subsytem has been 
-running is greater than  the specified unjam time*/
-            newState = SystemState.IDLE; //set tate to idle
-        }
-        switch (mWantedState) {
-        case INTAKE:
-            return SystemState.ACCUMULATING;
-        case UNJAM:
-            return newState;
-        default:
-            return SystemState.IDLE;
-        }
-    }
-    
-
-    private SystemState handleAccumulating() {
-        if(hopperFull) { //If hopper is full
-            mRoller.set(0); //stop rollers
-            System.out.println("Hopper Full");
-        }else {
-            mRoller.set(Constants.kIntakePower); //set rollers to intake speed 
-        }        
-        return defaultStateTransfer(); //initate state transfer
+    public SystemState getSystemState() {
+        return mStateMachine.getState();
     }
 
-    public synchronized void setWantedState(WantedState state) { //Set wanted state
+    public void setWantedState(WantedState state) { //Set wanted state
         mWantedState = state;
     }
 
@@ -211,7 +159,8 @@ running is greater than  the specified unjam time*/
 
     @Override
     public void registerEnabledLoops(Looper in) {
-        in.register(mLoop);
+        // The roller state machines time short pulses, so they run at the control rate, but on their own thread.
+        in.register(mLoop, Looper.kMechanismGroup, Constants.kLooperDt);
     }
 
     public boolean checkSystem() {
@@ -2,16 +2,17 @@ package com.team254.frc2017.subsystems;
 
 
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 import com.team254.frc2017.Constants;
 import com.team254.frc2017.Robot;
 import com.team254.frc2017.RobotState;
+import com.team254.frc2017.ShooterRpmLookup;
 //import com.team254.frc2017.ShooterAimingParameters;
 import com.team254.frc2017.loops.Loop;
 import com.team254.frc2017.loops.Looper;
 import com.team254.lib.util.CircularBuffer;
-import com.team254.lib.util.InterpolatingDouble;
+import com.team254.lib.util.StateMachine;
+import com.team254.lib.util.TelemetryRegistry;
 
 
 import java.util.Optional;
@@ -54,6 +55,13 @@ public class Superstructure extends Subsystem {
     
     // Superstructure doesn't own the drive, but needs to access it
     private final Drive mDrive = Drive.getInstance();
+    private final ShooterRpmLookup mRpmLookup = ShooterRpmLookup.getInstance();
+
+    // Telemetry
+    private final TelemetryRegistry mTelemetry = TelemetryRegistry.getInstance();
+    private final int mJamDetectedChannel = mTelemetry.registerBoolean("Jam Detected");
+    private final int mOptimalRangeChannel = mTelemetry.registerBoolean("optimal range");
+    private final int mAirPressureChannel = mTelemetry.registerNumber("Air Pressure psi");
 
     // Intenal state of the system
     public enum SystemState {
@@ -71,8 +79,7 @@ public class Superstructure extends Subsystem {
         IDLE, SHOOT, UNJAM, MANUAL_FEED
     }
 
-    private SystemState mSystemState = SystemState.IDLE;
-    private WantedState mWantedState = WantedState.IDLE;
+    private volatile WantedState mWantedState = WantedState.IDLE;
 
    // private double mCurrentTuningRpm = Constants.kShooterTuningRpmFloor;
    // private double mLastGoalRange = 0.0;
@@ -80,8 +87,31 @@ public class Superstructure extends Subsystem {
    
    // private CircularBuffer mShooterRpmBuffer = new CircularBuffer(Constants.kShooterJamBufferSize);
    // private double mLastDisturbanceShooterTime;
-    private double mCurrentStateStartTime;
-    private boolean mStateChanged;
+
+    private final StateMachine<SystemState> mStateMachine = new StateMachine<>("Superstructure", SystemState.class,
+            SystemState.IDLE);
+
+    private Superstructure() {
+        configureStateMachine();
+    }
+
+    // Each state's handler sets the outputs for that state and picks the next state.
+    private void configureStateMachine() {
+        mStateMachine.state(SystemState.IDLE)
+                .onEntry(timestamp -> onEnterIdle())
+                .transition((timestamp, time_in_state) -> handleIdle());
+        mStateMachine.state(SystemState.WAITING_FOR_FLYWHEEL)
+                .transition((timestamp, time_in_state) -> handleWaitingForFlywheel());
+        mStateMachine.state(SystemState.SHOOTING)
+                .onEntry(timestamp -> mShooterRpmBuffer.clear())
+                .transition((timestamp, time_in_state) -> handleShooting(timestamp, time_in_state));
+        mStateMachine.state(SystemState.UNJAMMING)
+                .transition((timestamp, time_in_state) -> handleUnjamming());
+        mStateMachine.state(SystemState.JUST_FEED)
+                .transition((timestamp, time_in_state) -> handleJustFeed());
+        mStateMachine.state(SystemState.SHOOTING_SPIN_DOWN)
+                .transition((timestamp, time_in_state) -> handleShootingSpinDown(time_in_state));
+    }
 
    /* public boolean isDriveOnTarget() {
         return mDrive.isOnTarget() && mDrive.isAutoAiming();
@@ -96,63 +126,28 @@ public class Superstructure extends Subsystem {
     }*/
 
     public synchronized boolean isShooting() {
-        return (mSystemState == SystemState.SHOOTING) || (mSystemState == SystemState.SHOOTING_SPIN_DOWN)              
+        final SystemState state = mStateMachine.getState();
+        return (state == SystemState.SHOOTING) || (state == SystemState.SHOOTING_SPIN_DOWN);
     }
 
     private Loop mLoop = new Loop() {
 
-        // Every time we transition states, we update the current state start
-        // time and the state changed boolean (for one cycle)
         private double mWantStateChangeStartTime;
 
         @Override
         public void onStart(double timestamp) {
             synchronized (Superstructure.this) {
                 mWantedState = WantedState.IDLE;
-                mCurrentStateStartTime = timestamp;
                 mWantStateChangeStartTime = timestamp;
               //  mLastDisturbanceShooterTime = timestamp;
-                mSystemState = SystemState.IDLE;
-                mStateChanged = true;
+                mStateMachine.reset(SystemState.IDLE, timestamp);
             }
         }
 
         @Override
         public void onLoop(double timestamp) {
             synchronized (Superstructure.this) {
-                SystemState newState = mSystemState;
-                switch (mSystemState) {
-                case IDLE:
-                    newState = handleIdle(mStateChanged);
-                    break;
-                case WAITING_FOR_FLYWHEEL:
-                    newState = handleWaitingForFlywheel();
-                    break;
-                case SHOOTING:
-                    newState = handleShooting(timestamp);
-                    break;
-                case UNJAMMING:
-                    newState = handleUnjamming();
-                    break;
-                case JUST_FEED:
-                    newState = handleJustFeed();
-                    break;
-                case SHOOTING_SPIN_DOWN:
-                    newState = handleShootingSpinDown(timestamp);
-                    break;
-                default:
-                    newState = SystemState.IDLE;
-                }
-
-                if (newState != mSystemState) {
-                    System.out.println("Superstructure state " + mSystemState + " to " + newState + " Timestamp: "
-                            + Timer.getFPGATimestamp());
-                    mSystemState = newState;
-                    mCurrentStateStartTime = timestamp;
-                    mStateChanged = true;
-                } else {
-                    mStateChanged = false;
-                }
+                mStateMachine.update(timestamp);
             }
         }
 
@@ -162,13 +157,14 @@ public class Superstructure extends Subsystem {
         }
     };
 
-    private SystemState handleIdle(boolean stateChanged) {
-        if (stateChanged) {
-            stop();
-            mLED.setWantedState(LED.WantedState.OFF);
-            mFeeder.setWantedState(Feeder.WantedState.IDLE);
-            mHopper.setWantedState(Hopper.WantedState.IDLE);
-        }
+    private void onEnterIdle() {
+        stop();
+        mLED.setWantedState(LED.WantedState.OFF);
+        mFeeder.setWantedState(Feeder.WantedState.IDLE);
+        mHopper.setWantedState(Hopper.WantedState.IDLE);
+    }
+
+    private SystemState handleIdle() {
         mCompressor.setClosedLoopControl(!mCompressorOverride);
 
         switch (mWantedState) {
@@ -215,7 +211,7 @@ public class Superstructure extends Subsystem {
         }
     }
 
-    private SystemState handleShooting(double timestamp) {
+    private SystemState handleShooting(double timestamp, double time_in_state) {
         // Don't auto spin anymore - just hold the last setpoint
         mFeeder.setWantedState(Feeder.WantedState.CONTINUOUS_FEED);
         mHopper.setWantedState(Hopper.WantedState.FEED);
@@ -225,12 +221,8 @@ public class Superstructure extends Subsystem {
         // Pump circular buffer with last rpm from talon.
         final double rpm = mShooter.getLastSpeedRpm();
 
-        if (mStateChanged) {
-            mShooterRpmBuffer.clear();
-        }
-
         // Find time of last shooter disturbance.
-        if ((timestamp - mCurrentStateStartTime < Constants.kShooterMinShootingTime) ||
+        if ((time_in_state < Constants.kShooterMinShootingTime) ||
                 !mShooterRpmBuffer.isFull() ||
                 (Math.abs(mShooterRpmBuffer.getAverage() - rpm) > Constants.kShooterDisturbanceThreshold)) {
             mLastDisturbanceShooterTime = timestamp;
@@ -250,7 +242,7 @@ public class Superstructure extends Subsystem {
                 // We have jammed, move to unjamming.
                 jam_detected = true;
             }
-            SmartDashboard.putBoolean("Jam Detected", jam_detected);
+            mTelemetry.set(mJamDetectedChannel, jam_detected);
 
             if (jam_detected) {
                 return SystemState.UNJAMMING_WITH_SHOOT;
@@ -264,7 +256,7 @@ public class Superstructure extends Subsystem {
         }
     }
 
-    private SystemState handleUnjammingWithShoot(double timestamp) {
+    private SystemState handleUnjammingWithShoot(double time_in_state) {
         // Don't auto spin anymore - just hold the last setpoint
         mCompressor.setClosedLoopControl(false);
         mFeeder.setWantedState(Feeder.WantedState.FEED);
@@ -278,7 +270,7 @@ public class Superstructure extends Subsystem {
         case UNJAM_SHOOT:
             return SystemState.UNJAMMING_WITH_SHOOT;
         case SHOOT:
-            if (timestamp - mCurrentStateStartTime > Constants.kShooterUnjamDuration) {
+            if (time_in_state > Constants.kShooterUnjamDuration) {
                 return SystemState.SHOOTING;
             }
             return SystemState.UNJAMMING_WITH_SHOOT;
@@ -287,7 +279,7 @@ public class Superstructure extends Subsystem {
         }
     }
 
-    private SystemState handleShootingSpinDown(double timestamp) {
+    private SystemState handleShootingSpinDown(double time_in_state) {
         // Don't auto spin anymore - just hold the last setpoint
         mCompressor.setClosedLoopControl(false);
         mFeeder.setWantedState(Feeder.WantedState.FEED);
@@ -298,7 +290,7 @@ public class Superstructure extends Subsystem {
         mLED.setWantedState(LED.WantedState.FIND_RANGE);
         setWantIntakeOnForShooting();
 
-        if (timestamp - mCurrentStateStartTime > Constants.kShooterSpinDownTime) {
+        if (time_in_state > Constants.kShooterSpinDownTime) {
             switch (mWantedState) {
             case UNJAM:
                 return SystemState.UNJAMMING;
@@ -401,10 +393,32 @@ public class Superstructure extends Subsystem {
     }
 
     private double getShootingSetpointRpm(double range) {
+        if (!mRpmLookup.hasCalibration()) {
+            compileRpmTable();
+        }
+        return mRpmLookup.getRpm(range);
+    }
+
+    /**
+     * Compiles the auto aim calibration in Constants for the RPM lookup (unless the online fit has replaced it). Call
+     * again whenever it changes.
+     */
+    private void compileRpmTable() {
+        if (Constants.kShooterUseOnlineFit) {
+            mRpmLookup.startOnlineFit(Constants.kShooterOnlineFitDegree, Constants.kShooterAbsoluteRangeFloor,
+                    Constants.kShooterAbsoluteRangeCeiling);
+            if (mRpmLookup.isUsingOnlineFit()) {
+                // Keep what was learned from the shots so far.
+                return;
+            }
+        } else {
+            mRpmLookup.stopOnlineFit();
+        }
         if (Constants.kUseFlywheelAutoAimPolynomial) {
-            return Constants.kFlywheelAutoAimPolynomial.predict(range);
+            mRpmLookup.setCalibration(Constants.kFlywheelAutoAimPolynomial, Constants.kShooterAbsoluteRangeFloor,
+                    Constants.kShooterAbsoluteRangeCeiling);
         } else {
-            return Constants.kFlywheelAutoAimMap.getInterpolated(new InterpolatingDouble(range)).value;
+            mRpmLookup.setCalibration(Constants.kFlywheelAutoAimMap, Constants.kShooterRpmTableResolution);
         }
     }
 
@@ -445,7 +459,7 @@ public class Superstructure extends Subsystem {
                     is_optimal_range = true;
                 }
 
-                SmartDashboard.putBoolean("optimal range", is_optimal_range);
+                mTelemetry.set(mOptimalRangeChannel, is_optimal_range);
             } else {
                 // We are shooter tuning find current RPM we are tuning for.
                 mShooter.setHoldWhenReady(mCurrentTuningRpm);
@@ -484,7 +498,7 @@ public class Superstructure extends Subsystem {
         return mLastGoalRange;
     }
 
-    public synchronized void setWantedState(WantedState wantedState) {
+    public void setWantedState(WantedState wantedState) {
         mWantedState = wantedState;
     }
 
@@ -502,7 +516,7 @@ public class Superstructure extends Subsystem {
 
     @Override
     public void outputToSmartDashboard() {
-        SmartDashboard.putNumber("Air Pressure psi", mAirPressureSensor.getAirPressurePsi());
+        mTelemetry.set(mAirPressureChannel, mAirPressureSensor.getAirPressurePsi());
     }
 
     @Override
@@ -517,7 +531,8 @@ public class Superstructure extends Subsystem {
 
     @Override
     public void registerEnabledLoops(Looper enabledLooper) {
-        enabledLooper.register(mLoop);
+        // Runs on its own thread so the shooter state machine can't hold up the drive loop.
+        enabledLooper.register(mLoop, Looper.kSuperstructureGroup, Constants.kSuperstructureLooperDt);
     }
 
     public void setWantIntakeReversed() {
@@ -542,5 +557,6 @@ public class Superstructure extends Subsystem {
 
     public void reloadConstants() {
         mShooter.refreshControllerConsts();
+        compileRpmTable();
     }
 }
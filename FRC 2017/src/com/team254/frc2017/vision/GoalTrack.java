@@ -0,0 +1,127 @@
+package com.team254.frc2017.vision;
+
+import com.team254.frc2017.Constants;
+import com.team254.lib.util.math.Translation2d;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A class that is used to keep track of all goals detected by the vision system. As goals are detected/not detected
+ * anymore by the vision system, function calls will be made to create, destroy, or update a goal track.
+ *
+ * This helps in the goal ranking process that determines which goal to fire into, and helps to smooth measurements of
+ * the goal's location over time.
+ *
+ * @see GoalTracker
+ */
+public class GoalTrack {
+    TreeMap<Double, Translation2d> mObservedPositions = new TreeMap<>();
+    Translation2d mSmoothedPosition = null;
+    int mId;
+
+    private GoalTrack() {
+    }
+
+    /**
+     * Makes a new track based on the timestamp and the goal's coordinates (from vision)
+     */
+    public static GoalTrack makeNewTrack(double timestamp, Translation2d first_observation, int id) {
+        GoalTrack rv = new GoalTrack();
+        rv.mObservedPositions.put(timestamp, first_observation);
+        rv.mSmoothedPosition = first_observation;
+        rv.mId = id;
+        return rv;
+    }
+
+    /**
+     * Ages the track without adding an observation.
+     */
+    public void emptyUpdate(double timestamp) {
+        pruneByTime(timestamp);
+    }
+
+    /**
+     * Attempts to update the track with a new observation. Observations too far from the track's smoothed position
+     * are rejected, so that a noisy or spurious detection can't drag the track away.
+     *
+     * @return True if the track was updated
+     */
+    public boolean tryUpdate(double timestamp, Translation2d new_observation) {
+        if (!isAlive()) {
+            return false;
+        }
+        double distance = new Translation2d(mSmoothedPosition, new_observation).norm();
+        if (distance < Constants.kMaxTrackerDistance) {
+            mObservedPositions.put(timestamp, new_observation);
+            pruneByTime(timestamp);
+            return true;
+        } else {
+            emptyUpdate(timestamp);
+            return false;
+        }
+    }
+
+    public boolean isAlive() {
+        return mObservedPositions.size() > 0;
+    }
+
+    /**
+     * Removes observations older than kMaxGoalTrackAge, then re-smooths what is left.
+     */
+    void pruneByTime(double timestamp) {
+        double delete_before = timestamp - Constants.kMaxGoalTrackAge;
+        for (Iterator<Map.Entry<Double, Translation2d>> it = mObservedPositions.entrySet().iterator(); it
+                .hasNext();) {
+            Map.Entry<Double, Translation2d> entry = it.next();
+            if (entry.getKey() < delete_before) {
+                it.remove();
+            } else {
+                break;
+            }
+        }
+        if (mObservedPositions.isEmpty()) {
+            mSmoothedPosition = null;
+        } else {
+            smooth();
+        }
+    }
+
+    /**
+     * Averages out the observations in the track. The goal doesn't move on the field, so the average is the best
+     * estimate of where it is.
+     */
+    void smooth() {
+        if (isAlive()) {
+            double x = 0;
+            double y = 0;
+            for (Translation2d position : mObservedPositions.values()) {
+                x += position.x();
+                y += position.y();
+            }
+            x /= mObservedPositions.size();
+            y /= mObservedPositions.size();
+            mSmoothedPosition = new Translation2d(x, y);
+        }
+    }
+
+    public Translation2d getSmoothedPosition() {
+        return mSmoothedPosition;
+    }
+
+    public double getLatestTimestamp() {
+        return mObservedPositions.isEmpty() ? 0 : mObservedPositions.lastKey();
+    }
+
+    /**
+     * @return How many of the frames the camera captured over the track's lifetime window saw this goal, from 0 to 1.
+     */
+    public double getStability() {
+        return Math.min(1.0, mObservedPositions.size() / (Constants.kCameraFrameRate * Constants.kMaxGoalTrackAge));
+    }
+
+    public int getId() {
+        return mId;
+    }
+}
@@ -0,0 +1,30 @@
+package com.team254.frc2017.vision;
+
+/**
+ * A container class for Targets detected by the vision system, containing the location in three-dimensional space.
+ *
+ * The coordinates are those of the vision app's CameraTargetInfo: +x out the camera's optical axis, +y to the left of
+ * the image and +z to the top of the image. Targets are normalized so that x is always 1.
+ */
+public class TargetInfo {
+    protected double x = 1.0;
+    protected double y;
+    protected double z;
+
+    public TargetInfo(double y, double z) {
+        this.y = y;
+        this.z = z;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+}
@@ -0,0 +1,50 @@
+package com.team254.frc2017.vision;
+
+import com.team254.frc2017.RobotState;
+import com.team254.frc2017.loops.Loop;
+
+/**
+ * Hands vision updates to RobotState from the loop thread. Whatever receives updates from the phone calls gotUpdate()
+ * from its own thread; the latest update is added to RobotState on the next loop, and older ones that were never
+ * processed are dropped.
+ */
+public class VisionProcessor implements Loop {
+    static VisionProcessor instance_ = new VisionProcessor();
+    VisionUpdate update_ = null;
+    RobotState robot_state_ = RobotState.getInstance();
+
+    public static VisionProcessor getInstance() {
+        return instance_;
+    }
+
+    VisionProcessor() {
+    }
+
+    @Override
+    public void onStart(double timestamp) {
+    }
+
+    @Override
+    public void onLoop(double timestamp) {
+        VisionUpdate update;
+        synchronized (this) {
+            if (update_ == null) {
+                return;
+            }
+            update = update_;
+            update_ = null;
+        }
+        robot_state_.addVisionUpdate(update.getCapturedAtTimestamp(), update.getTargets());
+    }
+
+    @Override
+    public void onStop(double timestamp) {
+        // no-op
+    }
+
+    public synchronized void gotUpdate(VisionUpdate update) {
+        if (update.isValid()) {
+            update_ = update;
+        }
+    }
+}
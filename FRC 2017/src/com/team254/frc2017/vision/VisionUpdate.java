@@ -0,0 +1,105 @@
+package com.team254.frc2017.vision;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * VisionUpdate contains the various attributes outputted by the vision system, namely a list of targets and the
+ * timestamp at which it was captured.
+ *
+ * The vision app sends how long ago the frame was captured rather than when, since the phone's clock isn't the
+ * robot's. The capture time is worked out from the time the update arrives.
+ */
+public class VisionUpdate {
+    protected boolean valid = false;
+    protected long captured_ago_ms;
+    protected List<TargetInfo> targets;
+    protected double captured_at_timestamp = 0;
+
+    private static long getOptLong(Object n, long defaultValue) {
+        if (n == null) {
+            return defaultValue;
+        }
+        return (long) n;
+    }
+
+    private static JSONParser parser = new JSONParser();
+
+    private static Optional<Double> parseDouble(JSONObject j, String key) throws ClassCastException {
+        Object d = j.get(key);
+        if (d == null) {
+            return Optional.empty();
+        } else {
+            return Optional.of(((Number) d).doubleValue());
+        }
+    }
+
+    /**
+     * Generates a VisionUpdate object given a JSON blob and a timestamp.
+     *
+     * @param current_time
+     *            The robot time (Timer.getFPGATimestamp()) at which the update was received
+     * @param update
+     *            The JSON blob sent by the vision app, e.g. {"capturedAgoMs":40,"targets":[{"y":0.1,"z":0.4}]}
+     * @return A VisionUpdate, which isValid() only if the blob could be parsed.
+     */
+    public static VisionUpdate generateFromJsonString(double current_time, String update) {
+        VisionUpdate newUpdate = new VisionUpdate();
+        try {
+            JSONObject j;
+            synchronized (parser) {
+                j = (JSONObject) parser.parse(update);
+            }
+            long captured_ago_ms = getOptLong(j.get("capturedAgoMs"), -1);
+            JSONArray targets = (JSONArray) j.get("targets");
+            if (captured_ago_ms < 0 || targets == null) {
+                newUpdate.valid = false;
+                return newUpdate;
+            }
+            newUpdate.captured_ago_ms = captured_ago_ms;
+            newUpdate.captured_at_timestamp = current_time - captured_ago_ms / 1000.0;
+            ArrayList<TargetInfo> targetInfos = new ArrayList<>(targets.size());
+            for (Object targetObj : targets) {
+                JSONObject target = (JSONObject) targetObj;
+                Optional<Double> y = parseDouble(target, "y");
+                Optional<Double> z = parseDouble(target, "z");
+                if (!(y.isPresent() && z.isPresent())) {
+                    newUpdate.valid = false;
+                    return newUpdate;
+                }
+                targetInfos.add(new TargetInfo(y.get(), z.get()));
+            }
+            newUpdate.targets = targetInfos;
+            newUpdate.valid = true;
+        } catch (ParseException e) {
+            System.err.println("Parse error: " + e);
+            System.err.println(update);
+        } catch (ClassCastException e) {
+            System.err.println("Data type error: " + e);
+            System.err.println(update);
+        }
+        return newUpdate;
+    }
+
+    public List<TargetInfo> getTargets() {
+        return targets;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public long getCapturedAgoMs() {
+        return captured_ago_ms;
+    }
+
+    public double getCapturedAtTimestamp() {
+        return captured_at_timestamp;
+    }
+}
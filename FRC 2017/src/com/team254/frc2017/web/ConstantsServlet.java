@@ -0,0 +1,64 @@
+package com.team254.frc2017.web;
+
+import com.team254.frc2017.Constants;
+import com.team254.lib.util.ConstantsBase;
+
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reads and writes Constants.
+ *
+ * GET returns every editable constant with a number, boolean or string value as a JSON object of name to value. POST
+ * takes a JSON object (sent as application/json) of name to new value and sets them all at once with
+ * Constants.setConstants (so either every value is set or, if any is bad, none are). Add ?save=true to also write the
+ * changed values to the constants file.
+ */
+public class ConstantsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        JSONObject json = new JSONObject();
+        for (ConstantsBase.Constant constant : Constants.getInstance().getConstants()) {
+            if (constant.value instanceof Number || constant.value instanceof Boolean
+                    || constant.value instanceof String) {
+                json.put(constant.name, constant.value);
+            }
+        }
+        WebServer.writeReadableJson(response, HttpServletResponse.SC_OK, json);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final JSONObject body = WebServer.readJsonBody(request, response);
+        if (body == null) {
+            return;
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Object o : body.entrySet()) {
+            Map.Entry<Object, Object> entry = (Map.Entry<Object, Object>) o;
+            values.put((String) entry.getKey(), entry.getValue());
+        }
+        if (!Constants.getInstance().setConstants(values)) {
+            WebServer.writeError(response, HttpServletResponse.SC_BAD_REQUEST,
+                    "Unknown constant or wrong type, nothing was set");
+            return;
+        }
+        if ("true".equals(request.getParameter("save"))) {
+            Constants.getInstance().saveToFile();
+        }
+        JSONObject json = new JSONObject();
+        json.put("success", true);
+        WebServer.writeJson(response, HttpServletResponse.SC_OK, json);
+    }
+}
@@ -0,0 +1,36 @@
+package com.team254.frc2017.web;
+
+import com.team254.frc2017.RobotState;
+
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the latest RobotState snapshot as JSON. Reading the snapshot never takes the RobotState lock, so polling this
+ * can't hold up the estimator.
+ */
+public class RobotStateServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final RobotState.Snapshot snapshot = RobotState.getInstance().getSnapshot();
+        JSONObject json = new JSONObject();
+        json.put("timestamp", snapshot.timestamp);
+        json.put("x", snapshot.field_to_vehicle.getTranslation().x());
+        json.put("y", snapshot.field_to_vehicle.getTranslation().y());
+        json.put("theta", snapshot.field_to_vehicle.getRotation().getDegrees());
+        json.put("predicted_velocity", snapshot.predicted_velocity.dx);
+        json.put("predicted_angular_velocity", snapshot.predicted_velocity.dtheta);
+        json.put("measured_velocity", snapshot.measured_velocity.dx);
+        json.put("measured_angular_velocity", snapshot.measured_velocity.dtheta);
+        json.put("distance_driven", snapshot.distance_driven);
+        WebServer.writeReadableJson(response, HttpServletResponse.SC_OK, json);
+    }
+}
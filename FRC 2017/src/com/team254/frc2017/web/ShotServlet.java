@@ -0,0 +1,57 @@
+package com.team254.frc2017.web;
+
+import com.team254.frc2017.ShooterRpmLookup;
+
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Logs shots for the shooter RPM calibration, so someone watching practice can mark each shot as it lands.
+ *
+ * POST a JSON object (as application/json) with range (inches), rpm and hit (true or false) to add a shot to
+ * ShooterRpmLookup. GET returns the number of logged shots and the state of the online fit.
+ */
+public class ShotServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ShooterRpmLookup lookup = ShooterRpmLookup.getInstance();
+        JSONObject json = new JSONObject();
+        json.put("shots", lookup.getNumShots());
+        json.put("online_fit", lookup.getOnlineFitStatus());
+        json.put("using_online_fit", lookup.isUsingOnlineFit());
+        WebServer.writeReadableJson(response, HttpServletResponse.SC_OK, json);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final JSONObject body = WebServer.readJsonBody(request, response);
+        if (body == null) {
+            return;
+        }
+        final Object range = body.get("range");
+        final Object rpm = body.get("rpm");
+        final Object hit = body.get("hit");
+        if (!(range instanceof Number) || !(rpm instanceof Number)) {
+            WebServer.writeError(response, HttpServletResponse.SC_BAD_REQUEST, "Expected numbers for range and rpm");
+            return;
+        }
+        if (!(hit instanceof Boolean)) {
+            WebServer.writeError(response, HttpServletResponse.SC_BAD_REQUEST, "Expected true or false for hit");
+            return;
+        }
+        ShooterRpmLookup.getInstance().addShot(((Number) range).doubleValue(), ((Number) rpm).doubleValue(),
+                (Boolean) hit);
+        JSONObject json = new JSONObject();
+        json.put("success", true);
+        WebServer.writeJson(response, HttpServletResponse.SC_OK, json);
+    }
+}
@@ -0,0 +1,267 @@
+package com.team254.frc2017.web;
+
+import com.team254.lib.util.TelemetryRegistry;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A TelemetryRegistry sink that streams telemetry to WebSocket clients.
+ *
+ * Channel names are sent once, as a text message: {"channels": ["name0", "name1", ...]}, where a channel's index in the
+ * list is its id. The message is sent again (with the new names at the end) whenever a channel is first published.
+ * Values are sent as binary frames, one per publish, holding only the channels that changed:
+ *
+ * <pre>
+ * double time     seconds since the stream started
+ * short  count    number of values that follow
+ * count times:
+ *   short  id     channel id
+ *   double value  the channel's value (1 or 0 for booleans)
+ * </pre>
+ *
+ * All numbers are big-endian. A new client first gets the channel names and a frame with the latest value of every
+ * channel. If nothing changes for kKeepAlivePeriod seconds (e.g. while disabled), an empty frame (count 0) is sent, so
+ * that the connection doesn't sit idle long enough for the server to close it.
+ *
+ * Frames are handed to the clients from the TelemetryRegistry publisher thread and written by Jetty's threads, so the
+ * loops never wait on the network. Each client has at most one write in flight and a bounded queue behind it. If a
+ * slow client's queue fills up, its queued frames are replaced by a single frame with the latest value of every
+ * channel, so it skips ahead rather than falling further behind.
+ */
+public class TelemetryStream implements TelemetryRegistry.Sink {
+    public static final int kMaxQueuedMessages = 16;
+    public static final double kKeepAlivePeriod = 2.0; // well under the WebSocket idle timeout
+    private static final int kHeaderSize = 8 + 2;
+    private static final int kEntrySize = 2 + 8;
+
+    private final long mStartTime = System.nanoTime();
+    private final List<String> mChannels = new ArrayList<>();
+    private final Map<String, Integer> mChannelIds = new HashMap<>();
+    private double[] mLatestValues = new double[16];
+    private boolean mChannelsChanged = false;
+    private double mLastFrameTime = 0;
+
+    // The values changed since the last flush.
+    private int mNumPending = 0;
+    private int[] mPendingIds = new int[16];
+    private double[] mPendingValues = new double[16];
+
+    private final List<Client> mClients = new CopyOnWriteArrayList<>();
+
+    /**
+     * One WebSocket connection.
+     */
+    public class Client implements WebSocketListener, WriteCallback {
+        private Session mSession = null;
+        private final ArrayDeque<Object> mQueue = new ArrayDeque<>();
+        private boolean mWriting = false;
+        private long mNumResyncs = 0;
+
+        @Override
+        public void onWebSocketConnect(Session session) {
+            synchronized (this) {
+                mSession = session;
+            }
+            addClient(this);
+        }
+
+        @Override
+        public void onWebSocketClose(int status_code, String reason) {
+            removeClient(this);
+        }
+
+        @Override
+        public void onWebSocketError(Throwable cause) {
+            removeClient(this);
+        }
+
+        @Override
+        public void onWebSocketText(String message) {
+            // Clients only listen.
+        }
+
+        @Override
+        public void onWebSocketBinary(byte[] payload, int offset, int len) {
+            // Clients only listen.
+        }
+
+        /**
+         * Queues a message (a String or a ByteBuffer) to be sent.
+         *
+         * @return False if the queue was full and the message was not queued.
+         */
+        synchronized boolean offer(Object message) {
+            if (!mWriting) {
+                write(message);
+                return true;
+            }
+            if (mQueue.size() >= kMaxQueuedMessages) {
+                return false;
+            }
+            mQueue.add(message);
+            return true;
+        }
+
+        /**
+         * Throws away everything queued and sends these messages instead.
+         */
+        synchronized void resync(String channels, ByteBuffer values) {
+            ++mNumResyncs;
+            mQueue.clear();
+            offer(channels);
+            offer(values);
+        }
+
+        public synchronized long getNumResyncs() {
+            return mNumResyncs;
+        }
+
+        private void write(Object message) {
+            if (mSession == null || !mSession.isOpen()) {
+                return;
+            }
+            mWriting = true;
+            if (message instanceof String) {
+                mSession.getRemote().sendString((String) message, this);
+            } else {
+                mSession.getRemote().sendBytes((ByteBuffer) message, this);
+            }
+        }
+
+        @Override
+        public synchronized void writeSuccess() {
+            mWriting = false;
+            final Object next = mQueue.poll();
+            if (next != null) {
+                write(next);
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable x) {
+            synchronized (this) {
+                mWriting = false;
+                mQueue.clear();
+            }
+            removeClient(this);
+        }
+    }
+
+    public Client createClient() {
+        return new Client();
+    }
+
+    public int getNumClients() {
+        return mClients.size();
+    }
+
+    private synchronized void addClient(Client client) {
+        mClients.add(client);
+        client.offer(getChannelsMessage());
+        client.offer(getLatestValuesFrame());
+    }
+
+    private void removeClient(Client client) {
+        mClients.remove(client);
+    }
+
+    private int getChannelId(String key) {
+        Integer id = mChannelIds.get(key);
+        if (id == null) {
+            id = mChannels.size();
+            mChannels.add(key);
+            mChannelIds.put(key, id);
+            if (id >= mLatestValues.length) {
+                mLatestValues = Arrays.copyOf(mLatestValues, mLatestValues.length * 2);
+            }
+            mChannelsChanged = true;
+        }
+        return id;
+    }
+
+    private void addPending(String key, double value) {
+        final int id = getChannelId(key);
+        mLatestValues[id] = value;
+        if (mNumPending == mPendingIds.length) {
+            mPendingIds = Arrays.copyOf(mPendingIds, mNumPending * 2);
+            mPendingValues = Arrays.copyOf(mPendingValues, mNumPending * 2);
+        }
+        mPendingIds[mNumPending] = id;
+        mPendingValues[mNumPending] = value;
+        ++mNumPending;
+    }
+
+    @Override
+    public synchronized void putNumber(String key, double value) {
+        addPending(key, value);
+    }
+
+    @Override
+    public synchronized void putBoolean(String key, boolean value) {
+        addPending(key, value ? 1.0 : 0.0);
+    }
+
+    @Override
+    public synchronized void flush() {
+        final double now = getTime();
+        if (mNumPending == 0 && now - mLastFrameTime < kKeepAlivePeriod) {
+            return;
+        }
+        mLastFrameTime = now;
+        final String channels = mChannelsChanged ? getChannelsMessage() : null;
+        mChannelsChanged = false;
+        final ByteBuffer frame = ByteBuffer.allocate(kHeaderSize + kEntrySize * mNumPending);
+        frame.putDouble(now);
+        frame.putShort((short) mNumPending);
+        for (int i = 0; i < mNumPending; ++i) {
+            frame.putShort((short) mPendingIds[i]);
+            frame.putDouble(mPendingValues[i]);
+        }
+        frame.flip();
+        mNumPending = 0;
+        for (Client client : mClients) {
+            if ((channels != null && !client.offer(channels)) || !client.offer(frame.asReadOnlyBuffer())) {
+                client.resync(getChannelsMessage(), getLatestValuesFrame());
+            }
+        }
+    }
+
+    private double getTime() {
+        return (System.nanoTime() - mStartTime) / 1e9;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getChannelsMessage() {
+        JSONArray channels = new JSONArray();
+        channels.addAll(mChannels);
+        JSONObject message = new JSONObject();
+        message.put("channels", channels);
+        return message.toJSONString();
+    }
+
+    private ByteBuffer getLatestValuesFrame() {
+        final int num_channels = mChannels.size();
+        final ByteBuffer frame = ByteBuffer.allocate(kHeaderSize + kEntrySize * num_channels);
+        frame.putDouble(getTime());
+        frame.putShort((short) num_channels);
+        for (int i = 0; i < num_channels; ++i) {
+            frame.putShort((short) i);
+            frame.putDouble(mLatestValues[i]);
+        }
+        frame.flip();
+        return frame;
+    }
+}
@@ -0,0 +1,161 @@
+package com.team254.frc2017.web;
+
+import com.team254.frc2017.Constants;
+import com.team254.lib.util.TelemetryRegistry;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * An HTTP server on the robot for live tuning and telemetry, so a browser can talk to the robot directly instead of
+ * going through NetworkTables and a dashboard bridge.
+ *
+ * Endpoints:
+ *
+ * /constants: GET all constants or POST new values, as JSON. See ConstantsServlet.
+ *
+ * /state: GET the latest RobotState snapshot as JSON. See RobotStateServlet.
+ *
+ * /shots: POST a shot (range, rpm, hit) for the shooter RPM calibration, or GET the state of the fit. See
+ * ShotServlet.
+ *
+ * /telemetry: a WebSocket streaming every TelemetryRegistry channel in binary frames. See TelemetryStream.
+ *
+ * Any page can read the GET endpoints. POSTs must have a Content-Type of application/json, which a browser won't send
+ * from another page without asking first (a CORS preflight), and the server never says yes. So a page that happens to
+ * be open on the driver station can't change the robot; tuning tools have to be served from the robot or not run in a
+ * browser.
+ *
+ * The server runs on its own small pool of low priority daemon threads. Nothing it does takes a lock that a loop
+ * waits on.
+ */
+public class WebServer {
+    public static final int kPort = 5801; // FRC allows team use of ports 5800-5810
+    private static final int kMaxThreads = 8;
+    private static final int kMinThreads = 2;
+    private static final long kWebSocketIdleTimeoutMs = 10000;
+
+    private static Server sServer = null;
+    private static TelemetryStream sTelemetryStream = null;
+
+    /**
+     * Hands each new /telemetry connection to the telemetry stream.
+     */
+    public static class TelemetryServlet extends WebSocketServlet {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void configure(WebSocketServletFactory factory) {
+            factory.getPolicy().setIdleTimeout(kWebSocketIdleTimeoutMs);
+            factory.setCreator((request, response) -> sTelemetryStream.createClient());
+        }
+    }
+
+    public static synchronized void startServer() {
+        if (sServer != null) {
+            return;
+        }
+        QueuedThreadPool thread_pool = new QueuedThreadPool(kMaxThreads, kMinThreads);
+        thread_pool.setName("WebServer");
+        thread_pool.setDaemon(true);
+        thread_pool.setThreadsPriority(Thread.MIN_PRIORITY);
+        Server server = new Server(thread_pool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(kPort);
+        server.addConnector(connector);
+
+        sTelemetryStream = new TelemetryStream();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath("/");
+        context.addServlet(new ServletHolder(new ConstantsServlet()), "/constants");
+        context.addServlet(new ServletHolder(new RobotStateServlet()), "/state");
+        context.addServlet(new ServletHolder(new ShotServlet()), "/shots");
+        context.addServlet(new ServletHolder(new TelemetryServlet()), "/telemetry");
+        server.setHandler(context);
+
+        try {
+            server.start();
+        } catch (Exception e) {
+            System.out.println("Couldn't start web server on port " + kPort);
+            e.printStackTrace();
+            return;
+        }
+        TelemetryRegistry.getInstance().addSink(sTelemetryStream, Constants.kWebTelemetryPublishPeriod);
+        sServer = server;
+        System.out.println("Web server listening on port " + kPort);
+    }
+
+    public static synchronized void stopServer() {
+        if (sServer == null) {
+            return;
+        }
+        try {
+            sServer.stop();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        sServer = null;
+    }
+
+    static void writeJson(HttpServletResponse response, int status, JSONObject json) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.getWriter().write(json.toJSONString());
+    }
+
+    /**
+     * Like writeJson, but lets pages from any origin read the response. Only for GETs.
+     */
+    static void writeReadableJson(HttpServletResponse response, int status, JSONObject json) throws IOException {
+        // The dashboard page isn't served from the robot.
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        writeJson(response, status, json);
+    }
+
+    /**
+     * Reads the JSON object in a POST body.
+     *
+     * @return The object, or null (after sending an error) if the request isn't application/json or the body isn't a
+     *         JSON object.
+     */
+    static JSONObject readJsonBody(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String type = request.getContentType();
+        if (type == null || !type.toLowerCase().startsWith("application/json")) {
+            writeError(response, HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Expected application/json");
+            return null;
+        }
+        final Object parsed;
+        try {
+            parsed = new JSONParser().parse(request.getReader());
+        } catch (ParseException e) {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, "Not JSON: " + e);
+            return null;
+        }
+        if (!(parsed instanceof JSONObject)) {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, "Expected a JSON object");
+            return null;
+        }
+        return (JSONObject) parsed;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("success", false);
+        json.put("error", message);
+        writeJson(response, status, json);
+    }
+}
@@ -0,0 +1,103 @@
+package com.team254.lib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Converts a log written by MappedTelemetryLog back to a CSV file with the same layout ReflectingCSVWriter used, so
+ * the scripts in csv_logging keep working. Run it on a laptop after copying the segment files (PATH-FOLLOWER-LOGS.0.seg
+ * and so on) off the robot, passing the base name:
+ *
+ * java -cp bin com.team254.lib.util.BinaryLogToCSV PATH-FOLLOWER-LOGS PATH-FOLLOWER-LOGS.csv
+ *
+ * Single-file .bin logs, from before the path follower log moved to MappedTelemetryLog, can still be converted by
+ * passing the file name.
+ *
+ * A trailing partial record (from a log that was cut off mid-write) is ignored.
+ */
+public class BinaryLogToCSV {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: BinaryLogToCSV <log base name or input.bin> [output.csv]");
+            return;
+        }
+        String input = args[0];
+        String output = args.length > 1 ? args[1] : input.replaceFirst("\\.bin$", "") + ".csv";
+
+        if (!new File(input).isFile()) {
+            convertSegments(input, output);
+            return;
+        }
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(input), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        BinaryRecordFormat.Header header = BinaryRecordFormat.readHeader(buffer);
+
+        int records = 0;
+        try (PrintWriter writer = new PrintWriter(output)) {
+            writeCSVHeader(writer, header);
+            while (buffer.remaining() >= header.record_size) {
+                writeCSVLine(writer, header, buffer, buffer.position());
+                buffer.position(buffer.position() + header.record_size);
+                ++records;
+            }
+        }
+        System.out.println("Wrote " + records + " records to " + output);
+    }
+
+    private static void convertSegments(String baseName, String output) throws IOException {
+        File[] segments = MappedTelemetryLog.findSegments(baseName);
+        if (segments.length == 0) {
+            System.out.println("No log or segments found for " + baseName);
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(output)) {
+            boolean[] wrote_header = { false };
+            int records = MappedTelemetryLog.readSegments(segments, (header, buffer, offset) -> {
+                if (!wrote_header[0]) {
+                    writeCSVHeader(writer, header);
+                    wrote_header[0] = true;
+                }
+                writeCSVLine(writer, header, buffer, offset);
+            });
+            System.out.println("Recovered " + records + " records from " + segments.length + " segments to " + output);
+        }
+    }
+
+    public static void writeCSVHeader(PrintWriter writer, BinaryRecordFormat.Header header) {
+        StringBuilder line = new StringBuilder();
+        for (String name : header.names) {
+            if (line.length() != 0) {
+                line.append(", ");
+            }
+            line.append(name);
+        }
+        writer.println(line);
+    }
+
+    public static void writeCSVLine(PrintWriter writer, BinaryRecordFormat.Header header, ByteBuffer buffer,
+            int offset) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < header.names.length; ++i) {
+            if (i != 0) {
+                line.append(", ");
+            }
+            double value = header.readField(buffer, offset, i);
+            byte type = header.types[i];
+            if (type == BinaryRecordFormat.kTypeDouble || type == BinaryRecordFormat.kTypeFloat) {
+                line.append(value);
+            } else {
+                line.append((long) value);
+            }
+        }
+        writer.println(line);
+    }
+}
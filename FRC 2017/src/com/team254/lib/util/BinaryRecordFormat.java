@@ -0,0 +1,312 @@
+package com.team254.lib.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes how the public primitive fields of a class are laid out in a fixed-width binary record. Field accessors are
+ * resolved once, when the format is created, and folded together with the buffer stores into a single MethodHandle that
+ * encodes a whole record. Writing a record is one invokeExact with no reflection or boxing; the handle is still a
+ * field of the format rather than a constant, so the JIT compiles it as a unit but can't inline it into the caller.
+ *
+ * A log file starts with a header (see writeHeader) that names every field and its type, followed by records. All
+ * values are little-endian.
+ *
+ * @see MappedTelemetryLog
+ * @see BinaryLogToCSV
+ */
+public class BinaryRecordFormat<T> {
+    public static final int kMagic = 0x32353442; // "254B"
+    public static final int kVersion = 1;
+    public static final ByteOrder kByteOrder = ByteOrder.LITTLE_ENDIAN;
+
+    public static final byte kTypeDouble = 'D';
+    public static final byte kTypeFloat = 'F';
+    public static final byte kTypeLong = 'J';
+    public static final byte kTypeInt = 'I';
+    public static final byte kTypeShort = 'S';
+    public static final byte kTypeByte = 'B';
+    public static final byte kTypeBoolean = 'Z';
+
+    private final String[] mNames;
+    private final byte[] mTypes;
+    private final MethodHandle mEncoder; // (ByteBuffer buffer, int offset, Object value)void
+    private final int mRecordSize;
+
+    public BinaryRecordFormat(Class<T> typeClass) {
+        List<String> names = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        MethodHandle encoder = findStatic("encodeNothing",
+                MethodType.methodType(void.class, ByteBuffer.class, int.class, Object.class));
+        int record_size = 0;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Field field : typeClass.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            Class<?> type = field.getType();
+            byte type_code = typeCode(type);
+            if (type_code == 0) {
+                System.out.println("BinaryRecordFormat: skipping non-primitive field " + field.getName());
+                continue;
+            }
+            MethodHandle getter;
+            try {
+                getter = lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+                continue;
+            }
+            // store(buffer, offset + record_size, getter(value)), run before the fields already added.
+            MethodHandle store = MethodHandles.insertArguments(storeFor(type_code, type), 2, record_size);
+            store = MethodHandles.filterArguments(store, 2, getter);
+            encoder = MethodHandles.foldArguments(encoder, store);
+            names.add(field.getName());
+            types.add(type_code);
+            record_size += sizeOf(type_code);
+        }
+
+        mNames = names.toArray(new String[names.size()]);
+        mTypes = new byte[types.size()];
+        for (int i = 0; i < mTypes.length; ++i) {
+            mTypes[i] = types.get(i);
+        }
+        mEncoder = encoder;
+        mRecordSize = record_size;
+    }
+
+    private static MethodHandle storeFor(byte type_code, Class<?> type) {
+        final String name;
+        switch (type_code) {
+        case kTypeDouble:
+            name = "putDouble";
+            break;
+        case kTypeFloat:
+            name = "putFloat";
+            break;
+        case kTypeLong:
+            name = "putLong";
+            break;
+        case kTypeInt:
+            name = "putInt";
+            break;
+        case kTypeShort:
+            name = "putShort";
+            break;
+        case kTypeByte:
+            name = "putByte";
+            break;
+        default:
+            name = "putBoolean";
+            break;
+        }
+        return findStatic(name, MethodType.methodType(void.class, ByteBuffer.class, int.class, int.class, type));
+    }
+
+    private static MethodHandle findStatic(String name, MethodType type) {
+        try {
+            return MethodHandles.lookup().findStatic(BinaryRecordFormat.class, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // These are the private methods below, so this can only happen on a programming error.
+            throw new RuntimeException(e);
+        }
+    }
+
+    // The pieces the encoder is built from. Each store writes one field at offset + field_offset.
+
+    private static void encodeNothing(ByteBuffer buffer, int offset, Object value) {
+    }
+
+    private static void putDouble(ByteBuffer buffer, int offset, int field_offset, double value) {
+        buffer.putDouble(offset + field_offset, value);
+    }
+
+    private static void putFloat(ByteBuffer buffer, int offset, int field_offset, float value) {
+        buffer.putFloat(offset + field_offset, value);
+    }
+
+    private static void putLong(ByteBuffer buffer, int offset, int field_offset, long value) {
+        buffer.putLong(offset + field_offset, value);
+    }
+
+    private static void putInt(ByteBuffer buffer, int offset, int field_offset, int value) {
+        buffer.putInt(offset + field_offset, value);
+    }
+
+    private static void putShort(ByteBuffer buffer, int offset, int field_offset, short value) {
+        buffer.putShort(offset + field_offset, value);
+    }
+
+    private static void putByte(ByteBuffer buffer, int offset, int field_offset, byte value) {
+        buffer.put(offset + field_offset, value);
+    }
+
+    private static void putBoolean(ByteBuffer buffer, int offset, int field_offset, boolean value) {
+        buffer.put(offset + field_offset, value ? (byte) 1 : (byte) 0);
+    }
+
+    private static byte typeCode(Class<?> type) {
+        if (type == double.class) {
+            return kTypeDouble;
+        } else if (type == float.class) {
+            return kTypeFloat;
+        } else if (type == long.class) {
+            return kTypeLong;
+        } else if (type == int.class) {
+            return kTypeInt;
+        } else if (type == short.class) {
+            return kTypeShort;
+        } else if (type == byte.class) {
+            return kTypeByte;
+        } else if (type == boolean.class) {
+            return kTypeBoolean;
+        }
+        return 0;
+    }
+
+    public static int sizeOf(byte type_code) {
+        switch (type_code) {
+        case kTypeDouble:
+        case kTypeLong:
+            return 8;
+        case kTypeFloat:
+        case kTypeInt:
+            return 4;
+        case kTypeShort:
+            return 2;
+        case kTypeByte:
+        case kTypeBoolean:
+            return 1;
+        default:
+            throw new IllegalArgumentException("Unknown field type " + type_code);
+        }
+    }
+
+    public int getRecordSize() {
+        return mRecordSize;
+    }
+
+    public int getFieldCount() {
+        return mNames.length;
+    }
+
+    public String getFieldName(int i) {
+        return mNames[i];
+    }
+
+    public byte getFieldType(int i) {
+        return mTypes[i];
+    }
+
+    /**
+     * Writes value as one record at the given absolute offset. The buffer's position is not changed, and the buffer
+     * must use kByteOrder.
+     */
+    public void writeRecord(T value, ByteBuffer buffer, int offset) {
+        try {
+            mEncoder.invokeExact(buffer, offset, (Object) value);
+        } catch (Throwable t) {
+            // The encoder is plain field reads and buffer stores, so this can only happen on a programming error.
+            throw new RuntimeException(t);
+        }
+    }
+
+    public int getHeaderSize() {
+        int size = 4 * 3;
+        for (String name : mNames) {
+            size += 1 + 2 + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * Header layout: magic, version, field count (ints), then for each field a type code (byte), name length (short)
+     * and UTF-8 name.
+     */
+    public void writeHeader(ByteBuffer buffer) {
+        buffer.order(kByteOrder);
+        buffer.putInt(kMagic);
+        buffer.putInt(kVersion);
+        buffer.putInt(mNames.length);
+        for (int i = 0; i < mNames.length; ++i) {
+            byte[] name = mNames[i].getBytes(StandardCharsets.UTF_8);
+            buffer.put(mTypes[i]);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+    }
+
+    /**
+     * The field names and types read back from a log header, for tools that decode logs without the original class.
+     */
+    public static class Header {
+        public final String[] names;
+        public final byte[] types;
+        public final int record_size;
+
+        public Header(String[] names, byte[] types) {
+            this.names = names;
+            this.types = types;
+            int record_size = 0;
+            for (byte type : types) {
+                record_size += sizeOf(type);
+            }
+            this.record_size = record_size;
+        }
+
+        /**
+         * Reads the value of field i from a record starting at offset, widened to a double.
+         */
+        public double readField(ByteBuffer buffer, int offset, int i) {
+            for (int j = 0; j < i; ++j) {
+                offset += sizeOf(types[j]);
+            }
+            switch (types[i]) {
+            case kTypeDouble:
+                return buffer.getDouble(offset);
+            case kTypeFloat:
+                return buffer.getFloat(offset);
+            case kTypeLong:
+                return buffer.getLong(offset);
+            case kTypeInt:
+                return buffer.getInt(offset);
+            case kTypeShort:
+                return buffer.getShort(offset);
+            default:
+                return buffer.get(offset);
+            }
+        }
+    }
+
+    /**
+     * Reads a header written by writeHeader, leaving the buffer positioned at the first record.
+     */
+    public static Header readHeader(ByteBuffer buffer) {
+        buffer.order(kByteOrder);
+        if (buffer.getInt() != kMagic) {
+            throw new IllegalArgumentException("Not a binary log");
+        }
+        int version = buffer.getInt();
+        if (version != kVersion) {
+            throw new IllegalArgumentException("Unsupported binary log version " + version);
+        }
+        int count = buffer.getInt();
+        String[] names = new String[count];
+        byte[] types = new byte[count];
+        for (int i = 0; i < count; ++i) {
+            types[i] = buffer.get();
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return new Header(names, types);
+    }
+}
@@ -8,15 +8,24 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * ConstantsBase
@@ -27,6 +36,104 @@ import java.util.Set;
 public abstract class ConstantsBase {
     HashMap<String, Boolean> modifiedKeys = new HashMap<String, Boolean>();
 
+    // Name -> IndexEntry for every static field, in declaration order. Built on first use.
+    private volatile Map<String, IndexEntry> index_ = null;
+    private final List<Listener> listeners_ = new CopyOnWriteArrayList<>();
+    private final List<UpdateBarrier> barriers_ = new CopyOnWriteArrayList<>();
+
+    /**
+     * Accessors for one static field, looked up once so that getting or setting a constant by name is a hash lookup
+     * instead of a scan over every declared field.
+     */
+    private static class IndexEntry {
+        public final String name;
+        public final Class<?> type;
+        private final MethodHandle getter_;
+        private final MethodHandle setter_;
+
+        public IndexEntry(Field field) throws IllegalAccessException {
+            field.setAccessible(true);
+            name = field.getName();
+            type = field.getType();
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            getter_ = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class));
+            setter_ = java.lang.reflect.Modifier.isFinal(field.getModifiers()) ? null
+                    : lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class));
+        }
+
+        public Object get() {
+            try {
+                return (Object) getter_.invokeExact();
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+
+        public void set(Object value) {
+            try {
+                setter_.invokeExact(value);
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+
+        /**
+         * @return The value converted to this field's type, or null if it can't be (or the field is final).
+         */
+        public Object convert(Object value) {
+            if (setter_ == null || value == null) {
+                return null;
+            }
+            if (value instanceof Number) {
+                final Number number = (Number) value;
+                if (type == double.class || type == Double.class) {
+                    return number.doubleValue();
+                } else if (type == int.class || type == Integer.class) {
+                    try {
+                        return new BigDecimal(number.toString()).intValueExact();
+                    } catch (ArithmeticException | NumberFormatException e) {
+                        return null;
+                    }
+                } else if (type == long.class || type == Long.class) {
+                    try {
+                        return new BigDecimal(number.toString()).longValueExact();
+                    } catch (ArithmeticException | NumberFormatException e) {
+                        return null;
+                    }
+                }
+            }
+            if (type == boolean.class || type == Boolean.class) {
+                return value instanceof Boolean ? value : null;
+            }
+            return type.isInstance(value) ? value : null;
+        }
+    }
+
+    private Map<String, IndexEntry> getIndex() {
+        Map<String, IndexEntry> index = index_;
+        if (index == null) {
+            synchronized (this) {
+                index = index_;
+                if (index == null) {
+                    index = new LinkedHashMap<>();
+                    for (Field field : this.getClass().getDeclaredFields()) {
+                        // A static instance of the constants class (see Constants.getInstance()) isn't a constant.
+                        if (java.lang.reflect.Modifier.isStatic(field.getModifiers())
+                                && !ConstantsBase.class.isAssignableFrom(field.getType())) {
+                            try {
+                                index.put(field.getName(), new IndexEntry(field));
+                            } catch (IllegalAccessException | RuntimeException e) {
+                                System.out.println("Could not index field: " + field.getName());
+                            }
+                        }
+                    }
+                    index_ = index;
+                }
+            }
+        }
+        return index;
+    }
+
     public abstract String getFileLocation();
 
     public static class Constant {
@@ -81,54 +188,98 @@ public abstract class ConstantsBase {
     }
 
     private boolean setConstantRaw(String name, Object value) {
-        boolean success = false;
-        Field[] declaredFields = this.getClass().getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (java.lang.reflect.Modifier.isStatic(field.getModifiers()) && field.getName().equals(name)) {
-                try {
-                    Object current = field.get(this);
-                    field.set(this, value);
-                    success = true;
-                    if (!value.equals(current)) {
-                        modifiedKeys.put(name, true);
-                        System.out.println("Constant Modified:" + field.getName());
-                    } else {
-                        System.out.println("Constant Not Modified:" + field.getName());
+        return setConstants(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Sets several constants at once. Every value is checked before any is set, so either all of them are set or (if
+     * any name is unknown or any value has the wrong type) none are. Listeners are then told about the ones whose value
+     * actually changed, in a single call.
+     *
+     * The constants are plain static fields, so the values are written inside every registered UpdateBarrier. With a
+     * Looper registered, that means between ticks of all of its loops: no loop sees part of a batch, and each loop sees
+     * all of it from its next tick on. Code that reads constants outside the barriers (e.g. teleop) isn't covered.
+     *
+     * @param values
+     *            Constant name to new value. Numbers are converted to the type of the field (e.g. a Long from a JSON
+     *            file to an int or double).
+     * @return True if the values were set.
+     */
+    public boolean setConstants(Map<? extends String, ?> values) {
+        final Map<String, IndexEntry> index = getIndex();
+        final Set<String> changed = new LinkedHashSet<>();
+        synchronized (this) {
+            final List<IndexEntry> entries = new ArrayList<>(values.size());
+            final List<Object> converted = new ArrayList<>(values.size());
+            for (Map.Entry<? extends String, ?> value : values.entrySet()) {
+                final IndexEntry entry = index.get(value.getKey());
+                if (entry == null) {
+                    System.out.println("Could not set field: " + value.getKey());
+                    return false;
+                }
+                final Object converted_value = entry.convert(value.getValue());
+                if (converted_value == null) {
+                    System.out.println("Could not set field: " + value.getKey() + " (expected " + entry.type + ")");
+                    return false;
+                }
+                entries.add(entry);
+                converted.add(converted_value);
+            }
+            runInsideBarriers(barriers_.iterator(), () -> {
+                for (int i = 0; i < entries.size(); ++i) {
+                    final IndexEntry entry = entries.get(i);
+                    final Object current = entry.get();
+                    entry.set(converted.get(i));
+                    if (!converted.get(i).equals(current)) {
+                        changed.add(entry.name);
                     }
-                } catch (IllegalArgumentException | IllegalAccessException e) {
-                    System.out.println("Could not set field: " + name);
+                }
+            });
+            for (IndexEntry entry : entries) {
+                if (changed.contains(entry.name)) {
+                    modifiedKeys.put(entry.name, true);
+                    System.out.println("Constant Modified:" + entry.name);
+                } else {
+                    System.out.println("Constant Not Modified:" + entry.name);
                 }
             }
         }
-        return success;
-    }
-
-    public Object getValueForConstant(String name) throws Exception {
-        Field[] declaredFields = this.getClass().getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (java.lang.reflect.Modifier.isStatic(field.getModifiers()) && field.getName().equals(name)) {
+        if (!changed.isEmpty()) {
+            final Set<String> changed_keys = Collections.unmodifiableSet(changed);
+            for (Listener listener : listeners_) {
                 try {
-                    return field.get(this);
-                } catch (IllegalArgumentException | IllegalAccessException e) {
-                    throw new Exception("Constant not found");
+                    listener.onConstantsChanged(changed_keys);
+                } catch (RuntimeException e) {
+                    System.out.println("Constants listener failed");
+                    e.printStackTrace();
                 }
             }
         }
-        throw new Exception("Constant not found");
+        return true;
+    }
+
+    private static void runInsideBarriers(Iterator<UpdateBarrier> barriers, Runnable update) {
+        if (barriers.hasNext()) {
+            barriers.next().runPaused(() -> runInsideBarriers(barriers, update));
+        } else {
+            update.run();
+        }
+    }
+
+    public Object getValueForConstant(String name) throws Exception {
+        final IndexEntry entry = getIndex().get(name);
+        if (entry == null) {
+            throw new Exception("Constant not found");
+        }
+        return entry.get();
     }
 
     public Constant getConstant(String name) {
-        Field[] declaredFields = this.getClass().getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (java.lang.reflect.Modifier.isStatic(field.getModifiers()) && field.getName().equals(name)) {
-                try {
-                    return new Constant(field.getName(), field.getType(), field.get(this));
-                } catch (IllegalArgumentException | IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            }
+        final IndexEntry entry = getIndex().get(name);
+        if (entry == null) {
+            return new Constant("", Object.class, 0);
         }
-        return new Constant("", Object.class, 0);
+        return new Constant(entry.name, entry.type, entry.get());
     }
 
     public Collection<Constant> getConstants() {
@@ -144,22 +295,42 @@ public abstract class ConstantsBase {
     }
 
     private Collection<Constant> getAllConstants() {
-        Field[] declaredFields = this.getClass().getDeclaredFields();
-        List<Constant> constants = new ArrayList<Constant>(declaredFields.length);
-        for (Field field : declaredFields) {
-            if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) {
-                Constant c;
-                try {
-                    c = new Constant(field.getName(), field.getType(), field.get(this));
-                    constants.add(c);
-                } catch (IllegalArgumentException | IllegalAccessException e) {
-                    e.printStackTrace();
-                }
-            }
+        final Map<String, IndexEntry> index = getIndex();
+        List<Constant> constants = new ArrayList<Constant>(index.size());
+        for (IndexEntry entry : index.values()) {
+            constants.add(new Constant(entry.name, entry.type, entry.get()));
         }
         return constants;
     }
 
+    /**
+     * Called with the names of the constants that changed, after each successful setConstants (or loadFromFile) that
+     * changed anything. Runs on the thread that made the change.
+     */
+    public interface Listener {
+        public void onConstantsChanged(Set<String> changed_keys);
+    }
+
+    public void addListener(Listener listener) {
+        listeners_.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners_.remove(listener);
+    }
+
+    /**
+     * Something that reads the constants without locking (e.g. a Looper), and can pause those reads while a batch is
+     * written. runPaused must run the update on the calling thread before returning.
+     */
+    public interface UpdateBarrier {
+        public void runPaused(Runnable update);
+    }
+
+    public void addUpdateBarrier(UpdateBarrier barrier) {
+        barriers_.add(barrier);
+    }
+
     public JSONObject getJSONObjectFromFile() throws IOException, ParseException {
         File file = getFile();
         if (file == null || !file.exists()) {
@@ -171,17 +342,30 @@ public abstract class ConstantsBase {
         return (JSONObject) jsonParser.parse(reader);
     }
 
+    /**
+     * Sets every constant in the file that can be set, as one batch. Unlike setConstants, a key that is unknown (e.g. a
+     * constant that was renamed), final, or has a value of the wrong type is skipped with a warning instead of stopping
+     * the rest of the file from loading.
+     */
     public void loadFromFile() {
         try {
             JSONObject jsonObject = getJSONObjectFromFile();
-            Set<?> keys = jsonObject.keySet();
-            for (Object o : keys) {
-                String key = (String) o;
-                Object value = jsonObject.get(o);
-                if (value instanceof Long && getConstant(key).type.equals(int.class)) {
-                    value = new BigDecimal((Long) value).intValueExact();
+            final Map<String, IndexEntry> index = getIndex();
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Object o : jsonObject.keySet()) {
+                final String key = (String) o;
+                final IndexEntry entry = index.get(key);
+                if (entry == null) {
+                    System.out.println("Skipping unknown constant in " + getFile() + ": " + key);
+                } else if (entry.convert(jsonObject.get(o)) == null) {
+                    System.out.println("Skipping constant in " + getFile() + ": " + key + " (final, or not a "
+                            + entry.type + ")");
+                } else {
+                    values.put(key, jsonObject.get(o));
                 }
-                setConstantRaw(key, value);
+            }
+            if (!values.isEmpty() && !setConstants(values)) {
+                System.out.println("Constants file " + getFile() + " not loaded");
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,93 @@
+package com.team254.lib.util;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A function of one variable, sampled at evenly spaced points and stored in an array. A lookup is an index computation
+ * and a linear interpolation between two neighbouring entries, so it takes constant time and doesn't allocate, no
+ * matter how expensive the original function was to evaluate.
+ *
+ * Inputs outside the table return the first or last entry, the same as InterpolatingTreeMap.getInterpolated.
+ */
+public class DenseLookupTable implements DoubleUnaryOperator {
+    private final double min_x_;
+    private final double max_x_;
+    private final double inv_step_;
+    private final double[] values_;
+
+    /**
+     * @param values
+     *            f(x) at min_x, max_x and evenly spaced points in between. At least 2.
+     */
+    public DenseLookupTable(double min_x, double max_x, double[] values) {
+        if (values.length < 2 || !(max_x > min_x)) {
+            throw new IllegalArgumentException("A lookup table needs at least 2 values over a non-empty range");
+        }
+        min_x_ = min_x;
+        max_x_ = max_x;
+        inv_step_ = (values.length - 1) / (max_x - min_x);
+        values_ = values.clone();
+    }
+
+    /**
+     * Samples f every resolution (or a little less, so that max_x is a sample) from min_x to max_x.
+     */
+    public static DenseLookupTable fromFunction(DoubleUnaryOperator f, double min_x, double max_x,
+            double resolution) {
+        final int n = Math.max(2, (int) Math.ceil((max_x - min_x) / resolution) + 1);
+        double[] values = new double[n];
+        for (int i = 0; i < n; ++i) {
+            values[i] = f.applyAsDouble(i == n - 1 ? max_x : min_x + (max_x - min_x) * i / (n - 1));
+        }
+        return new DenseLookupTable(min_x, max_x, values);
+    }
+
+    /**
+     * Samples an interpolating map between its first and last keys. Between samples the table interpolates linearly,
+     * as the map does, so the table only differs from the map inside the few cells that contain a key.
+     */
+    public static DenseLookupTable fromMap(InterpolatingTreeMap<InterpolatingDouble, InterpolatingDouble> map,
+            double resolution) {
+        if (map.isEmpty()) {
+            throw new IllegalArgumentException("Can't make a lookup table from an empty map");
+        }
+        double min_x = map.firstKey().value;
+        double max_x = map.lastKey().value;
+        if (max_x == min_x) {
+            // A single point is a constant.
+            max_x = min_x + resolution;
+        }
+        return fromFunction(x -> map.getInterpolated(new InterpolatingDouble(x)).value, min_x, max_x, resolution);
+    }
+
+    public double get(double x) {
+        if (x <= min_x_) {
+            return values_[0];
+        }
+        final double position = (x - min_x_) * inv_step_;
+        final int last = values_.length - 1;
+        if (position >= last) {
+            return values_[last];
+        }
+        final int i = (int) position;
+        final double a = values_[i];
+        return a + (values_[i + 1] - a) * (position - i);
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        return get(x);
+    }
+
+    public double getMinX() {
+        return min_x_;
+    }
+
+    public double getMaxX() {
+        return max_x_;
+    }
+
+    public int size() {
+        return values_.length;
+    }
+}
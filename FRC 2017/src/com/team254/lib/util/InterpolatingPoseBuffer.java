@@ -0,0 +1,191 @@
+package com.team254.lib.util;
+
+import com.team254.lib.util.math.PoseMath;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Translation2d;
+
+/**
+ * A time-indexed history of poses, stored as parallel primitive arrays in a circular buffer. This has the same lookup
+ * semantics as an InterpolatingTreeMap of InterpolatingDouble to RigidTransform2d, but adding a sample does not
+ * allocate, and a full buffer overwrites its oldest sample instead of pruning a tree.
+ *
+ * Lookups binary search the timestamps and interpolate between the two surrounding samples.
+ *
+ * @see InterpolatingTreeMap
+ */
+public class InterpolatingPoseBuffer {
+    private final double[] timestamps_;
+    private final double[] x_;
+    private final double[] y_;
+    private final double[] cos_;
+    private final double[] sin_;
+    private int head_ = 0; // physical index of the oldest sample
+    private int size_ = 0;
+    private RigidTransform2d last_value_ = null;
+
+    // Scratch poses for interpolation.
+    private final double[] bottom_ = new double[PoseMath.kPoseSize];
+    private final double[] top_ = new double[PoseMath.kPoseSize];
+
+    public InterpolatingPoseBuffer(int capacity) {
+        timestamps_ = new double[capacity];
+        x_ = new double[capacity];
+        y_ = new double[capacity];
+        cos_ = new double[capacity];
+        sin_ = new double[capacity];
+    }
+
+    public void clear() {
+        head_ = 0;
+        size_ = 0;
+        last_value_ = null;
+    }
+
+    public int size() {
+        return size_;
+    }
+
+    public int capacity() {
+        return timestamps_.length;
+    }
+
+    public boolean isEmpty() {
+        return size_ == 0;
+    }
+
+    private int physicalIndex(int logical_index) {
+        int index = head_ + logical_index;
+        return index >= timestamps_.length ? index - timestamps_.length : index;
+    }
+
+    private void store(int logical_index, double timestamp, RigidTransform2d pose) {
+        final int i = physicalIndex(logical_index);
+        timestamps_[i] = timestamp;
+        x_[i] = pose.getTranslation().x();
+        y_[i] = pose.getTranslation().y();
+        cos_[i] = pose.getRotation().cos();
+        sin_[i] = pose.getRotation().sin();
+    }
+
+    private void copy(int from_logical_index, int to_logical_index) {
+        final int from = physicalIndex(from_logical_index);
+        final int to = physicalIndex(to_logical_index);
+        timestamps_[to] = timestamps_[from];
+        x_[to] = x_[from];
+        y_[to] = y_[from];
+        cos_[to] = cos_[from];
+        sin_[to] = sin_[from];
+    }
+
+    /**
+     * Adds a sample, overwriting the oldest one if the buffer is full. Samples normally arrive in time order and are
+     * appended in O(1); a sample with the same timestamp as an existing one replaces it, and an out-of-order sample is
+     * shifted into place.
+     */
+    public void put(double timestamp, RigidTransform2d pose) {
+        if (size_ == 0 || timestamp > timestamps_[physicalIndex(size_ - 1)]) {
+            if (size_ == timestamps_.length) {
+                head_ = physicalIndex(1);
+                --size_;
+            }
+            store(size_, timestamp, pose);
+            ++size_;
+            last_value_ = pose;
+            return;
+        }
+
+        int index = ceilingIndex(timestamp);
+        if (timestamps_[physicalIndex(index)] == timestamp) {
+            store(index, timestamp, pose);
+            if (index == size_ - 1) {
+                last_value_ = pose;
+            }
+            return;
+        }
+        if (size_ == timestamps_.length) {
+            if (index == 0) {
+                // Older than everything in a full buffer; it would be pruned right away.
+                return;
+            }
+            // Drop the oldest sample to make room.
+            head_ = physicalIndex(1);
+            --size_;
+            --index;
+        }
+        for (int i = size_; i > index; --i) {
+            copy(i - 1, i);
+        }
+        store(index, timestamp, pose);
+        ++size_;
+    }
+
+    /**
+     * @return The logical index of the first sample with a timestamp >= the given timestamp, or size() if there is
+     *         none.
+     */
+    private int ceilingIndex(double timestamp) {
+        int low = 0;
+        int high = size_;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps_[physicalIndex(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private RigidTransform2d poseAt(int logical_index) {
+        final int i = physicalIndex(logical_index);
+        return new RigidTransform2d(new Translation2d(x_[i], y_[i]), new Rotation2d(cos_[i], sin_[i], false));
+    }
+
+    private void loadPose(int logical_index, double[] out) {
+        final int i = physicalIndex(logical_index);
+        PoseMath.set(x_[i], y_[i], cos_[i], sin_[i], out);
+    }
+
+    public double lastTimestamp() {
+        return timestamps_[physicalIndex(size_ - 1)];
+    }
+
+    /**
+     * @return The pose with the latest timestamp. This is the same object that was passed to put(), so no allocation
+     *         happens here.
+     */
+    public RigidTransform2d lastValue() {
+        return last_value_;
+    }
+
+    public double firstTimestamp() {
+        return timestamps_[head_];
+    }
+
+    /**
+     * @return The pose at the given time, interpolated between the two surrounding samples with constant curvature.
+     *         Timestamps before the first or after the last sample return the nearest sample, and an empty buffer
+     *         returns null.
+     */
+    public RigidTransform2d getInterpolated(double timestamp) {
+        if (size_ == 0) {
+            return null;
+        }
+        final int top = ceilingIndex(timestamp);
+        if (top == size_) {
+            return poseAt(size_ - 1);
+        }
+        final double top_timestamp = timestamps_[physicalIndex(top)];
+        if (top_timestamp == timestamp || top == 0) {
+            return poseAt(top);
+        }
+        final double bottom_timestamp = timestamps_[physicalIndex(top - 1)];
+        final double x = (timestamp - bottom_timestamp) / (top_timestamp - bottom_timestamp);
+        loadPose(top - 1, bottom_);
+        loadPose(top, top_);
+        PoseMath.interpolate(bottom_, top_, x, top_);
+        return PoseMath.toRigidTransform(top_);
+    }
+}
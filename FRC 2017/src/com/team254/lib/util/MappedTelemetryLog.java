@@ -0,0 +1,268 @@
+package com.team254.lib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * A crash-safe telemetry log backed by a fixed number of memory-mapped segment files. Records use the fixed-width
+ * encoding of BinaryRecordFormat, so writing one is a handful of stores into mapped memory with no system call on the
+ * loop thread. The OS writes the pages back on its own, so everything up to the last complete record
+ * survives the robot code crashing, and a power loss only loses what the OS hadn't written yet.
+ *
+ * Segments are named base.0.seg, base.1.seg, ... and reused in rotation, so the log never grows past
+ * kMaxSegments * kSegmentSize bytes. The next segment is mapped ahead of time by a background thread.
+ *
+ * Segment layout: a segment header (magic, version, segment sequence number, offset of the first record) and the
+ * record format header, then records. Each record is preceded by an 8 byte header: a CRC32 of the payload and a stamp
+ * equal to the low 32 bits of the segment's sequence number. The stamp is written last, so a reader accepts records in
+ * order until it finds one whose stamp or CRC doesn't match. That also rejects stale records left in a reused segment
+ * file from an earlier rotation.
+ *
+ * @see BinaryRecordFormat
+ * @see BinaryLogToCSV
+ */
+public class MappedTelemetryLog<T> {
+    public static final int kSegmentMagic = 0x32353453; // "254S"
+    public static final int kSegmentVersion = 1;
+    public static final String kSegmentSuffix = ".seg";
+    private static final int kSegmentHeaderSize = 4 + 4 + 8 + 4;
+    public static final int kRecordHeaderSize = 8;
+
+    private static final int kDefaultSegmentSize = 1 << 20;
+    private static final int kDefaultMaxSegments = 8;
+    private static final long kPreparePeriodMs = 10;
+
+    private static class Segment {
+        public final long sequence;
+        public final int stamp;
+        public final MappedByteBuffer buffer;
+        public final ByteBuffer view; // used to point the CRC at a record without allocating
+        public final int data_start;
+
+        public Segment(long sequence, MappedByteBuffer buffer, int data_start) {
+            this.sequence = sequence;
+            this.stamp = (int) sequence;
+            this.buffer = buffer;
+            this.view = buffer.duplicate();
+            this.data_start = data_start;
+        }
+    }
+
+    private final String mBaseName;
+    private final BinaryRecordFormat<T> mFormat;
+    private final int mRecordSize;
+    private final int mSegmentSize;
+    private final int mMaxSegments;
+
+    // Owned by the logging thread.
+    private final CRC32 mCrc = new CRC32();
+    private Segment mCurrent = null;
+    private int mPosition = 0;
+    private long mDroppedCount = 0;
+
+    // Handed from the background thread to the logging thread.
+    private final AtomicReference<Segment> mNext = new AtomicReference<>(null);
+    private volatile Segment mLastSegment = null;
+    private long mNextSequence;
+
+    public MappedTelemetryLog(String baseName, Class<T> typeClass) {
+        this(baseName, typeClass, kDefaultSegmentSize, kDefaultMaxSegments);
+    }
+
+    public MappedTelemetryLog(String baseName, Class<T> typeClass, int segmentSize, int maxSegments) {
+        mBaseName = baseName;
+        mFormat = new BinaryRecordFormat<>(typeClass);
+        mRecordSize = mFormat.getRecordSize();
+        mSegmentSize = segmentSize;
+        mMaxSegments = maxSegments;
+
+        // Continue numbering after whatever is already on disk so the newest old segments are overwritten last.
+        mNextSequence = 1;
+        for (int i = 0; i < mMaxSegments; ++i) {
+            long sequence = readSequence(segmentFile(i));
+            if (sequence >= mNextSequence) {
+                mNextSequence = sequence + 1;
+            }
+        }
+        prepareNextSegment();
+
+        Thread thread = new Thread(new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                while (true) {
+                    if (mNext.get() == null) {
+                        prepareNextSegment();
+                    }
+                    try {
+                        Thread.sleep(kPreparePeriodMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        thread.setName("MappedTelemetryLog " + baseName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private File segmentFile(int index) {
+        return new File(mBaseName + "." + index + kSegmentSuffix);
+    }
+
+    private static long readSequence(File file) {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(kSegmentHeaderSize).order(BinaryRecordFormat.kByteOrder);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < kSegmentHeaderSize || header.getInt() != kSegmentMagic) {
+                return 0;
+            }
+            header.getInt();
+            return header.getLong();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void prepareNextSegment() {
+        final long sequence = mNextSequence;
+        final File file = segmentFile((int) (sequence % mMaxSegments));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mSegmentSize);
+            buffer.order(BinaryRecordFormat.kByteOrder);
+            final int data_start = kSegmentHeaderSize + mFormat.getHeaderSize();
+            buffer.putInt(kSegmentMagic);
+            buffer.putInt(kSegmentVersion);
+            buffer.putLong(sequence);
+            buffer.putInt(data_start);
+            mFormat.writeHeader(buffer);
+            mNextSequence = sequence + 1;
+            mNext.set(new Segment(sequence, buffer, data_start));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Appends one record. Only call this from one thread. Never blocks; if the next segment isn't mapped yet when the
+     * current one fills up, the record is dropped and counted.
+     */
+    public void add(T value) {
+        final int total_size = kRecordHeaderSize + mRecordSize;
+        if (mCurrent == null || mPosition + total_size > mSegmentSize) {
+            Segment next = mNext.getAndSet(null);
+            if (next == null) {
+                ++mDroppedCount;
+                return;
+            }
+            mCurrent = next;
+            mLastSegment = next;
+            mPosition = next.data_start;
+        }
+
+        final Segment segment = mCurrent;
+        final int payload = mPosition + kRecordHeaderSize;
+        mFormat.writeRecord(value, segment.buffer, payload);
+        segment.view.limit(payload + mRecordSize);
+        segment.view.position(payload);
+        mCrc.reset();
+        mCrc.update(segment.view);
+        segment.buffer.putInt(mPosition, (int) mCrc.getValue());
+        // The stamp commits the record, so it goes last.
+        segment.buffer.putInt(mPosition + 4, segment.stamp);
+        mPosition += total_size;
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Forces the current segment to disk. This is a system call, so don't call it every loop.
+     */
+    public void flush() {
+        Segment segment = mLastSegment;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Receives the records recovered from a segment log, oldest first.
+     */
+    public interface RecordVisitor {
+        public void visit(BinaryRecordFormat.Header header, ByteBuffer buffer, int offset);
+    }
+
+    /**
+     * Finds the segment files for a log written with the given base name.
+     */
+    public static File[] findSegments(String baseName) {
+        final File base = new File(baseName);
+        File dir = base.getAbsoluteFile().getParentFile();
+        final String prefix = base.getName() + ".";
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix) && name.endsWith(kSegmentSuffix));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Reads every complete record from the given segment files, in the order they were written.
+     *
+     * @return The number of records recovered.
+     */
+    public static int readSegments(File[] files, RecordVisitor visitor) throws IOException {
+        List<ByteBuffer> segments = new ArrayList<>();
+        for (File file : files) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(BinaryRecordFormat.kByteOrder);
+                if (buffer.remaining() >= kSegmentHeaderSize && buffer.getInt(0) == kSegmentMagic
+                        && buffer.getInt(4) == kSegmentVersion) {
+                    segments.add(buffer);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(b -> b.getLong(8)));
+
+        int records = 0;
+        CRC32 crc = new CRC32();
+        for (ByteBuffer buffer : segments) {
+            final int stamp = (int) buffer.getLong(8);
+            final int data_start = buffer.getInt(16);
+            buffer.position(kSegmentHeaderSize);
+            BinaryRecordFormat.Header header = BinaryRecordFormat.readHeader(buffer);
+            int position = data_start;
+            while (position + kRecordHeaderSize + header.record_size <= buffer.limit()) {
+                if (buffer.getInt(position + 4) != stamp) {
+                    break;
+                }
+                ByteBuffer payload = buffer.duplicate();
+                payload.position(position + kRecordHeaderSize);
+                payload.limit(position + kRecordHeaderSize + header.record_size);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != buffer.getInt(position)) {
+                    break;
+                }
+                visitor.visit(header, buffer, position + kRecordHeaderSize);
+                ++records;
+                position += kRecordHeaderSize + header.record_size;
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,439 @@
+package com.team254.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A hierarchical state machine for subsystem loops, declared as a table instead of a hand-written switch.
+ *
+ * The states are the values of an enum. Each can have entry, loop and exit actions and a list of transitions out of
+ * it. A transition has a guard and a target state, or is a timeout, or computes its target (for states whose next
+ * state depends on a lot of things at once). States can be grouped under superstates (which can be nested), declared
+ * with superstate(). A superstate has the same kinds of actions and transitions, and they apply in every state under
+ * it: its transitions are inherited, its loop action runs while the machine is in any of its states, and its entry and
+ * exit actions run when the machine enters it from, or leaves it for, a state outside it. The machine is always in one
+ * enum state; superstates only group them.
+ *
+ * The tables are indexed by the state's ordinal and are built once, when the machine is set up, so an update does no
+ * lookups by name and allocates nothing.
+ *
+ * Every update (normally once per loop):
+ * <ol>
+ * <li>runs the loop actions of the current state's superstates, outermost first, and then its own,
+ * <li>checks the transitions of the outermost superstate, then the next one in, and so on, and then the state's own,
+ * each in the order they were declared, and takes the first one that fires and leads to a different state. Outer
+ * transitions come first so that a superstate can declare overrides (like going wherever the driver asks) that all of
+ * its states share.
+ * </ol>
+ * Taking a transition runs the exit actions from the old state out to (not including) the innermost superstate the
+ * old and new states share, then the entry actions from there in to the new state. At most one transition is taken
+ * per update, so the new state's loop action first runs on the next update.
+ *
+ * Transitions are recorded in a fixed-size ring buffer instead of being printed from the loop. printNewTransitions()
+ * (or printAllNewTransitions(), for every machine) prints the ones that haven't been printed yet and should be called
+ * from a thread that isn't running a control loop.
+ *
+ * getState() may be called from any thread. Everything else that changes the machine is meant to be called from the one
+ * loop that runs it.
+ */
+public class StateMachine<S extends Enum<S>> {
+    private static final int kDefaultLogSize = 128;
+
+    private static final List<StateMachine<?>> sAllMachines = new CopyOnWriteArrayList<>();
+
+    public interface Action {
+        public void run(double timestamp);
+    }
+
+    public interface Guard {
+        /**
+         * @param time_in_state
+         *            For a superstate's transitions, the time since the machine entered the superstate.
+         */
+        public boolean test(double timestamp, double time_in_state);
+    }
+
+    public interface Selector<S> {
+        /**
+         * @return The next state, or the current one (or null) to stay.
+         */
+        public S select(double timestamp, double time_in_state);
+    }
+
+    /**
+     * A transition that was taken.
+     */
+    public static class Transition<S> {
+        public final double timestamp;
+        public final S from;
+        public final S to;
+        public final String reason;
+
+        public Transition(double timestamp, S from, S to, String reason) {
+            this.timestamp = timestamp;
+            this.from = from;
+            this.to = to;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return from + " to " + to + " at " + timestamp + (reason == null ? "" : " (" + reason + ")");
+        }
+    }
+
+    private static class TransitionRule<S> {
+        final Guard guard; // null for a timeout or a selector
+        final double timeout;
+        final Selector<S> selector;
+        final S target;
+        final String reason;
+
+        TransitionRule(Guard guard, double timeout, Selector<S> selector, S target, String reason) {
+            this.guard = guard;
+            this.timeout = timeout;
+            this.selector = selector;
+            this.target = target;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * A state or a superstate.
+     */
+    private static class Node<S> {
+        final String name;
+        final boolean is_superstate;
+        Action entry;
+        Action loop;
+        Action exit;
+        final List<TransitionRule<S>> rules = new ArrayList<>();
+        Node<S> parent;
+        // The superstates this is in, outermost first. Rebuilt whenever a parent changes.
+        final List<Node<S>> ancestors = new ArrayList<>();
+        double entry_time = Double.NaN;
+
+        Node(String name, boolean is_superstate) {
+            this.name = name;
+            this.is_superstate = is_superstate;
+        }
+    }
+
+    /**
+     * Declares what one state or superstate does. Returned by state() and superstate(), and every method returns it
+     * again so declarations can be chained.
+     */
+    public class StateConfig {
+        private final Node<S> node_;
+
+        private StateConfig(Node<S> node) {
+            node_ = node;
+        }
+
+        /**
+         * Puts this in a superstate. Set up parents before the machine starts running.
+         */
+        public StateConfig parent(StateConfig superstate) {
+            final Node<S> parent = superstate.node_;
+            if (!parent.is_superstate) {
+                throw new IllegalArgumentException(parent.name + " is a state, not a superstate");
+            }
+            for (Node<S> n = parent; n != null; n = n.parent) {
+                if (n == node_) {
+                    throw new IllegalArgumentException(node_.name + " can't be inside itself");
+                }
+            }
+            node_.parent = parent;
+            rebuildAncestors();
+            return this;
+        }
+
+        public StateConfig onEntry(Action action) {
+            node_.entry = action;
+            return this;
+        }
+
+        public StateConfig onLoop(Action action) {
+            node_.loop = action;
+            return this;
+        }
+
+        public StateConfig onExit(Action action) {
+            node_.exit = action;
+            return this;
+        }
+
+        /**
+         * Goes to target when guard is true.
+         */
+        public StateConfig transition(Guard guard, S target) {
+            return transition(guard, target, null);
+        }
+
+        /**
+         * @param reason
+         *            Recorded with the transition. Should be a constant, so that recording it doesn't allocate.
+         */
+        public StateConfig transition(Guard guard, S target, String reason) {
+            node_.rules.add(new TransitionRule<S>(guard, Double.NaN, null, target, reason));
+            return this;
+        }
+
+        /**
+         * Goes to target once the machine has been in this (super)state for longer than seconds.
+         */
+        public StateConfig timeout(double seconds, S target) {
+            return timeout(seconds, target, "timeout");
+        }
+
+        public StateConfig timeout(double seconds, S target, String reason) {
+            node_.rules.add(new TransitionRule<S>(null, seconds, null, target, reason));
+            return this;
+        }
+
+        /**
+         * Goes to whatever state selector returns, if it isn't the current one.
+         */
+        public StateConfig transition(Selector<S> selector) {
+            node_.rules.add(new TransitionRule<S>(null, Double.NaN, selector, null, null));
+            return this;
+        }
+    }
+
+    private final String mName;
+    private final S[] mStates;
+    private final List<Node<S>> mStateNodes = new ArrayList<>(); // indexed by ordinal
+    private final List<Node<S>> mSuperstateNodes = new ArrayList<>();
+
+    private volatile S mState;
+
+    // Ring buffer of transitions.
+    private final double[] mLogTimestamps;
+    private final int[] mLogFrom;
+    private final int[] mLogTo;
+    private final String[] mLogReasons;
+    private long mLogCount = 0;
+    private long mLogPrinted = 0;
+
+    /**
+     * @param name
+     *            Printed with every transition.
+     */
+    public StateMachine(String name, Class<S> state_class, S initial_state) {
+        this(name, state_class, initial_state, kDefaultLogSize);
+    }
+
+    public StateMachine(String name, Class<S> state_class, S initial_state, int log_size) {
+        mName = name;
+        mStates = state_class.getEnumConstants();
+        for (S state : mStates) {
+            mStateNodes.add(new Node<S>(state.toString(), false));
+        }
+        mState = initial_state;
+        mLogTimestamps = new double[log_size];
+        mLogFrom = new int[log_size];
+        mLogTo = new int[log_size];
+        mLogReasons = new String[log_size];
+        sAllMachines.add(this);
+    }
+
+    /**
+     * @return The declaration of state, to add actions and transitions to.
+     */
+    public StateConfig state(S state) {
+        return new StateConfig(mStateNodes.get(state.ordinal()));
+    }
+
+    /**
+     * Creates a superstate. Put states (or other superstates) in it with their parent() method.
+     *
+     * @param name
+     *            Only used in error messages.
+     */
+    public StateConfig superstate(String name) {
+        final Node<S> node = new Node<S>(name, true);
+        mSuperstateNodes.add(node);
+        return new StateConfig(node);
+    }
+
+    private void rebuildAncestors() {
+        for (Node<S> node : mStateNodes) {
+            rebuildAncestors(node);
+        }
+        for (Node<S> node : mSuperstateNodes) {
+            rebuildAncestors(node);
+        }
+    }
+
+    private static <S> void rebuildAncestors(Node<S> node) {
+        node.ancestors.clear();
+        for (Node<S> n = node.parent; n != null; n = n.parent) {
+            node.ancestors.add(0, n);
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public S getState() {
+        return mState;
+    }
+
+    public double getTimeInState(double timestamp) {
+        return timestamp - mStateNodes.get(mState.ordinal()).entry_time;
+    }
+
+    /**
+     * Goes straight to state, without running any exit actions, and runs the entry actions of its superstates
+     * (outermost first) and then its own. Use when the loop starts.
+     */
+    public void reset(S state, double timestamp) {
+        mState = state;
+        final Node<S> node = mStateNodes.get(state.ordinal());
+        for (int i = 0; i < node.ancestors.size(); ++i) {
+            enter(node.ancestors.get(i), timestamp);
+        }
+        enter(node, timestamp);
+    }
+
+    private static <S> void enter(Node<S> node, double timestamp) {
+        node.entry_time = timestamp;
+        if (node.entry != null) {
+            node.entry.run(timestamp);
+        }
+    }
+
+    private static <S> void exit(Node<S> node, double timestamp) {
+        if (node.exit != null) {
+            node.exit.run(timestamp);
+        }
+    }
+
+    /**
+     * Runs the current state's loop actions and takes the first of its transitions that fires.
+     *
+     * @return True if the state changed.
+     */
+    public boolean update(double timestamp) {
+        final S state = mState;
+        final Node<S> node = mStateNodes.get(state.ordinal());
+        final List<Node<S>> ancestors = node.ancestors;
+        for (int i = 0; i < ancestors.size(); ++i) {
+            final Action loop = ancestors.get(i).loop;
+            if (loop != null) {
+                loop.run(timestamp);
+            }
+        }
+        if (node.loop != null) {
+            node.loop.run(timestamp);
+        }
+        for (int i = 0; i <= ancestors.size(); ++i) {
+            final Node<S> level = i < ancestors.size() ? ancestors.get(i) : node;
+            if (checkRules(level, state, timestamp)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean checkRules(Node<S> level, S state, double timestamp) {
+        final double time_in_state = timestamp - level.entry_time;
+        final List<TransitionRule<S>> rules = level.rules;
+        for (int i = 0; i < rules.size(); ++i) {
+            final TransitionRule<S> rule = rules.get(i);
+            final S target;
+            if (rule.guard != null) {
+                target = rule.guard.test(timestamp, time_in_state) ? rule.target : null;
+            } else if (rule.selector != null) {
+                target = rule.selector.select(timestamp, time_in_state);
+            } else {
+                target = time_in_state > rule.timeout ? rule.target : null;
+            }
+            if (target != null && target != state) {
+                goTo(target, timestamp, rule.reason);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void goTo(S target, double timestamp, String reason) {
+        final S state = mState;
+        final Node<S> from = mStateNodes.get(state.ordinal());
+        final Node<S> to = mStateNodes.get(target.ordinal());
+        // The number of superstates the two states share.
+        int shared = 0;
+        while (shared < from.ancestors.size() && shared < to.ancestors.size()
+                && from.ancestors.get(shared) == to.ancestors.get(shared)) {
+            ++shared;
+        }
+        exit(from, timestamp);
+        for (int i = from.ancestors.size() - 1; i >= shared; --i) {
+            exit(from.ancestors.get(i), timestamp);
+        }
+        record(timestamp, state, target, reason);
+        mState = target;
+        for (int i = shared; i < to.ancestors.size(); ++i) {
+            enter(to.ancestors.get(i), timestamp);
+        }
+        enter(to, timestamp);
+    }
+
+    private synchronized void record(double timestamp, S from, S to, String reason) {
+        final int i = (int) (mLogCount % mLogTimestamps.length);
+        mLogTimestamps[i] = timestamp;
+        mLogFrom[i] = from.ordinal();
+        mLogTo[i] = to.ordinal();
+        mLogReasons[i] = reason;
+        ++mLogCount;
+    }
+
+    /**
+     * @return The transitions still in the log, oldest first.
+     */
+    public synchronized List<Transition<S>> getTransitions() {
+        List<Transition<S>> transitions = new ArrayList<>();
+        for (long n = Math.max(0, mLogCount - mLogTimestamps.length); n < mLogCount; ++n) {
+            transitions.add(getLogEntry(n));
+        }
+        return transitions;
+    }
+
+    private Transition<S> getLogEntry(long n) {
+        final int i = (int) (n % mLogTimestamps.length);
+        return new Transition<S>(mLogTimestamps[i], mStates[mLogFrom[i]], mStates[mLogTo[i]], mLogReasons[i]);
+    }
+
+    /**
+     * Prints the transitions taken since the last call, noting any that were overwritten before they were printed.
+     */
+    public void printNewTransitions() {
+        final List<Transition<S>> transitions = new ArrayList<>();
+        long skipped;
+        synchronized (this) {
+            final long first = Math.max(mLogPrinted, mLogCount - mLogTimestamps.length);
+            skipped = first - mLogPrinted;
+            for (long n = first; n < mLogCount; ++n) {
+                transitions.add(getLogEntry(n));
+            }
+            mLogPrinted = mLogCount;
+        }
+        if (skipped > 0) {
+            System.out.println(mName + " state: " + skipped + " transitions not printed");
+        }
+        for (Transition<S> transition : transitions) {
+            System.out.println(mName + " state " + transition);
+        }
+    }
+
+    /**
+     * Prints the new transitions of every state machine.
+     */
+    public static void printAllNewTransitions() {
+        for (StateMachine<?> machine : sAllMachines) {
+            machine.printNewTransitions();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.team254.lib.util;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects telemetry values from the robot code and publishes them from a background thread.
+ *
+ * Channels are registered once, by name, and are referred to by an integer handle after that. Setting a value is a
+ * single store into a preallocated array, so it can be done from the control loops without string hashing, locking or
+ * allocation. The publisher thread then sends each sink only the values that changed, and no more often than both the
+ * sink's period and the channel's period allow, so each sink can be updated at its own rate.
+ *
+ * Only the latest value of each channel is kept: a sink sees whatever the channel held when the publisher woke up, and
+ * values set in between are lost. Anything that needs every sample (e.g. the path follower log) should log it from the
+ * loop itself, as Drive does with MappedTelemetryLog.
+ */
+public class TelemetryRegistry {
+    private static final int kMaxChannels = 256;
+
+    private static TelemetryRegistry mInstance = new TelemetryRegistry();
+
+    public static TelemetryRegistry getInstance() {
+        return mInstance;
+    }
+
+    /**
+     * Receives changed channel values from the publisher thread.
+     */
+    public interface Sink {
+        public void putNumber(String key, double value);
+
+        public void putBoolean(String key, boolean value);
+
+        /** Called after each batch of changed values. */
+        public void flush();
+    }
+
+    /**
+     * Publishes to NetworkTables through SmartDashboard.
+     */
+    public static class SmartDashboardSink implements Sink {
+        @Override
+        public void putNumber(String key, double value) {
+            SmartDashboard.putNumber(key, value);
+        }
+
+        @Override
+        public void putBoolean(String key, boolean value) {
+            SmartDashboard.putBoolean(key, value);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    private static class SinkState {
+        public final Sink sink;
+        public final long period_nanos;
+        public final long[] last_published_bits = new long[kMaxChannels];
+        public final long[] last_published_time = new long[kMaxChannels];
+        public final boolean[] published = new boolean[kMaxChannels];
+        public long last_tick = 0;
+
+        public SinkState(Sink sink, double period) {
+            this.sink = sink;
+            this.period_nanos = (long) (period * 1e9);
+        }
+    }
+
+    // Channel values are stored as raw long bits so that 64-bit writes stay atomic on the 32-bit roboRIO.
+    private final AtomicLongArray mValues = new AtomicLongArray(kMaxChannels);
+    private final String[] mKeys = new String[kMaxChannels];
+    private final boolean[] mIsBoolean = new boolean[kMaxChannels];
+    private final long[] mChannelPeriodNanos = new long[kMaxChannels];
+    private final List<SinkState> mSinks = new ArrayList<>();
+    private volatile int mNumChannels = 0;
+    private long mPublisherPeriodNanos = Long.MAX_VALUE;
+    private Thread mPublisherThread = null;
+
+    private TelemetryRegistry() {
+    }
+
+    /**
+     * Registers a numeric channel. Registering the same key twice returns the same handle.
+     *
+     * @param period
+     *            The minimum time between publishes of this channel, in seconds. 0 means as often as each sink allows.
+     */
+    public synchronized int registerNumber(String key, double period) {
+        return register(key, period, false);
+    }
+
+    public synchronized int registerNumber(String key) {
+        return register(key, 0.0, false);
+    }
+
+    public synchronized int registerBoolean(String key, double period) {
+        return register(key, period, true);
+    }
+
+    public synchronized int registerBoolean(String key) {
+        return register(key, 0.0, true);
+    }
+
+    private int register(String key, double period, boolean is_boolean) {
+        final int num_channels = mNumChannels;
+        for (int i = 0; i < num_channels; ++i) {
+            if (mKeys[i].equals(key)) {
+                return i;
+            }
+        }
+        if (num_channels == kMaxChannels) {
+            throw new IllegalStateException("Too many telemetry channels, can't register " + key);
+        }
+        mKeys[num_channels] = key;
+        mIsBoolean[num_channels] = is_boolean;
+        mChannelPeriodNanos[num_channels] = (long) (period * 1e9);
+        mNumChannels = num_channels + 1;
+        return num_channels;
+    }
+
+    public void set(int handle, double value) {
+        mValues.lazySet(handle, Double.doubleToRawLongBits(value));
+    }
+
+    public void set(int handle, boolean value) {
+        mValues.lazySet(handle, value ? 1L : 0L);
+    }
+
+    public double getNumber(int handle) {
+        return Double.longBitsToDouble(mValues.get(handle));
+    }
+
+    public String getKey(int handle) {
+        return mKeys[handle];
+    }
+
+    public int getNumChannels() {
+        return mNumChannels;
+    }
+
+    /**
+     * Adds a sink that is sent changed values at most once every period seconds, and starts the publisher thread if
+     * it isn't running yet.
+     */
+    public synchronized void addSink(Sink sink, double period) {
+        SinkState state = new SinkState(sink, period);
+        mSinks.add(state);
+        mPublisherPeriodNanos = Math.min(mPublisherPeriodNanos, state.period_nanos);
+        if (mPublisherThread == null) {
+            mPublisherThread = new Thread(new CrashTrackingRunnable() {
+                @Override
+                public void runCrashTracked() {
+                    while (true) {
+                        long period_nanos;
+                        synchronized (TelemetryRegistry.this) {
+                            publish(System.nanoTime());
+                            period_nanos = mPublisherPeriodNanos;
+                        }
+                        try {
+                            Thread.sleep(Math.max(1, period_nanos / 1000000));
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+            mPublisherThread.setName("TelemetryRegistry");
+            mPublisherThread.setDaemon(true);
+            mPublisherThread.start();
+        }
+    }
+
+    private void publish(long now) {
+        final int num_channels = mNumChannels;
+        for (int s = 0; s < mSinks.size(); ++s) {
+            SinkState state = mSinks.get(s);
+            if (now - state.last_tick < state.period_nanos) {
+                continue;
+            }
+            state.last_tick = now;
+            for (int i = 0; i < num_channels; ++i) {
+                final long bits = mValues.get(i);
+                if (state.published[i] && (bits == state.last_published_bits[i]
+                        || now - state.last_published_time[i] < mChannelPeriodNanos[i])) {
+                    continue;
+                }
+                if (mIsBoolean[i]) {
+                    state.sink.putBoolean(mKeys[i], bits != 0);
+                } else {
+                    state.sink.putNumber(mKeys[i], Double.longBitsToDouble(bits));
+                }
+                state.published[i] = true;
+                state.last_published_bits[i] = bits;
+                state.last_published_time[i] = now;
+            }
+            state.sink.flush();
+        }
+    }
+}
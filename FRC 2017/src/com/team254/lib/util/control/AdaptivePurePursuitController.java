@@ -1,5 +1,6 @@
 package com.team254.lib.util.control;
 
+import com.team254.lib.util.math.PoseMath;
 import com.team254.lib.util.math.RigidTransform2d;
 import com.team254.lib.util.math.Rotation2d;
 import com.team254.lib.util.math.Translation2d;
@@ -16,6 +17,8 @@ import com.team254.lib.util.math.Twist2d;
 
 public class AdaptivePurePursuitController {
     private static final double kReallyBigNumber = 1E6;
+    private static final double kReverseCos = Math.cos(Math.PI);
+    private static final double kReverseSin = Math.sin(Math.PI);
 
     public static class Command {
         public Twist2d delta = Twist2d.identity();
@@ -44,6 +47,12 @@ public class AdaptivePurePursuitController {
     final boolean mReversed;
     final Lookahead mLookahead;
 
+    // Scratch space for the arc calculation so that update() doesn't allocate any poses.
+    private final double[] mPose = new double[PoseMath.kPoseSize];
+    private final double[] mNormalFromPose = new double[PoseMath.kPoseSize];
+    private final double[] mPerpendicularBisector = new double[PoseMath.kPoseSize];
+    final double[] mCenter = new double[PoseMath.kPoseSize];
+
     public AdaptivePurePursuitController(Path path, boolean reversed, Lookahead lookahead) {
         mPath = path;
         mReversed = reversed;
@@ -58,9 +67,9 @@ public class AdaptivePurePursuitController {
      * @return movement command for the robot to follow
      */
     public Command update(RigidTransform2d pose) {
+        PoseMath.set(pose, mPose);
         if (mReversed) {
-            pose = new RigidTransform2d(pose.getTranslation(),
-                    pose.getRotation().rotateBy(Rotation2d.fromRadians(Math.PI)));
+            PoseMath.rotateBy(mPose, kReverseCos, kReverseSin, mPose);
         }
 
         final Path.TargetPointReport report = mPath.getTargetPoint(pose.getTranslation(), mLookahead);
@@ -70,11 +79,15 @@ public class AdaptivePurePursuitController {
                     report.lookahead_point, report.remaining_path_distance);
         }
 
-        final Arc arc = new Arc(pose, report.lookahead_point);
+        final double point_x = report.lookahead_point.x();
+        final double point_y = report.lookahead_point.y();
+        computeCenter(mPose, point_x, point_y);
+        final double radius = Math.hypot(point_x - mCenter[PoseMath.kX], point_y - mCenter[PoseMath.kY]);
+        final double length = computeLength(mPose, point_x, point_y, radius);
         double scale_factor = 1.0;
         // Ensure we don't overshoot the end of the path (once the lookahead speed drops to zero).
-        if (report.lookahead_point_speed < 1E-6 && report.remaining_path_distance < arc.length) {
-            scale_factor = Math.max(0.0, report.remaining_path_distance / arc.length);
+        if (report.lookahead_point_speed < 1E-6 && report.remaining_path_distance < length) {
+            scale_factor = Math.max(0.0, report.remaining_path_distance / length);
             mAtEndOfPath = true;
         } else {
             mAtEndOfPath = false;
@@ -84,13 +97,69 @@ public class AdaptivePurePursuitController {
         }
 
         return new Command(
-                new Twist2d(scale_factor * arc.length, 0.0,
-                        arc.length * getDirection(pose, report.lookahead_point) * Math.abs(scale_factor) / arc.radius),
+                new Twist2d(scale_factor * length, 0.0,
+                        length * getDirection(mPose, point_x, point_y) * Math.abs(scale_factor) / radius),
                 report.closest_point_distance, report.max_speed,
                 report.lookahead_point_speed * Math.signum(scale_factor), report.lookahead_point,
                 report.remaining_path_distance);
     }
 
+    /**
+     * Same as getCenter, but on a PoseMath pose, leaving the result in mCenter.
+     */
+    void computeCenter(double[] pose, double point_x, double point_y) {
+        final double x = pose[PoseMath.kX], y = pose[PoseMath.kY];
+        final double halfway_x = 0.5 * (point_x - x) + x;
+        final double halfway_y = 0.5 * (point_y - y) + y;
+        // The bisector heading is the normal of the direction from the pose to the halfway point.
+        double dx = halfway_x - x, dy = halfway_y - y;
+        final double magnitude = Math.hypot(dx, dy);
+        if (magnitude > 1E-9) {
+            dx /= magnitude;
+            dy /= magnitude;
+        } else {
+            dx = 1;
+            dy = 0;
+        }
+        PoseMath.set(halfway_x, halfway_y, -dy, dx, mPerpendicularBisector);
+        PoseMath.set(x, y, -pose[PoseMath.kSin], pose[PoseMath.kCos], mNormalFromPose);
+        // isColinear against the normal of the bisector, which points back along the pose to point direction.
+        PoseMath.set(halfway_x, halfway_y, -dx, -dy, mCenter);
+        if (PoseMath.isColinear(mNormalFromPose, mCenter)) {
+            // Special case: center is poseToPointHalfway, which is already in mCenter.
+            return;
+        }
+        PoseMath.intersection(mNormalFromPose, mPerpendicularBisector, mCenter);
+    }
+
+    /**
+     * Same as getLength, but on a PoseMath pose with the center already in mCenter.
+     */
+    double computeLength(double[] pose, double point_x, double point_y, double radius) {
+        final double x = pose[PoseMath.kX], y = pose[PoseMath.kY];
+        if (radius < kReallyBigNumber) {
+            final double center_x = mCenter[PoseMath.kX], center_y = mCenter[PoseMath.kY];
+            final double to_point_x = point_x - center_x, to_point_y = point_y - center_y;
+            final double to_pose_x = x - center_x, to_pose_y = y - center_y;
+            // Cross product between the pose normal and the vector from pose to point; see getLength.
+            final boolean behind = Math.signum(
+                    -pose[PoseMath.kSin] * (point_y - y) - pose[PoseMath.kCos] * (point_x - x)) > 0.0;
+            double cos_angle = (to_pose_x * to_point_x + to_pose_y * to_point_y)
+                    / (Math.hypot(to_pose_x, to_pose_y) * Math.hypot(to_point_x, to_point_y));
+            final double angle = Double.isNaN(cos_angle) ? 0.0
+                    : Math.acos(Math.min(1.0, Math.max(cos_angle, -1.0)));
+            return radius * (behind ? 2.0 * Math.PI - Math.abs(angle) : Math.abs(angle));
+        } else {
+            return Math.hypot(point_x - x, point_y - y);
+        }
+    }
+
+    static int getDirection(double[] pose, double point_x, double point_y) {
+        final double cross = pose[PoseMath.kCos] * (point_y - pose[PoseMath.kY])
+                - pose[PoseMath.kSin] * (point_x - pose[PoseMath.kX]);
+        return (cross < 0) ? -1 : 1; // if robot < pose turn left
+    }
+
     public boolean hasPassedMarker(String marker) {
         return mPath.hasPassedMarker(marker);
     }
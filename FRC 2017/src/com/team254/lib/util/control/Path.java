@@ -4,6 +4,9 @@ import com.team254.frc2017.Constants;
 import com.team254.lib.util.math.Translation2d;
 import com.team254.lib.util.motion.MotionState;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -11,15 +14,30 @@ import java.util.List;
 /**
  * Class representing the robot's autonomous path.
  * 
+ * Segments are never removed from the list while following; instead the path keeps the index of the current segment.
+ * Alongside the segments it keeps the cumulative length at the start of each segment and each segment's bounding box,
+ * so the distance remaining and the lookahead segment are found by arithmetic and binary search, and the search for a
+ * closer segment further down the path (if the robot gets pushed ahead) can skip segments whose box is too far away.
+ * 
  * Field Coordinate System: Uses a right hand coordinate system. Positive x is right, positive y is up, and the origin
  * is at the bottom left corner of the field. For angles, 0 degrees is facing right (1, 0) and angles increase as you
  * turn counter clockwise.
  */
 
 public class Path {
+    // More segments than any real path has; read() rejects counts above this instead of running out of memory.
+    public static final int kMaxReadSegments = 1 << 16;
+
     List<PathSegment> segments;
     PathSegment prevSegment;
     HashSet<String> mMarkersCrossed = new HashSet<String>();
+    int mCurrentSegment = 0;
+
+    // Rebuilt lazily after segments are added. mCumulativeLength[i] is the path length before segment i, and has one
+    // extra entry at the end for the total length.
+    boolean mIndexValid = false;
+    double[] mCumulativeLength;
+    double[] mMinX, mMinY, mMaxX, mMaxY;
 
     public void extrapolateLast() {
         PathSegment last = segments.get(segments.size() - 1);
@@ -34,6 +52,17 @@ public class Path {
         segments = new ArrayList<PathSegment>();
     }
 
+    /**
+     * Creates a path with copies of the remaining segments of another one. Following a path consumes its segments, so
+     * this lets the same (already profiled) path be followed more than once, including by several threads at once.
+     */
+    public Path(Path other) {
+        segments = new ArrayList<PathSegment>(other.segments.size() - other.mCurrentSegment);
+        for (int i = other.mCurrentSegment; i < other.segments.size(); ++i) {
+            segments.add(new PathSegment(other.segments.get(i)));
+        }
+    }
+
     /**
      * add a segment to the Path
      * 
@@ -42,6 +71,89 @@ public class Path {
      */
     public void addSegment(PathSegment segment) {
         segments.add(segment);
+        mIndexValid = false;
+    }
+
+    private void updateIndex() {
+        if (mIndexValid) {
+            return;
+        }
+        final int n = segments.size();
+        mCumulativeLength = new double[n + 1];
+        mMinX = new double[n];
+        mMinY = new double[n];
+        mMaxX = new double[n];
+        mMaxY = new double[n];
+        for (int i = 0; i < n; ++i) {
+            final PathSegment segment = segments.get(i);
+            mCumulativeLength[i + 1] = mCumulativeLength[i] + segment.getLength();
+            final double[] box = segment.getBoundingBox();
+            mMinX[i] = box[0];
+            mMinY[i] = box[1];
+            mMaxX[i] = box[2];
+            mMaxY[i] = box[3];
+        }
+        mIndexValid = true;
+    }
+
+    /**
+     * @return A lower bound on the distance from a point to segment i.
+     */
+    private double boundingBoxDistance(int i, Translation2d point) {
+        final double dx = Math.max(0.0, Math.max(mMinX[i] - point.x(), point.x() - mMaxX[i]));
+        final double dy = Math.max(0.0, Math.max(mMinY[i] - point.y(), point.y() - mMaxY[i]));
+        return Math.hypot(dx, dy);
+    }
+
+    /**
+     * @return The index of the first segment at or after from that ends at or beyond the given distance along the path,
+     *         or the last segment if there is none.
+     */
+    private int segmentAtDistance(int from, double distance) {
+        int low = from;
+        int high = segments.size() - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mCumulativeLength[mid + 1] >= distance) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private int currentIndex() {
+        return Math.min(mCurrentSegment, segments.size() - 1);
+    }
+
+    /**
+     * Moves to a later segment if the robot is closer to it than to the current one, which happens when the robot gets
+     * pushed (or cuts a corner) past the end of the current segment. Only segments that start within
+     * kPathSegmentSearchDistance of the end of the current segment are considered, so a path that doubles back on
+     * itself doesn't skip ahead.
+     */
+    private void skipToClosestSegment(Translation2d robot) {
+        final int current = currentIndex();
+        final int n = segments.size();
+        PathSegment segment = segments.get(current);
+        double best_distance = new Translation2d(robot, segment.getClosestPoint(robot)).norm();
+        int best = current;
+        final double horizon = mCumulativeLength[current + 1] + Constants.kPathSegmentSearchDistance;
+        for (int i = current + 1; i < n && mCumulativeLength[i] <= horizon; ++i) {
+            if (boundingBoxDistance(i, robot) >= best_distance) {
+                continue;
+            }
+            segment = segments.get(i);
+            final double distance = new Translation2d(robot, segment.getClosestPoint(robot)).norm();
+            if (distance < best_distance) {
+                best_distance = distance;
+                best = i;
+            }
+        }
+        while (mCurrentSegment < best) {
+            removeCurrentSegment();
+        }
     }
 
     /**
@@ -64,7 +176,7 @@ public class Path {
      * @return remaining distance on current segment
      */
     public double getSegmentRemainingDist(Translation2d robotPos) {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(currentIndex());
         return currentSegment.getRemainingDistance(currentSegment.getClosestPoint(robotPos));
     }
 
@@ -72,7 +184,7 @@ public class Path {
      * @return the length of the current segment
      */
     public double getSegmentLength() {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(currentIndex());
         return currentSegment.getLength();
     }
 
@@ -98,39 +210,28 @@ public class Path {
      * @return report containing everything we might want to know about the target point.
      */
     public TargetPointReport getTargetPoint(Translation2d robot, Lookahead lookahead) {
+        updateIndex();
+        skipToClosestSegment(robot);
         TargetPointReport rv = new TargetPointReport();
-        PathSegment currentSegment = segments.get(0);
+        final int current = currentIndex();
+        PathSegment currentSegment = segments.get(current);
         rv.closest_point = currentSegment.getClosestPoint(robot);
         rv.closest_point_distance = new Translation2d(robot, rv.closest_point).norm();
-        /*
-         * if (segments.size() > 1) { // Check next segment to see if it is closer. final Translation2d
-         * next_segment_closest_point = segments.get(1).getClosestPoint(robot); final double
-         * next_segment_closest_point_distance = new Translation2d(robot, next_segment_closest_point) .norm(); if
-         * (next_segment_closest_point_distance < rv.closest_point_distance) { rv.closest_point =
-         * next_segment_closest_point; rv.closest_point_distance = next_segment_closest_point_distance;
-         * removeCurrentSegment(); currentSegment = segments.get(0); } }
-         */
+        final double segment_length = mCumulativeLength[current + 1] - mCumulativeLength[current];
         rv.remaining_segment_distance = currentSegment.getRemainingDistance(rv.closest_point);
-        rv.remaining_path_distance = rv.remaining_segment_distance;
-        for (int i = 1; i < segments.size(); ++i) {
-            rv.remaining_path_distance += segments.get(i).getLength();
-        }
+        rv.remaining_path_distance = rv.remaining_segment_distance
+                + (mCumulativeLength[segments.size()] - mCumulativeLength[current + 1]);
         rv.closest_point_speed = currentSegment
-                .getSpeedByDistance(currentSegment.getLength() - rv.remaining_segment_distance);
+                .getSpeedByDistance(segment_length - rv.remaining_segment_distance);
         double lookahead_distance = lookahead.getLookaheadForSpeed(rv.closest_point_speed) + rv.closest_point_distance;
-        if (rv.remaining_segment_distance < lookahead_distance && segments.size() > 1) {
-            lookahead_distance -= rv.remaining_segment_distance;
-            for (int i = 1; i < segments.size(); ++i) {
-                currentSegment = segments.get(i);
-                final double length = currentSegment.getLength();
-                if (length < lookahead_distance && i < segments.size() - 1) {
-                    lookahead_distance -= length;
-                } else {
-                    break;
-                }
-            }
+        if (rv.remaining_segment_distance < lookahead_distance && current < segments.size() - 1) {
+            // Find the segment containing the lookahead point, measuring from the start of the path.
+            final double target = mCumulativeLength[current + 1] - rv.remaining_segment_distance + lookahead_distance;
+            final int lookahead_segment = segmentAtDistance(current + 1, target);
+            currentSegment = segments.get(lookahead_segment);
+            lookahead_distance = target - mCumulativeLength[lookahead_segment];
         } else {
-            lookahead_distance += (currentSegment.getLength() - rv.remaining_segment_distance);
+            lookahead_distance += (segment_length - rv.remaining_segment_distance);
         }
         rv.max_speed = currentSegment.getMaxSpeed();
         rv.lookahead_point = currentSegment.getPointByDistance(lookahead_distance);
@@ -147,7 +248,7 @@ public class Path {
      * @return speed robot should be traveling
      */
     public double getSpeed(Translation2d robotPos) {
-        PathSegment currentSegment = segments.get(0);
+        PathSegment currentSegment = segments.get(currentIndex());
         return currentSegment.getSpeedByClosestPoint(robotPos);
     }
 
@@ -158,7 +259,10 @@ public class Path {
      *            robot position
      */
     public void checkSegmentDone(Translation2d robotPos) {
-        PathSegment currentSegment = segments.get(0);
+        if (mCurrentSegment >= segments.size()) {
+            return;
+        }
+        PathSegment currentSegment = segments.get(mCurrentSegment);
         double remainingDist = currentSegment.getRemainingDistance(currentSegment.getClosestPoint(robotPos));
         if (remainingDist < Constants.kSegmentCompletionTolerance) {
             removeCurrentSegment();
@@ -166,7 +270,7 @@ public class Path {
     }
 
     public void removeCurrentSegment() {
-        prevSegment = segments.remove(0);
+        prevSegment = segments.get(mCurrentSegment++);
         String marker = prevSegment.getMarker();
         if (marker != null)
             mMarkersCrossed.add(marker);
@@ -176,13 +280,20 @@ public class Path {
      * Ensures that all speeds in the path are attainable and robot can slow down in time
      */
     public void verifySpeeds() {
+        verifySpeeds(Constants.kPathFollowingMaxAccel);
+    }
+
+    /**
+     * Same as verifySpeeds(), with the given acceleration limit instead of Constants.kPathFollowingMaxAccel.
+     */
+    public void verifySpeeds(double max_accel) {
         double maxStartSpeed = 0.0;
         double[] startSpeeds = new double[segments.size() + 1];
         startSpeeds[segments.size()] = 0.0;
         for (int i = segments.size() - 1; i >= 0; i--) {
             PathSegment segment = segments.get(i);
             maxStartSpeed += Math
-                    .sqrt(maxStartSpeed * maxStartSpeed + 2 * Constants.kPathFollowingMaxAccel * segment.getLength());
+                    .sqrt(maxStartSpeed * maxStartSpeed + 2 * max_accel * segment.getLength());
             startSpeeds[i] = segment.getStartState().vel();
             // System.out.println(maxStartSpeed + ", " + startSpeeds[i]);
             if (startSpeeds[i] > maxStartSpeed) {
@@ -196,8 +307,36 @@ public class Path {
             double endSpeed = startSpeeds[i + 1];
             MotionState startState = (i > 0) ? segments.get(i - 1).getEndState() : new MotionState(0, 0, 0, 0);
             startState = new MotionState(0, 0, startState.vel(), startState.vel());
-            segment.createMotionProfiler(startState, endSpeed);
+            segment.createMotionProfiler(startState, endSpeed, max_accel);
+        }
+    }
+
+    /**
+     * Writes every segment of the path (including any already followed) in a compact binary form.
+     * 
+     * @see #read(DataInput)
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(segments.size());
+        for (PathSegment segment : segments) {
+            segment.write(out);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             If the segment count is negative or more than kMaxReadSegments (a corrupt or foreign file).
+     */
+    public static Path read(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0 || size > kMaxReadSegments) {
+            throw new IllegalArgumentException("Bad path segment count " + size);
+        }
+        Path path = new Path();
+        for (int i = 0; i < size; ++i) {
+            path.addSegment(PathSegment.read(in));
         }
+        return path;
     }
 
     public boolean hasPassedMarker(String marker) {
@@ -206,7 +345,7 @@ public class Path {
 
     public String toString() {
         String str = "";
-        for (PathSegment s : segments) {
+        for (PathSegment s : segments.subList(Math.min(mCurrentSegment, segments.size()), segments.size())) {
             str += s.toString() + "\n";
         }
         return str;
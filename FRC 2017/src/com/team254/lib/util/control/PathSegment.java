@@ -7,9 +7,12 @@ import com.team254.lib.util.motion.MotionProfile;
 import com.team254.lib.util.motion.MotionProfileConstraints;
 import com.team254.lib.util.motion.MotionProfileGenerator;
 import com.team254.lib.util.motion.MotionProfileGoal;
+import com.team254.lib.util.motion.MotionProfileLookup;
 import com.team254.lib.util.motion.MotionState;
 
-import java.util.Optional;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Class representing a segment of the robot's autonomous path.
@@ -24,6 +27,8 @@ public class PathSegment {
     private double maxSpeed;
     private boolean isLine;
     private MotionProfile speedController;
+    private MotionProfileLookup speedLookup;
+    private final MotionProfileLookup.Sample speedSample = new MotionProfileLookup.Sample();
     private boolean extrapolateLookahead;
     private String marker;
 
@@ -117,6 +122,67 @@ public class PathSegment {
         createMotionProfiler(startState, endSpeed);
     }
 
+    private PathSegment(Translation2d start, Translation2d end, Translation2d center, double maxSpeed,
+            MotionProfile speedController, boolean extrapolateLookahead, String marker) {
+        this.start = start;
+        this.end = end;
+        this.center = center;
+        this.isLine = center == null;
+        if (isLine) {
+            this.deltaStart = new Translation2d(start, end);
+        } else {
+            this.deltaStart = new Translation2d(center, start);
+            this.deltaEnd = new Translation2d(center, end);
+        }
+        this.maxSpeed = maxSpeed;
+        this.speedController = speedController;
+        this.speedLookup = new MotionProfileLookup(speedController);
+        this.extrapolateLookahead = extrapolateLookahead;
+        this.marker = marker;
+    }
+
+    /**
+     * Creates a segment with the same geometry and speed profile as another. The profile is shared, but the copy can
+     * be followed on a different thread than the original.
+     */
+    public PathSegment(PathSegment other) {
+        this(other.start, other.end, other.center, other.maxSpeed, other.speedController, other.extrapolateLookahead,
+                other.marker);
+    }
+
+    /**
+     * Writes the segment, including its speed profile, so that read() can recreate it without generating the profile.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeBoolean(isLine);
+        out.writeDouble(start.x());
+        out.writeDouble(start.y());
+        out.writeDouble(end.x());
+        out.writeDouble(end.y());
+        if (!isLine) {
+            out.writeDouble(center.x());
+            out.writeDouble(center.y());
+        }
+        out.writeDouble(maxSpeed);
+        out.writeBoolean(extrapolateLookahead);
+        out.writeBoolean(marker != null);
+        if (marker != null) {
+            out.writeUTF(marker);
+        }
+        speedController.write(out);
+    }
+
+    public static PathSegment read(DataInput in) throws IOException {
+        final boolean is_line = in.readBoolean();
+        final Translation2d start = new Translation2d(in.readDouble(), in.readDouble());
+        final Translation2d end = new Translation2d(in.readDouble(), in.readDouble());
+        final Translation2d center = is_line ? null : new Translation2d(in.readDouble(), in.readDouble());
+        final double max_speed = in.readDouble();
+        final boolean extrapolate_lookahead = in.readBoolean();
+        final String marker = in.readBoolean() ? in.readUTF() : null;
+        return new PathSegment(start, end, center, max_speed, MotionProfile.read(in), extrapolate_lookahead, marker);
+    }
+
     /**
      * @return max speed of the segment
      */
@@ -125,10 +191,14 @@ public class PathSegment {
     }
 
     public void createMotionProfiler(MotionState start_state, double end_speed) {
-        MotionProfileConstraints motionConstraints = new MotionProfileConstraints(maxSpeed,
-                Constants.kPathFollowingMaxAccel);
+        createMotionProfiler(start_state, end_speed, Constants.kPathFollowingMaxAccel);
+    }
+
+    public void createMotionProfiler(MotionState start_state, double end_speed, double max_accel) {
+        MotionProfileConstraints motionConstraints = new MotionProfileConstraints(maxSpeed, max_accel);
         MotionProfileGoal goal_state = new MotionProfileGoal(getLength(), end_speed);
         speedController = MotionProfileGenerator.generateProfile(motionConstraints, goal_state, start_state);
+        speedLookup = new MotionProfileLookup(speedController);
         // System.out.println(speedController);
     }
 
@@ -157,6 +227,29 @@ public class PathSegment {
         }
     }
 
+    /**
+     * @return the axis-aligned bounding box of the segment as {min x, min y, max x, max y}
+     */
+    public double[] getBoundingBox() {
+        double[] box = { Math.min(start.x(), end.x()), Math.min(start.y(), end.y()), Math.max(start.x(), end.x()),
+                Math.max(start.y(), end.y()) };
+        if (!isLine) {
+            // Grow the box to include the points of the circle furthest along each axis, if they lie on the arc.
+            final double radius = deltaStart.norm();
+            final double[][] extremes = { { radius, 0 }, { 0, radius }, { -radius, 0 }, { 0, -radius } };
+            for (double[] extreme : extremes) {
+                Translation2d delta = new Translation2d(extreme[0], extreme[1]);
+                if (Translation2d.cross(delta, deltaStart) * Translation2d.cross(delta, deltaEnd) < 0) {
+                    box[0] = Math.min(box[0], center.x() + delta.x());
+                    box[1] = Math.min(box[1], center.y() + delta.y());
+                    box[2] = Math.max(box[2], center.x() + delta.x());
+                    box[3] = Math.max(box[3], center.y() + delta.y());
+                }
+            }
+        }
+        return box;
+    }
+
     /**
      * Set whether or not to extrapolate the lookahead point. Should only be true for the last segment in the path
      * 
@@ -243,14 +336,13 @@ public class PathSegment {
     }
 
     public double getSpeedByDistance(double dist) {
-        if (dist < speedController.startPos()) {
-            dist = speedController.startPos();
-        } else if (dist > speedController.endPos()) {
-            dist = speedController.endPos();
+        if (dist < speedLookup.startPos()) {
+            dist = speedLookup.startPos();
+        } else if (dist > speedLookup.endPos()) {
+            dist = speedLookup.endPos();
         }
-        Optional<MotionState> state = speedController.firstStateByPos(dist);
-        if (state.isPresent()) {
-            return state.get().vel();
+        if (speedLookup.firstStateByPos(dist, speedSample)) {
+            return speedSample.vel;
         } else {
             System.out.println("Velocity does not exist at that position!");
             return 0.0;
@@ -0,0 +1,79 @@
+package com.team254.lib.util.control;
+
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Translation2d;
+
+/**
+ * A quintic Hermite spline between two poses. The spline leaves the start pose along its heading and arrives at the end
+ * pose along its heading, with zero second derivative at both ends, so consecutive splines that share a pose join with
+ * continuous heading and curvature.
+ *
+ * The parameter t runs from 0 at the start pose to 1 at the end pose; it is not proportional to distance.
+ */
+public class QuinticHermiteSpline {
+    // How long the tangent vectors are, relative to the straight-line distance between the poses.
+    private static final double kTangentScale = 1.2;
+
+    // Coefficients of x(t) = x5_ t^5 + x4_ t^4 + x3_ t^3 + x1_ t + x0_ (the t^2 term is zero), and the same for y.
+    private final double x5_, x4_, x3_, x1_, x0_;
+    private final double y5_, y4_, y3_, y1_, y0_;
+
+    public QuinticHermiteSpline(RigidTransform2d start, RigidTransform2d end) {
+        final double scale = kTangentScale
+                * new Translation2d(start.getTranslation(), end.getTranslation()).norm();
+        final double x0 = start.getTranslation().x(), x1 = end.getTranslation().x();
+        final double y0 = start.getTranslation().y(), y1 = end.getTranslation().y();
+        final double dx0 = start.getRotation().cos() * scale, dx1 = end.getRotation().cos() * scale;
+        final double dy0 = start.getRotation().sin() * scale, dy1 = end.getRotation().sin() * scale;
+        // Zero second derivatives at the ends.
+        x5_ = -6 * x0 - 3 * dx0 - 3 * dx1 + 6 * x1;
+        x4_ = 15 * x0 + 8 * dx0 + 7 * dx1 - 15 * x1;
+        x3_ = -10 * x0 - 6 * dx0 - 4 * dx1 + 10 * x1;
+        x1_ = dx0;
+        x0_ = x0;
+        y5_ = -6 * y0 - 3 * dy0 - 3 * dy1 + 6 * y1;
+        y4_ = 15 * y0 + 8 * dy0 + 7 * dy1 - 15 * y1;
+        y3_ = -10 * y0 - 6 * dy0 - 4 * dy1 + 10 * y1;
+        y1_ = dy0;
+        y0_ = y0;
+    }
+
+    public Translation2d getPoint(double t) {
+        final double t2 = t * t;
+        return new Translation2d(t2 * t * (t * (x5_ * t + x4_) + x3_) + x1_ * t + x0_,
+                t2 * t * (t * (y5_ * t + y4_) + y3_) + y1_ * t + y0_);
+    }
+
+    private double dx(double t) {
+        return t * t * (t * (5 * x5_ * t + 4 * x4_) + 3 * x3_) + x1_;
+    }
+
+    private double dy(double t) {
+        return t * t * (t * (5 * y5_ * t + 4 * y4_) + 3 * y3_) + y1_;
+    }
+
+    private double ddx(double t) {
+        return t * (t * (20 * x5_ * t + 12 * x4_) + 6 * x3_);
+    }
+
+    private double ddy(double t) {
+        return t * (t * (20 * y5_ * t + 12 * y4_) + 6 * y3_);
+    }
+
+    public Rotation2d getHeading(double t) {
+        return new Rotation2d(dx(t), dy(t), true);
+    }
+
+    /**
+     * @return The signed curvature (1 / radius, positive when turning counter clockwise) at t.
+     */
+    public double getCurvature(double t) {
+        final double dx = dx(t), dy = dy(t);
+        final double speed2 = dx * dx + dy * dy;
+        if (speed2 == 0) {
+            return 0;
+        }
+        return (dx * ddy(t) - dy * ddx(t)) / (speed2 * Math.sqrt(speed2));
+    }
+}
@@ -0,0 +1,60 @@
+package com.team254.lib.util.math;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A polynomial with its coefficients in a plain array, evaluated with Horner's method. Evaluating one doesn't allocate
+ * and costs one multiply-add per degree.
+ *
+ * The input is clamped to a domain (normally the range of the data it was fit to), since a fit polynomial can do
+ * anything outside of that.
+ */
+public class Polynomial implements DoubleUnaryOperator {
+    private final double[] coefficients_;
+    private final double min_x_;
+    private final double max_x_;
+
+    /**
+     * @param coefficients
+     *            coefficients[j] multiplies x^j
+     */
+    public Polynomial(double[] coefficients, double min_x, double max_x) {
+        coefficients_ = coefficients.clone();
+        min_x_ = min_x;
+        max_x_ = max_x;
+    }
+
+    /**
+     * The polynomial fit by a regression. Within the domain it evaluates to the same values as
+     * PolynomialRegression.predict.
+     */
+    public static Polynomial fromRegression(PolynomialRegression regression, double min_x, double max_x) {
+        double[] coefficients = new double[regression.degree() + 1];
+        for (int j = 0; j < coefficients.length; ++j) {
+            coefficients[j] = regression.beta(j);
+        }
+        return new Polynomial(coefficients, min_x, max_x);
+    }
+
+    public double evaluate(double x) {
+        x = Math.max(min_x_, Math.min(max_x_, x));
+        double y = 0.0;
+        for (int j = coefficients_.length - 1; j >= 0; --j) {
+            y = coefficients_[j] + x * y;
+        }
+        return y;
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        return evaluate(x);
+    }
+
+    public int degree() {
+        return coefficients_.length - 1;
+    }
+
+    public double getCoefficient(int j) {
+        return coefficients_[j];
+    }
+}
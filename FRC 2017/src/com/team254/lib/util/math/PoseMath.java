@@ -0,0 +1,228 @@
+package com.team254.lib.util.math;
+
+import static com.team254.lib.util.Util.epsilonEquals;
+
+/**
+ * Allocation-free versions of the RigidTransform2d operations, for code that runs every loop.
+ *
+ * A pose is a double[kPoseSize] holding x, y and the cosine and sine of the heading; a twist is a double[kTwistSize]
+ * holding dx, dy and dtheta. Every method writes its result into an output array supplied by the caller, and reads all
+ * of its inputs before writing, so the output may be the same array as an input. The results match the corresponding
+ * RigidTransform2d methods exactly, which remain the friendlier API everywhere else.
+ */
+public class PoseMath {
+    public static final int kX = 0;
+    public static final int kY = 1;
+    public static final int kCos = 2;
+    public static final int kSin = 3;
+    public static final int kPoseSize = 4;
+
+    public static final int kDx = 0;
+    public static final int kDy = 1;
+    public static final int kDtheta = 2;
+    public static final int kTwistSize = 3;
+
+    private static final double kEpsilon = 1E-9;
+
+    private PoseMath() {
+    }
+
+    public static void set(double x, double y, double cos, double sin, double[] out) {
+        out[kX] = x;
+        out[kY] = y;
+        out[kCos] = cos;
+        out[kSin] = sin;
+    }
+
+    public static void set(RigidTransform2d transform, double[] out) {
+        set(transform.translation_.x_, transform.translation_.y_, transform.rotation_.cos_angle_,
+                transform.rotation_.sin_angle_, out);
+    }
+
+    public static RigidTransform2d toRigidTransform(double[] pose) {
+        return new RigidTransform2d(new Translation2d(pose[kX], pose[kY]),
+                new Rotation2d(pose[kCos], pose[kSin], false));
+    }
+
+    /**
+     * out = a * b, i.e. translate by b's translation in a's frame and then rotate by b's rotation.
+     *
+     * @see RigidTransform2d#transformBy(RigidTransform2d)
+     */
+    public static void transformBy(double[] a, double[] b, double[] out) {
+        compose(a[kX], a[kY], a[kCos], a[kSin], b[kX], b[kY], b[kCos], b[kSin], out);
+    }
+
+    private static void compose(double ax, double ay, double ac, double as, double bx, double by, double bc,
+            double bs, double[] out) {
+        out[kX] = ax + (bx * ac - by * as);
+        out[kY] = ay + (bx * as + by * ac);
+        setNormalizedRotation(ac * bc - as * bs, ac * bs + as * bc, out);
+    }
+
+    private static void setNormalizedRotation(double cos, double sin, double[] out) {
+        final double magnitude = Math.hypot(cos, sin);
+        if (magnitude > kEpsilon) {
+            out[kCos] = cos / magnitude;
+            out[kSin] = sin / magnitude;
+        } else {
+            out[kCos] = 1;
+            out[kSin] = 0;
+        }
+    }
+
+    /**
+     * @see RigidTransform2d#inverse()
+     */
+    public static void inverse(double[] a, double[] out) {
+        final double x = a[kX], y = a[kY], cos = a[kCos], sin = -a[kSin];
+        out[kX] = -x * cos + y * sin;
+        out[kY] = -x * sin - y * cos;
+        out[kCos] = cos;
+        out[kSin] = sin;
+    }
+
+    /**
+     * out = inverse(a) * b, the transform that takes a to b.
+     */
+    public static void inverseTransformBy(double[] a, double[] b, double[] out) {
+        final double bx = b[kX], by = b[kY], bc = b[kCos], bs = b[kSin];
+        inverse(a, out);
+        compose(out[kX], out[kY], out[kCos], out[kSin], bx, by, bc, bs, out);
+    }
+
+    /**
+     * Rotates the heading of a pose, leaving its translation alone.
+     *
+     * @see Rotation2d#rotateBy(Rotation2d)
+     */
+    public static void rotateBy(double[] pose, double cos, double sin, double[] out) {
+        final double pc = pose[kCos], ps = pose[kSin];
+        out[kX] = pose[kX];
+        out[kY] = pose[kY];
+        setNormalizedRotation(pc * cos - ps * sin, pc * sin + ps * cos, out);
+    }
+
+    /**
+     * @see RigidTransform2d#exp(Twist2d)
+     */
+    public static void exp(double dx, double dy, double dtheta, double[] out) {
+        final double sin_theta = Math.sin(dtheta);
+        final double cos_theta = Math.cos(dtheta);
+        double s, c;
+        if (Math.abs(dtheta) < kEpsilon) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = .5 * dtheta;
+        } else {
+            s = sin_theta / dtheta;
+            c = (1.0 - cos_theta) / dtheta;
+        }
+        set(dx * s - dy * c, dx * c + dy * s, cos_theta, sin_theta, out);
+    }
+
+    /**
+     * Writes the twist of a pose into out, which needs only kTwistSize elements but may also be the pose itself.
+     *
+     * @see RigidTransform2d#log(RigidTransform2d)
+     */
+    public static void log(double[] pose, double[] out) {
+        final double x = pose[kX], y = pose[kY], cos = pose[kCos], sin = pose[kSin];
+        final double dtheta = Math.atan2(sin, cos);
+        final double half_dtheta = 0.5 * dtheta;
+        final double halftheta_by_tan_of_halfdtheta = halfThetaByTanOfHalfTheta(cos, sin, dtheta);
+        out[kDx] = x * halftheta_by_tan_of_halfdtheta + y * half_dtheta;
+        out[kDy] = -x * half_dtheta + y * halftheta_by_tan_of_halfdtheta;
+        out[kDtheta] = dtheta;
+    }
+
+    private static double halfThetaByTanOfHalfTheta(double cos, double sin, double dtheta) {
+        final double cos_minus_one = cos - 1.0;
+        if (Math.abs(cos_minus_one) < kEpsilon) {
+            return 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        }
+        return -(0.5 * dtheta * sin) / cos_minus_one;
+    }
+
+    /**
+     * Twist interpolation between a and b assuming constant curvature.
+     *
+     * @see RigidTransform2d#interpolate(RigidTransform2d, double)
+     */
+    public static void interpolate(double[] a, double[] b, double x, double[] out) {
+        if (x <= 0) {
+            set(a[kX], a[kY], a[kCos], a[kSin], out);
+            return;
+        } else if (x >= 1) {
+            set(b[kX], b[kY], b[kCos], b[kSin], out);
+            return;
+        }
+        final double ax = a[kX], ay = a[kY], ac = a[kCos], as = a[kSin];
+        inverseTransformBy(a, b, out);
+        log(out, out);
+        exp(out[kDx] * x, out[kDy] * x, out[kDtheta] * x, out);
+        compose(ax, ay, ac, as, out[kX], out[kY], out[kCos], out[kSin], out);
+    }
+
+    /**
+     * Return true if the heading of a is colinear with the heading of b.
+     *
+     * @see RigidTransform2d#isColinear(RigidTransform2d)
+     */
+    public static boolean isColinear(double[] a, double[] b) {
+        // Same as inverseTransformBy followed by log, kept in locals.
+        final double ic = a[kCos], is = -a[kSin];
+        final double ix = -a[kX] * ic + a[kY] * is;
+        final double iy = -a[kX] * is - a[kY] * ic;
+        final double bx = b[kX], by = b[kY], bc = b[kCos], bs = b[kSin];
+        final double rx = ix + (bx * ic - by * is);
+        final double ry = iy + (bx * is + by * ic);
+        double rc = ic * bc - is * bs;
+        double rs = ic * bs + is * bc;
+        final double magnitude = Math.hypot(rc, rs);
+        if (magnitude > kEpsilon) {
+            rc /= magnitude;
+            rs /= magnitude;
+        } else {
+            rc = 1;
+            rs = 0;
+        }
+        final double dtheta = Math.atan2(rs, rc);
+        final double half_dtheta = 0.5 * dtheta;
+        final double dy = -rx * half_dtheta + ry * halfThetaByTanOfHalfTheta(rc, rs, dtheta);
+        return epsilonEquals(dy, 0.0, kEpsilon) && epsilonEquals(dtheta, 0.0, kEpsilon);
+    }
+
+    /**
+     * Finds the point where the heading of a intersects the heading of b and writes its x and y into out. Writes (+INF,
+     * +INF) and returns false if they are parallel.
+     *
+     * @see RigidTransform2d#intersection(RigidTransform2d)
+     */
+    public static boolean intersection(double[] a, double[] b, double[] out) {
+        if (epsilonEquals(a[kCos] * b[kSin] - a[kSin] * b[kCos], 0.0, kEpsilon)) {
+            out[kX] = Double.POSITIVE_INFINITY;
+            out[kY] = Double.POSITIVE_INFINITY;
+            return false;
+        }
+        if (Math.abs(a[kCos]) < Math.abs(b[kCos])) {
+            intersectionInternal(a, b, out);
+        } else {
+            intersectionInternal(b, a, out);
+        }
+        return true;
+    }
+
+    private static void intersectionInternal(double[] a, double[] b, double[] out) {
+        final double ax = a[kX], ay = a[kY], ac = a[kCos], as = a[kSin];
+        final double bc = b[kCos], bs = b[kSin];
+        double tan_b;
+        if (Math.abs(bc) < kEpsilon) {
+            tan_b = bs >= 0.0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        } else {
+            tan_b = bs / bc;
+        }
+        final double t = ((ax - b[kX]) * tan_b + b[kY] - ay) / (as - ac * tan_b);
+        out[kX] = ax + ac * t;
+        out[kY] = ay + as * t;
+    }
+}
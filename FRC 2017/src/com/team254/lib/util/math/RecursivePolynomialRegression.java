@@ -0,0 +1,215 @@
+package com.team254.lib.util.math;
+
+/**
+ * Fits a polynomial y = b0 + b1 x + ... + bd x^d one point at a time with recursive least squares, instead of solving
+ * the whole problem again like PolynomialRegression does. Adding a point costs O(d^2) and doesn't allocate.
+ *
+ * Old points are discounted by a forgetting factor: after n more points, a point counts forgetting_factor^n as much
+ * as a new one. A factor of 1 never forgets, giving the same fit as PolynomialRegression (up to the weak prior the
+ * estimator starts from).
+ *
+ * x is mapped onto [-1, 1] over [min_x, max_x] inside the estimator to keep the powers of x well scaled; the
+ * coefficients it reports are for the raw x. Points outside [min_x, max_x] are still used.
+ */
+public class RecursivePolynomialRegression {
+    // Starting covariance of the coefficients. Large means the (zero) starting coefficients are barely trusted.
+    private static final double kInitialCovariance = 1E8;
+
+    private final int degree_;
+    private final double forgetting_factor_;
+    private final double center_;
+    private final double half_width_;
+
+    private final double[] theta_; // coefficients of the scaled x
+    private final double[][] p_; // covariance of theta_
+    private final double[] phi_; // scratch: powers of the scaled x
+    private final double[] p_phi_; // scratch: p_ * phi_
+    private final double max_trace_;
+
+    private int count_;
+    // Forgetting-weighted sums for R^2, over the points added after the first degree + 1.
+    private double weight_sum_;
+    private double y_sum_;
+    private double y2_sum_;
+    private double sse_;
+
+    /**
+     * @param forgetting_factor
+     *            In (0, 1]. Around 0.95 to 0.99 follows slow drift (e.g. ball wear) without being thrown off by one
+     *            bad point.
+     */
+    public RecursivePolynomialRegression(int degree, double forgetting_factor, double min_x, double max_x) {
+        if (degree < 0 || !(forgetting_factor > 0 && forgetting_factor <= 1) || !(max_x > min_x)) {
+            throw new IllegalArgumentException("Bad regression parameters");
+        }
+        degree_ = degree;
+        forgetting_factor_ = forgetting_factor;
+        center_ = (min_x + max_x) / 2;
+        half_width_ = (max_x - min_x) / 2;
+        theta_ = new double[degree + 1];
+        p_ = new double[degree + 1][degree + 1];
+        phi_ = new double[degree + 1];
+        p_phi_ = new double[degree + 1];
+        max_trace_ = kInitialCovariance * (degree + 1);
+        reset();
+    }
+
+    /**
+     * Forgets every point.
+     */
+    public void reset() {
+        for (int i = 0; i <= degree_; ++i) {
+            theta_[i] = 0;
+            for (int j = 0; j <= degree_; ++j) {
+                p_[i][j] = i == j ? kInitialCovariance : 0;
+            }
+        }
+        count_ = 0;
+        weight_sum_ = 0;
+        y_sum_ = 0;
+        y2_sum_ = 0;
+        sse_ = 0;
+    }
+
+    public void addPoint(double x, double y) {
+        addPoint(x, y, 1.0);
+    }
+
+    /**
+     * @param weight
+     *            How much this point counts relative to a normal one. Points with a weight of 0 or less are ignored.
+     */
+    public void addPoint(double x, double y, double weight) {
+        if (!(weight > 0)) {
+            return;
+        }
+        final int n = degree_ + 1;
+        final double u = (x - center_) / half_width_;
+        double power = 1;
+        for (int i = 0; i < n; ++i) {
+            phi_[i] = power;
+            power *= u;
+        }
+        double denominator = forgetting_factor_ / weight;
+        double error = y;
+        for (int i = 0; i < n; ++i) {
+            double sum = 0;
+            for (int j = 0; j < n; ++j) {
+                sum += p_[i][j] * phi_[j];
+            }
+            p_phi_[i] = sum;
+            denominator += phi_[i] * sum;
+            error -= theta_[i] * phi_[i];
+        }
+        // p_phi_ / denominator is the gain.
+        for (int i = 0; i < n; ++i) {
+            theta_[i] += p_phi_[i] * error / denominator;
+        }
+        // P = (P - gain * phi^T P) / forgetting_factor. P is symmetric, so phi^T P = p_phi_^T. When nothing new is
+        // being learned (e.g. every shot from the same range), dividing by the forgetting factor would grow P without
+        // bound, so stop forgetting once it is back to its starting size.
+        double trace = 0;
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                p_[i][j] -= p_phi_[i] * p_phi_[j] / denominator;
+            }
+            trace += p_[i][i];
+        }
+        if (trace * (1 / forgetting_factor_) <= max_trace_) {
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    p_[i][j] /= forgetting_factor_;
+                }
+            }
+        }
+
+        // error is the residual before the update, i.e. how well the fit predicted a point it hadn't seen yet. Until
+        // there have been more points than coefficients that is mostly the starting guess, so don't count it.
+        if (count_ > degree_) {
+            sse_ = forgetting_factor_ * sse_ + weight * error * error;
+            weight_sum_ = forgetting_factor_ * weight_sum_ + weight;
+            y_sum_ = forgetting_factor_ * y_sum_ + weight * y;
+            y2_sum_ = forgetting_factor_ * y2_sum_ + weight * y * y;
+        }
+        ++count_;
+    }
+
+    /**
+     * @return The number of points added since the last reset, including forgotten ones.
+     */
+    public int count() {
+        return count_;
+    }
+
+    public int degree() {
+        return degree_;
+    }
+
+    public double predict(double x) {
+        final double u = (x - center_) / half_width_;
+        double y = 0.0;
+        for (int j = degree_; j >= 0; --j) {
+            y = theta_[j] + u * y;
+        }
+        return y;
+    }
+
+    /**
+     * An estimate of the coefficient of determination from the (forgetting-weighted) residual of each point just
+     * before it was added. That makes it a measure of how well the fit predicts new points, so it is somewhat lower
+     * than PolynomialRegression's R^2 on the same points.
+     *
+     * @return R^2, or NaN until two points have been added after the first degree + 1.
+     */
+    public double R2() {
+        if (count_ <= degree_ + 2) {
+            return Double.NaN;
+        }
+        final double sst = y2_sum_ - y_sum_ * y_sum_ / weight_sum_;
+        if (sst <= 0) {
+            return 1.0; // constant function
+        }
+        return Math.max(0.0, 1.0 - sse_ / sst);
+    }
+
+    /**
+     * @return coefficients[j] multiplies x^j (the raw x, not the scaled one).
+     */
+    public double[] getCoefficients() {
+        // Expand sum_j theta_j ((x - c) / h)^j with the binomial theorem.
+        double[] coefficients = new double[degree_ + 1];
+        double h_power = 1;
+        for (int j = 0; j <= degree_; ++j) {
+            final double scaled = theta_[j] / h_power;
+            double binomial = 1; // C(j, k)
+            double c_power = 1; // (-c)^(j - k)
+            for (int k = j; k >= 0; --k) {
+                coefficients[k] += scaled * binomial * c_power;
+                binomial = binomial * k / (j - k + 1);
+                c_power *= -center_;
+            }
+            h_power *= half_width_;
+        }
+        return coefficients;
+    }
+
+    /**
+     * @return The current fit, clamped to [min_x, max_x].
+     */
+    public Polynomial toPolynomial(double min_x, double max_x) {
+        return new Polynomial(getCoefficients(), min_x, max_x);
+    }
+
+    @Override
+    public String toString() {
+        final double[] coefficients = getCoefficients();
+        StringBuilder s = new StringBuilder();
+        for (int j = degree_; j >= 0; --j) {
+            s.append(String.format("%.4g", coefficients[j]));
+            if (j > 0) {
+                s.append(j == 1 ? " x + " : " x^" + j + " + ");
+            }
+        }
+        return s + "  (R^2 = " + String.format("%.3f", R2()) + ", n = " + count_ + ")";
+    }
+}
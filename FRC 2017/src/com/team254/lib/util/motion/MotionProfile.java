@@ -3,6 +3,9 @@ package com.team254.lib.util.motion;
 import static com.team254.lib.util.Util.epsilonEquals;
 import static com.team254.lib.util.motion.MotionUtil.kEpsilon;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -13,6 +16,9 @@ import java.util.Optional;
  * MotionSegments from which the desired state of motion at any given distance or time can be calculated.
  */
 public class MotionProfile {
+    // More segments than any generated profile has; read() rejects counts above this instead of running out of memory.
+    public static final int kMaxReadSegments = 1 << 16;
+
     protected List<MotionSegment> mSegments;
 
     /**
@@ -314,6 +320,45 @@ public class MotionProfile {
         return length;
     }
 
+    /**
+     * Writes the segments of the profile in a compact binary form that read() turns back into an identical profile.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mSegments.size());
+        for (MotionSegment s : mSegments) {
+            writeState(s.start(), out);
+            writeState(s.end(), out);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             If the segment count is negative or more than kMaxReadSegments (a corrupt or foreign file).
+     */
+    public static MotionProfile read(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0 || size > kMaxReadSegments) {
+            throw new IllegalArgumentException("Bad motion profile segment count " + size);
+        }
+        List<MotionSegment> segments = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            MotionState start = readState(in);
+            segments.add(new MotionSegment(start, readState(in)));
+        }
+        return new MotionProfile(segments);
+    }
+
+    private static void writeState(MotionState state, DataOutput out) throws IOException {
+        out.writeDouble(state.t());
+        out.writeDouble(state.pos());
+        out.writeDouble(state.vel());
+        out.writeDouble(state.acc());
+    }
+
+    private static MotionState readState(DataInput in) throws IOException {
+        return new MotionState(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder("Profile:");
@@ -5,6 +5,8 @@ import com.team254.lib.util.motion.MotionProfileGoal.CompletionBehavior;
 /**
  * A MotionProfileGenerator generates minimum-time MotionProfiles to travel from a given MotionState to a given
  * MotionProfileGoal while obeying a set of MotionProfileConstraints.
+ * 
+ * The generator keeps no state between calls, so profiles can be generated from several threads at once.
  */
 public class MotionProfileGenerator {
     // Static class.
@@ -32,7 +34,7 @@ public class MotionProfileGenerator {
      *            The initial state to use.
      * @return A motion profile from prev_state to goal_state that satisfies constraints.
      */
-    public synchronized static MotionProfile generateProfile(MotionProfileConstraints constraints,
+    public static MotionProfile generateProfile(MotionProfileConstraints constraints,
             MotionProfileGoal goal_state,
             MotionState prev_state) {
         double delta_pos = goal_state.pos() - prev_state.pos();
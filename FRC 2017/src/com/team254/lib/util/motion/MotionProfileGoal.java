@@ -107,7 +107,11 @@ public class MotionProfileGoal {
     }
 
     public boolean atGoalState(MotionState state) {
-        return atGoalPos(state.pos()) && (Math.abs(state.vel()) < (max_abs_vel + vel_tolerance)
+        return atGoalState(state.pos(), state.vel());
+    }
+
+    public boolean atGoalState(double pos, double vel) {
+        return atGoalPos(pos) && (Math.abs(vel) < (max_abs_vel + vel_tolerance)
                 || completion_behavior == CompletionBehavior.VIOLATE_MAX_ABS_VEL);
     }
 
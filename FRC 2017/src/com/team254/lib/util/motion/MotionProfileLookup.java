@@ -0,0 +1,275 @@
+package com.team254.lib.util.motion;
+
+import static com.team254.lib.util.Util.epsilonEquals;
+import static com.team254.lib.util.motion.MotionUtil.kEpsilon;
+
+import java.util.List;
+
+/**
+ * A read-only, compiled copy of a MotionProfile for code that queries a profile every loop.
+ *
+ * The segment start and end states are stored in primitive arrays, and queries write into a caller-supplied Sample
+ * instead of returning a new MotionState. Time queries remember the segment they found last, so a caller stepping
+ * forward in time (the usual case) finds the answer in the same or the next segment; anything else falls back to a
+ * binary search. Position queries use a binary search when the profile never reverses, and a scan otherwise.
+ *
+ * The answers are the same as MotionProfile's stateByTime, stateByTimeClamped and firstStateByPos for the profile as it
+ * was when the lookup was built. Later changes to the profile are not seen; trim the lookup itself with trimBeforeTime
+ * instead.
+ */
+public class MotionProfileLookup {
+    /**
+     * A mutable MotionState that lookups write their result into.
+     */
+    public static class Sample {
+        public double t;
+        public double pos;
+        public double vel;
+        public double acc;
+
+        public Sample() {
+        }
+
+        private void set(double t, double pos, double vel, double acc) {
+            this.t = t;
+            this.pos = pos;
+            this.vel = vel;
+            this.acc = acc;
+        }
+
+        /**
+         * @return True if this is epsilon-equal to state, the same test as MotionState.equals().
+         */
+        public boolean matches(MotionState state) {
+            return epsilonEquals(t, state.t(), kEpsilon) && epsilonEquals(pos, state.pos(), kEpsilon)
+                    && epsilonEquals(vel, state.vel(), kEpsilon) && epsilonEquals(acc, state.acc(), kEpsilon);
+        }
+
+        public MotionState toMotionState() {
+            return new MotionState(t, pos, vel, acc);
+        }
+
+        @Override
+        public String toString() {
+            return "(t=" + t + ", pos=" + pos + ", vel=" + vel + ", acc=" + acc + ")";
+        }
+    }
+
+    protected final int mSize;
+    protected final double[] mStartT, mStartPos, mStartVel, mStartAcc;
+    protected final double[] mEndT, mEndPos, mEndVel, mEndAcc;
+    protected final boolean mMonotonic;
+    protected int mFirst = 0;
+    protected int mCursor = 0;
+
+    public MotionProfileLookup(MotionProfile profile) {
+        final List<MotionSegment> segments = profile.segments();
+        mSize = segments.size();
+        mStartT = new double[mSize];
+        mStartPos = new double[mSize];
+        mStartVel = new double[mSize];
+        mStartAcc = new double[mSize];
+        mEndT = new double[mSize];
+        mEndPos = new double[mSize];
+        mEndVel = new double[mSize];
+        mEndAcc = new double[mSize];
+        boolean monotonic = true;
+        for (int i = 0; i < mSize; ++i) {
+            final MotionState start = segments.get(i).start();
+            final MotionState end = segments.get(i).end();
+            mStartT[i] = start.t();
+            mStartPos[i] = start.pos();
+            mStartVel[i] = start.vel();
+            mStartAcc[i] = start.acc();
+            mEndT[i] = end.t();
+            mEndPos[i] = end.pos();
+            mEndVel[i] = end.vel();
+            mEndAcc[i] = end.acc();
+            monotonic &= mStartPos[i] <= mEndPos[i] && (i == 0 || mEndPos[i - 1] <= mEndPos[i]);
+        }
+        mMonotonic = monotonic;
+    }
+
+    public boolean isEmpty() {
+        return mFirst >= mSize;
+    }
+
+    public double startTime() {
+        return isEmpty() ? Double.NaN : mStartT[mFirst];
+    }
+
+    public double endTime() {
+        return isEmpty() ? Double.NaN : mEndT[mSize - 1];
+    }
+
+    public double startPos() {
+        return isEmpty() ? Double.NaN : mStartPos[mFirst];
+    }
+
+    public double endPos() {
+        return isEmpty() ? Double.NaN : mEndPos[mSize - 1];
+    }
+
+    private void startState(Sample out) {
+        out.set(mStartT[mFirst], mStartPos[mFirst], mStartVel[mFirst], mStartAcc[mFirst]);
+    }
+
+    private void endState(Sample out) {
+        final int i = mSize - 1;
+        out.set(mEndT[i], mEndPos[i], mEndVel[i], mEndAcc[i]);
+    }
+
+    private boolean segmentContainsTime(int i, double t) {
+        return t >= mStartT[i] && t <= mEndT[i];
+    }
+
+    /**
+     * @return The index of the first segment containing t, or -1 if there is none.
+     */
+    private int segmentByTime(double t) {
+        // Segment times are contiguous, so the first segment containing t is the one before any that start at t.
+        if (segmentContainsTime(mCursor, t) && (mCursor == mFirst || !segmentContainsTime(mCursor - 1, t))) {
+            return mCursor;
+        }
+        if (mCursor + 1 < mSize && segmentContainsTime(mCursor + 1, t) && !segmentContainsTime(mCursor, t)) {
+            return ++mCursor;
+        }
+        // Find the first segment that ends at or after t.
+        int low = mFirst;
+        int high = mSize - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mEndT[mid] >= t) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        if (!segmentContainsTime(low, t)) {
+            return -1;
+        }
+        mCursor = low;
+        return low;
+    }
+
+    /**
+     * Drop everything before time t, the same as MotionProfile.trimBeforeTime() on the profile this was built from.
+     *
+     * @see MotionProfile#trimBeforeTime(double)
+     */
+    public void trimBeforeTime(double t) {
+        while (mFirst < mSize && mEndT[mFirst] <= t) {
+            // Segment is fully before t.
+            ++mFirst;
+        }
+        if (mFirst < mSize && mStartT[mFirst] <= t) {
+            // Segment begins before t; shorten it the way MotionState.extrapolate() would.
+            final double dt = t - mStartT[mFirst];
+            final double acc = mStartAcc[mFirst];
+            mStartPos[mFirst] = mStartPos[mFirst] + mStartVel[mFirst] * dt + .5 * acc * dt * dt;
+            mStartVel[mFirst] = mStartVel[mFirst] + acc * dt;
+            mStartT[mFirst] = t;
+        }
+        mCursor = Math.max(mCursor, mFirst);
+    }
+
+    private void extrapolate(int i, double t, Sample out) {
+        final double dt = t - mStartT[i];
+        final double acc = mStartAcc[i];
+        out.set(t, mStartPos[i] + mStartVel[i] * dt + .5 * acc * dt * dt, mStartVel[i] + acc * dt, acc);
+    }
+
+    /**
+     * Writes the interpolated state at time t into out.
+     *
+     * @return False (leaving out unchanged) if the time is outside the time bounds of the profile.
+     * @see MotionProfile#stateByTime(double)
+     */
+    public boolean stateByTime(double t, Sample out) {
+        if (isEmpty()) {
+            return false;
+        }
+        if (t < mStartT[mFirst] && t + kEpsilon >= mStartT[mFirst]) {
+            startState(out);
+            return true;
+        }
+        if (t > endTime() && t - kEpsilon <= endTime()) {
+            endState(out);
+            return true;
+        }
+        final int i = segmentByTime(t);
+        if (i < 0) {
+            return false;
+        }
+        extrapolate(i, t, out);
+        return true;
+    }
+
+    /**
+     * Writes the interpolated state at time t into out, clamping to the endpoints if t is out of bounds.
+     *
+     * @see MotionProfile#stateByTimeClamped(double)
+     */
+    public void stateByTimeClamped(double t, Sample out) {
+        if (isEmpty()) {
+            out.set(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        } else if (t < mStartT[mFirst]) {
+            startState(out);
+        } else if (t > endTime()) {
+            endState(out);
+        } else {
+            final int i = segmentByTime(t);
+            if (i < 0) {
+                // Should never get here.
+                out.set(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            } else {
+                extrapolate(i, t, out);
+            }
+        }
+    }
+
+    private boolean segmentContainsPos(int i, double pos) {
+        return pos >= mStartPos[i] && pos <= mEndPos[i] || pos <= mStartPos[i] && pos >= mEndPos[i];
+    }
+
+    /**
+     * Writes the first state at which the profile reaches pos into out.
+     *
+     * @return False (leaving out unchanged) if the profile never crosses pos.
+     * @see MotionProfile#firstStateByPos(double)
+     */
+    public boolean firstStateByPos(double pos, Sample out) {
+        int i = mFirst;
+        if (mMonotonic && !isEmpty()) {
+            // Every segment that ends before pos can be skipped.
+            int high = mSize - 1;
+            while (i < high) {
+                final int mid = (i + high) >>> 1;
+                if (mEndPos[mid] >= pos) {
+                    high = mid;
+                } else {
+                    i = mid + 1;
+                }
+            }
+        }
+        for (; i < mSize; ++i) {
+            if (!segmentContainsPos(i, pos)) {
+                continue;
+            }
+            if (epsilonEquals(mEndPos[i], pos, kEpsilon)) {
+                out.set(mEndT[i], mEndPos[i], mEndVel[i], mEndAcc[i]);
+                return true;
+            }
+            final double t = Math.min(
+                    MotionState.nextTimeAtPos(mStartT[i], mStartPos[i], mStartVel[i], mStartAcc[i], pos), mEndT[i]);
+            if (Double.isNaN(t)) {
+                System.err.println("Error! We should reach 'pos' but we don't");
+                return false;
+            }
+            extrapolate(i, t, out);
+            return true;
+        }
+        // We never reach pos.
+        return false;
+    }
+}
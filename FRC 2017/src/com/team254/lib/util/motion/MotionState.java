@@ -82,13 +82,20 @@ public class MotionState {
      * @return The time when we are next at pos() if we are extrapolating with a positive dt. NaN if we never reach pos.
      */
     public double nextTimeAtPos(double pos) {
-        if (epsilonEquals(pos, this.pos, kEpsilon)) {
+        return nextTimeAtPos(t, this.pos, vel, acc, pos);
+    }
+
+    /**
+     * Same as nextTimeAtPos(double), for a state given as its components.
+     */
+    public static double nextTimeAtPos(double t, double start_pos, double vel, double acc, double pos) {
+        if (epsilonEquals(pos, start_pos, kEpsilon)) {
             // Already at pos.
             return t;
         }
         if (epsilonEquals(acc, 0.0, kEpsilon)) {
             // Zero acceleration case.
-            final double delta_pos = pos - this.pos;
+            final double delta_pos = pos - start_pos;
             if (!epsilonEquals(vel, 0.0, kEpsilon) && Math.signum(delta_pos) == Math.signum(vel)) {
                 // Constant velocity heading towards pos.
                 return delta_pos / vel + t;
@@ -101,8 +108,8 @@ public class MotionState {
         // x = dt
         // a = .5 * acc
         // b = vel
-        // c = this.pos - pos
-        final double disc = vel * vel - 2.0 * acc * (this.pos - pos);
+        // c = start_pos - pos
+        final double disc = vel * vel - 2.0 * acc * (start_pos - pos);
         if (disc < 0.0) {
             // Extrapolating this MotionState never reaches the desired pos.
             return Double.NaN;
@@ -1,12 +1,13 @@
 package com.team254.lib.util.motion;
 
-import java.util.Optional;
-
 /**
  * A SetpointGenerate does just-in-time motion profile generation to supply a stream of setpoints that obey the given
  * constraints to a controller. The profile is regenerated when any of the inputs change, but is cached (and trimmed as
  * we go) if the only update is to the current state.
  * 
+ * The profile is sampled and trimmed through a MotionProfileLookup built when it is generated, so that the per-loop
+ * queries don't scan or rewrite the profile's segments. The returned Setpoint is reused by the next call.
+ * 
  * Note that typically for smooth control, a user will feed the last iteration's setpoint as the argument to
  * getSetpoint(), and should only use a measured state directly on the first iteration or if a large disturbance is
  * detected.
@@ -27,6 +28,10 @@ public class SetpointGenerator {
     }
 
     protected MotionProfile mProfile = null;
+    protected MotionProfileLookup mLookup = null;
+    protected boolean mProfileValid = false;
+    protected final MotionProfileLookup.Sample mSample = new MotionProfileLookup.Sample();
+    protected final Setpoint mSetpoint = new Setpoint(null, false);
     protected MotionProfileGoal mGoal = null;
     protected MotionProfileConstraints mConstraints = null;
 
@@ -38,6 +43,7 @@ public class SetpointGenerator {
      */
     public void reset() {
         mProfile = null;
+        mLookup = null;
         mGoal = null;
         mConstraints = null;
     }
@@ -53,59 +59,71 @@ public class SetpointGenerator {
      *            The previous setpoint (or measured state of the system to do a reset).
      * @param t
      *            The time to generate a setpoint for.
-     * @return The new Setpoint at time t.
+     * @return The new Setpoint at time t. The same object is updated and returned by the next call.
      */
     public synchronized Setpoint getSetpoint(MotionProfileConstraints constraints, MotionProfileGoal goal,
             MotionState prev_state,
             double t) {
         boolean regenerate = mConstraints == null || !mConstraints.equals(constraints) || mGoal == null
                 || !mGoal.equals(goal) || mProfile == null;
-        if (!regenerate && !mProfile.isEmpty()) {
-            Optional<MotionState> expected_state = mProfile.stateByTime(prev_state.t());
-            regenerate = !expected_state.isPresent() || !expected_state.get().equals(prev_state);
+        if (!regenerate && !mLookup.isEmpty()) {
+            regenerate = !mLookup.stateByTime(prev_state.t(), mSample) || !mSample.matches(prev_state);
         }
         if (regenerate) {
             // Regenerate the profile, as our current profile does not satisfy the inputs.
             mConstraints = constraints;
             mGoal = goal;
             mProfile = MotionProfileGenerator.generateProfile(constraints, goal, prev_state);
+            mLookup = new MotionProfileLookup(mProfile);
+            mProfileValid = mProfile.isValid();
             // System.out.println("Regenerating profile: " + mProfile);
         }
 
         // Sample the profile at time t.
-        Setpoint rv = null;
-        if (!mProfile.isEmpty() && mProfile.isValid()) {
-            MotionState setpoint;
-            if (t > mProfile.endTime()) {
-                setpoint = mProfile.endState();
-            } else if (t < mProfile.startTime()) {
-                setpoint = mProfile.startState();
-            } else {
-                setpoint = mProfile.stateByTime(t).get();
-            }
+        final Setpoint rv = mSetpoint;
+        if (!mLookup.isEmpty() && mProfileValid) {
+            mLookup.stateByTimeClamped(t, mSample);
             // Shorten the profile and return the new setpoint.
-            mProfile.trimBeforeTime(t);
-            rv = new Setpoint(setpoint, mProfile.isEmpty() || mGoal.atGoalState(setpoint));
-        }
-
-        // Invalid or empty profile - just output the same state again.
-        if (rv == null) {
-            rv = new Setpoint(prev_state, true);
+            mLookup.trimBeforeTime(t);
+            rv.final_setpoint = mLookup.isEmpty() || mGoal.atGoalState(mSample.pos, mSample.vel);
+            if (!rv.final_setpoint) {
+                rv.motion_state = sampleState(rv.motion_state);
+            }
+        } else {
+            // Invalid or empty profile - just output the same state again.
+            rv.motion_state = prev_state;
+            rv.final_setpoint = true;
+            mSample.t = prev_state.t();
+            mSample.vel = prev_state.vel();
         }
 
         if (rv.final_setpoint) {
             // Ensure the final setpoint matches the goal exactly.
-            rv.motion_state = new MotionState(rv.motion_state.t(), mGoal.pos(),
-                    Math.signum(rv.motion_state.vel()) * Math.max(mGoal.max_abs_vel(), Math.abs(rv.motion_state.vel())),
-                    0.0);
+            mSample.pos = mGoal.pos();
+            mSample.vel = Math.signum(mSample.vel) * Math.max(mGoal.max_abs_vel(), Math.abs(mSample.vel));
+            mSample.acc = 0.0;
+            rv.motion_state = sampleState(rv.motion_state);
         }
 
         return rv;
     }
 
+    /**
+     * @return last if it already holds mSample (e.g. while holding at the goal), otherwise a new MotionState.
+     */
+    private MotionState sampleState(MotionState last) {
+        if (last != null && last.t() == mSample.t && last.pos() == mSample.pos && last.vel() == mSample.vel
+                && last.acc() == mSample.acc) {
+            return last;
+        }
+        return mSample.toMotionState();
+    }
+
     /**
      * Get the full profile from the latest call to getSetpoint(). Useful to check estimated time or distance to goal.
      * 
+     * The profile is not trimmed as setpoints are consumed; it is the whole profile as generated.
+     * 
      * @return The profile from the latest call to getSetpoint(), or null if there is not yet a profile.
      */
     public MotionProfile getProfile() {
@@ -0,0 +1,192 @@
+package com.team254.lib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StateMachineTest {
+    private enum S {
+        A, B, C, D
+    }
+
+    private final List<String> mEvents = new ArrayList<>();
+    private boolean mGoToB = false;
+    private boolean mGoToC = false;
+    private boolean mGoToD = false;
+
+    private StateMachine<S> mMachine;
+    private StateMachine<S>.StateConfig mOuter;
+    private StateMachine<S>.StateConfig mInner;
+
+    private StateMachine.Action log(final String event) {
+        return timestamp -> mEvents.add(event);
+    }
+
+    /**
+     * outer contains A and inner; inner contains B and C; D is outside both.
+     */
+    @Before
+    public void setUp() {
+        mMachine = new StateMachine<>("test", S.class, S.A);
+        mOuter = mMachine.superstate("outer").onEntry(log("enter outer")).onLoop(log("loop outer"))
+                .onExit(log("exit outer"));
+        mInner = mMachine.superstate("inner").parent(mOuter).onEntry(log("enter inner")).onLoop(log("loop inner"))
+                .onExit(log("exit inner"));
+        for (S state : S.values()) {
+            mMachine.state(state).onEntry(log("enter " + state)).onLoop(log("loop " + state))
+                    .onExit(log("exit " + state));
+        }
+        mMachine.state(S.A).parent(mOuter).transition((t, dt) -> mGoToB, S.B);
+        mMachine.state(S.B).parent(mInner).transition((t, dt) -> mGoToC, S.C);
+        mMachine.state(S.C).parent(mInner);
+        mMachine.state(S.D).transition((t, dt) -> !mGoToD, S.A);
+    }
+
+    private void assertEvents(String... expected) {
+        assertEquals(Arrays.asList(expected), mEvents);
+        mEvents.clear();
+    }
+
+    @Test
+    public void testResetEntersSuperstatesOutermostFirst() {
+        mMachine.reset(S.B, 0.0);
+        assertEquals(S.B, mMachine.getState());
+        assertEvents("enter outer", "enter inner", "enter B");
+    }
+
+    @Test
+    public void testEntryAndExitStopAtTheSharedSuperstate() {
+        mMachine.state(S.C).transition((t, dt) -> mGoToD, S.D);
+        mMachine.reset(S.A, 0.0);
+        mEvents.clear();
+
+        // Into a nested superstate: only inner is entered.
+        mGoToB = true;
+        assertTrue(mMachine.update(1.0));
+        assertEquals(S.B, mMachine.getState());
+        assertEvents("loop outer", "loop A", "exit A", "enter inner", "enter B");
+
+        // Between two states of the same superstate: no superstate actions.
+        mGoToC = true;
+        assertTrue(mMachine.update(2.0));
+        assertEvents("loop outer", "loop inner", "loop B", "exit B", "enter C");
+
+        // Out of everything: innermost exits first.
+        mGoToD = true;
+        assertTrue(mMachine.update(3.0));
+        assertEquals(S.D, mMachine.getState());
+        assertEvents("loop outer", "loop inner", "loop C", "exit C", "exit inner", "exit outer", "enter D");
+
+        // And back in.
+        mGoToD = false;
+        assertTrue(mMachine.update(4.0));
+        assertEquals(S.A, mMachine.getState());
+        assertEvents("loop D", "exit D", "enter outer", "enter A");
+    }
+
+    @Test
+    public void testOneTransitionPerUpdate() {
+        mMachine.reset(S.A, 0.0);
+        mEvents.clear();
+        mGoToB = true;
+        mGoToC = true;
+        assertTrue(mMachine.update(1.0));
+        assertEquals(S.B, mMachine.getState());
+        assertEvents("loop outer", "loop A", "exit A", "enter inner", "enter B");
+        assertTrue(mMachine.update(2.0));
+        assertEquals(S.C, mMachine.getState());
+    }
+
+    @Test
+    public void testSuperstateTransitionsAreInheritedAndCheckedFirst() {
+        mOuter.transition((t, dt) -> mGoToD, S.D, "outer");
+        mMachine.reset(S.B, 0.0);
+
+        // Both outer's and B's own transitions fire; outer's wins.
+        mGoToC = true;
+        mGoToD = true;
+        assertTrue(mMachine.update(1.0));
+        assertEquals(S.D, mMachine.getState());
+        assertEquals("outer", mMachine.getTransitions().get(0).reason);
+
+        // Inherited by A too, which isn't in inner.
+        mMachine.reset(S.A, 2.0);
+        assertTrue(mMachine.update(3.0));
+        assertEquals(S.D, mMachine.getState());
+    }
+
+    @Test
+    public void testInheritedTransitionToTheCurrentStateFallsThrough() {
+        mInner.transition((t, dt) -> true, S.B);
+        mMachine.reset(S.B, 0.0);
+        assertFalse(mMachine.update(1.0));
+        assertEquals(S.B, mMachine.getState());
+
+        // The state's own transitions are still checked after it.
+        mGoToC = true;
+        assertTrue(mMachine.update(2.0));
+        assertEquals(S.C, mMachine.getState());
+        // From C, inner's transition leads somewhere else, so it's taken.
+        assertTrue(mMachine.update(3.0));
+        assertEquals(S.B, mMachine.getState());
+    }
+
+    @Test
+    public void testSuperstateTimeoutCountsFromEnteringTheSuperstate() {
+        mInner.timeout(1.0, S.D);
+        mMachine.reset(S.A, 0.0);
+        mGoToB = true;
+        assertTrue(mMachine.update(0.5));
+        assertEquals(S.B, mMachine.getState());
+
+        // Moving between states inside inner doesn't restart its timer.
+        mGoToC = true;
+        assertTrue(mMachine.update(1.2));
+        assertEquals(S.C, mMachine.getState());
+        assertFalse(mMachine.update(1.4));
+        assertEquals(S.C, mMachine.getState());
+        assertEquals(0.2, mMachine.getTimeInState(1.4), 1E-9);
+        assertTrue(mMachine.update(1.6));
+        assertEquals(S.D, mMachine.getState());
+        assertEquals("timeout", mMachine.getTransitions().get(2).reason);
+    }
+
+    @Test
+    public void testStateTimeoutCountsFromEnteringTheState() {
+        mMachine.state(S.C).timeout(1.0, S.D);
+        mMachine.reset(S.C, 0.0);
+        assertFalse(mMachine.update(1.0));
+        assertTrue(mMachine.update(1.1));
+        assertEquals(S.D, mMachine.getState());
+    }
+
+    @Test
+    public void testTransitionLogKeepsTheNewestEntries() {
+        StateMachine<S> machine = new StateMachine<>("log", S.class, S.A, 2);
+        machine.state(S.A).transition((t, dt) -> true, S.B);
+        machine.state(S.B).transition((t, dt) -> true, S.C);
+        machine.state(S.C).transition((t, dt) -> true, S.D);
+        machine.reset(S.A, 0.0);
+        machine.update(1.0);
+        machine.update(2.0);
+        machine.update(3.0);
+        List<StateMachine.Transition<S>> transitions = machine.getTransitions();
+        assertEquals(2, transitions.size());
+        assertEquals(S.B, transitions.get(0).from);
+        assertEquals(S.C, transitions.get(0).to);
+        assertEquals(2.0, transitions.get(0).timestamp, 0.0);
+        assertEquals(S.D, transitions.get(1).to);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSuperstateCantContainItself() {
+        mOuter.parent(mInner);
+    }
+}
@@ -0,0 +1,64 @@
+package com.team254.lib.util.control;
+
+import static org.junit.Assert.assertEquals;
+
+import com.team254.lib.util.math.PoseMath;
+import com.team254.lib.util.math.RigidTransform2d;
+import com.team254.lib.util.math.Rotation2d;
+import com.team254.lib.util.math.Translation2d;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class AdaptivePurePursuitControllerTest {
+    private static final int kNumSamples = 100000;
+    private static final double kEpsilon = 1E-12;
+
+    private static RigidTransform2d randomPose(Random random) {
+        return new RigidTransform2d(new Translation2d(random.nextGaussian() * 100, random.nextGaussian() * 100),
+                Rotation2d.fromRadians(random.nextDouble() * 2 * Math.PI));
+    }
+
+    /**
+     * Mostly arbitrary points, with some straight ahead of or behind the pose (the colinear special case in getCenter)
+     * and some very close to it.
+     */
+    private static Translation2d randomPoint(Random random, RigidTransform2d pose, int i) {
+        switch (i % 4) {
+        case 0:
+            return pose.getTranslation().translateBy(pose.getRotation().toTranslation().scale(random.nextGaussian() * 50));
+        case 1:
+            return pose.getTranslation().translateBy(new Translation2d(random.nextGaussian(), random.nextGaussian()));
+        default:
+            return new Translation2d(random.nextGaussian() * 100, random.nextGaussian() * 100);
+        }
+    }
+
+    @Test
+    public void testKernelsMatchRigidTransformVersions() {
+        Random random = new Random(1);
+        AdaptivePurePursuitController controller = new AdaptivePurePursuitController(null, false, null);
+        double[] pose = new double[PoseMath.kPoseSize];
+        for (int i = 0; i < kNumSamples; ++i) {
+            final RigidTransform2d transform = randomPose(random);
+            final Translation2d point = randomPoint(random, transform, i);
+            PoseMath.set(transform, pose);
+            final String message = "pose " + transform + " point " + point;
+
+            controller.computeCenter(pose, point.x(), point.y());
+            final Translation2d center = AdaptivePurePursuitController.getCenter(transform, point);
+            assertEquals(message, center.x(), controller.mCenter[PoseMath.kX], 0.0);
+            assertEquals(message, center.y(), controller.mCenter[PoseMath.kY], 0.0);
+
+            // getLength takes the arc angle through a Rotation2d and back, which can cost it an ulp or two.
+            final double radius = AdaptivePurePursuitController.getRadius(transform, point);
+            final double length = AdaptivePurePursuitController.getLength(transform, point, center, radius);
+            assertEquals(message, length, controller.computeLength(pose, point.x(), point.y(), radius),
+                    kEpsilon * Math.max(1.0, length));
+
+            assertEquals(message, AdaptivePurePursuitController.getDirection(transform, point),
+                    AdaptivePurePursuitController.getDirection(pose, point.x(), point.y()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.team254.lib.util.math;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PoseMathTest {
+    private static final int kNumSamples = 100000;
+
+    private static RigidTransform2d randomPose(Random random) {
+        return new RigidTransform2d(new Translation2d(random.nextGaussian() * 100, random.nextGaussian() * 100),
+                Rotation2d.fromRadians(random.nextDouble() * 2 * Math.PI));
+    }
+
+    private static void assertSamePose(String message, RigidTransform2d expected, double[] actual) {
+        assertEquals(message + " x", expected.getTranslation().x(), actual[PoseMath.kX], 0.0);
+        assertEquals(message + " y", expected.getTranslation().y(), actual[PoseMath.kY], 0.0);
+        assertEquals(message + " cos", expected.getRotation().cos(), actual[PoseMath.kCos], 0.0);
+        assertEquals(message + " sin", expected.getRotation().sin(), actual[PoseMath.kSin], 0.0);
+    }
+
+    @Test
+    public void testMatchesRigidTransform() {
+        Random random = new Random(1);
+        double[] a = new double[PoseMath.kPoseSize];
+        double[] b = new double[PoseMath.kPoseSize];
+        double[] out = new double[PoseMath.kPoseSize];
+        for (int i = 0; i < kNumSamples; ++i) {
+            final RigidTransform2d pose_a = randomPose(random);
+            // Every tenth pair is colinear.
+            final RigidTransform2d pose_b = (i % 10 == 0)
+                    ? new RigidTransform2d(pose_a.getTranslation().translateBy(
+                            pose_a.getRotation().toTranslation().scale(random.nextDouble())), pose_a.getRotation())
+                    : randomPose(random);
+            PoseMath.set(pose_a, a);
+            PoseMath.set(pose_b, b);
+            final String message = pose_a + " and " + pose_b;
+
+            PoseMath.transformBy(a, b, out);
+            assertSamePose(message + " transformBy", pose_a.transformBy(pose_b), out);
+            PoseMath.inverse(a, out);
+            assertSamePose(message + " inverse", pose_a.inverse(), out);
+            final double x = random.nextDouble() * 1.2 - 0.1;
+            PoseMath.interpolate(a, b, x, out);
+            assertSamePose(message + " interpolate " + x, pose_a.interpolate(pose_b, x), out);
+
+            final Twist2d twist = RigidTransform2d.log(pose_a);
+            PoseMath.log(a, out);
+            assertEquals(message + " log dx", twist.dx, out[PoseMath.kDx], 0.0);
+            assertEquals(message + " log dy", twist.dy, out[PoseMath.kDy], 0.0);
+            assertEquals(message + " log dtheta", twist.dtheta, out[PoseMath.kDtheta], 0.0);
+            PoseMath.exp(twist.dx, twist.dy, twist.dtheta, out);
+            assertSamePose(message + " exp", RigidTransform2d.exp(twist), out);
+
+            assertEquals(message + " isColinear", pose_a.isColinear(pose_b), PoseMath.isColinear(a, b));
+            final Translation2d intersection = pose_a.intersection(pose_b);
+            PoseMath.intersection(a, b, out);
+            assertEquals(message + " intersection x", intersection.x(), out[PoseMath.kX], 0.0);
+            assertEquals(message + " intersection y", intersection.y(), out[PoseMath.kY], 0.0);
+        }
+    }
+
+    @Test
+    public void testOutputMayAliasInput() {
+        Random random = new Random(2);
+        double[] a = new double[PoseMath.kPoseSize];
+        double[] b = new double[PoseMath.kPoseSize];
+        for (int i = 0; i < 1000; ++i) {
+            final RigidTransform2d pose_a = randomPose(random);
+            final RigidTransform2d pose_b = randomPose(random);
+            PoseMath.set(pose_a, a);
+            PoseMath.set(pose_b, b);
+            PoseMath.transformBy(a, b, a);
+            assertSamePose("transformBy", pose_a.transformBy(pose_b), a);
+            PoseMath.set(pose_a, a);
+            PoseMath.inverseTransformBy(a, b, b);
+            assertSamePose("inverseTransformBy", pose_a.inverse().transformBy(pose_b), b);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.team254.lib.util.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RecursivePolynomialRegressionTest {
+    private static final double kMinX = 80.0;
+    private static final double kMaxX = 160.0;
+
+    private static double rpmAtRange(double x) {
+        return 2000 + 12 * x + 0.02 * x * x - 0.0001 * x * x * x;
+    }
+
+    @Test
+    public void testMatchesBatchRegressionWithoutForgetting() {
+        Random random = new Random(1);
+        final int n = 60;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        RecursivePolynomialRegression recursive = new RecursivePolynomialRegression(3, 1.0, kMinX, kMaxX);
+        for (int i = 0; i < n; ++i) {
+            x[i] = kMinX + (kMaxX - kMinX) * random.nextDouble();
+            y[i] = rpmAtRange(x[i]) + random.nextGaussian() * 20;
+            recursive.addPoint(x[i], y[i]);
+        }
+        PolynomialRegression batch = new PolynomialRegression(x, y, 3);
+
+        for (double range = kMinX; range <= kMaxX; range += 1.0) {
+            assertEquals(batch.predict(range), recursive.predict(range), 1E-5);
+        }
+        // The recursive R^2 scores each point before it was fit, so it can only be a little worse.
+        assertTrue(recursive.R2() <= batch.R2());
+        assertEquals(batch.R2(), recursive.R2(), 0.01);
+    }
+
+    @Test
+    public void testPolynomialMatchesPredict() {
+        RecursivePolynomialRegression recursive = new RecursivePolynomialRegression(2, 0.98, kMinX, kMaxX);
+        for (double range = kMinX; range <= kMaxX; range += 5.0) {
+            recursive.addPoint(range, rpmAtRange(range));
+        }
+        Polynomial polynomial = recursive.toPolynomial(kMinX, kMaxX);
+        for (double range = kMinX; range <= kMaxX; range += 1.0) {
+            assertEquals(recursive.predict(range), polynomial.evaluate(range), 1E-6);
+        }
+    }
+
+    @Test
+    public void testR2IsUndefinedUntilTheFitIsDetermined() {
+        // A quadratic, so a degree 2 fit is exact once it has 3 points.
+        RecursivePolynomialRegression recursive = new RecursivePolynomialRegression(2, 1.0, kMinX, kMaxX);
+        for (int i = 0; i < 4; ++i) {
+            final double range = kMinX + 10 * i;
+            recursive.addPoint(range, 3000 + 5 * range + 0.01 * range * range);
+            assertTrue(Double.isNaN(recursive.R2()));
+        }
+        recursive.addPoint(kMaxX, 3000 + 5 * kMaxX + 0.01 * kMaxX * kMaxX);
+        assertEquals(1.0, recursive.R2(), 1E-6);
+    }
+}
@@ -0,0 +1,160 @@
+package com.team254.lib.util.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.Random;
+
+public class SetpointGeneratorTest {
+    private static final int kNumProfiles = 2000;
+
+    /**
+     * The SetpointGenerator as it was before it sampled through a MotionProfileLookup: it queries and trims the
+     * MotionProfile directly.
+     */
+    private static class ReferenceSetpointGenerator {
+        MotionProfile mProfile = null;
+        MotionProfileGoal mGoal = null;
+        MotionProfileConstraints mConstraints = null;
+
+        SetpointGenerator.Setpoint getSetpoint(MotionProfileConstraints constraints, MotionProfileGoal goal,
+                MotionState prev_state, double t) {
+            boolean regenerate = mConstraints == null || !mConstraints.equals(constraints) || mGoal == null
+                    || !mGoal.equals(goal) || mProfile == null;
+            if (!regenerate && !mProfile.isEmpty()) {
+                Optional<MotionState> expected_state = mProfile.stateByTime(prev_state.t());
+                regenerate = !expected_state.isPresent() || !expected_state.get().equals(prev_state);
+            }
+            if (regenerate) {
+                mConstraints = constraints;
+                mGoal = goal;
+                mProfile = MotionProfileGenerator.generateProfile(constraints, goal, prev_state);
+            }
+
+            SetpointGenerator.Setpoint rv = null;
+            if (!mProfile.isEmpty() && mProfile.isValid()) {
+                MotionState setpoint;
+                if (t > mProfile.endTime()) {
+                    setpoint = mProfile.endState();
+                } else if (t < mProfile.startTime()) {
+                    setpoint = mProfile.startState();
+                } else {
+                    setpoint = mProfile.stateByTime(t).get();
+                }
+                mProfile.trimBeforeTime(t);
+                rv = new SetpointGenerator.Setpoint(setpoint, mProfile.isEmpty() || mGoal.atGoalState(setpoint));
+            }
+
+            if (rv == null) {
+                rv = new SetpointGenerator.Setpoint(prev_state, true);
+            }
+
+            if (rv.final_setpoint) {
+                rv.motion_state = new MotionState(rv.motion_state.t(), mGoal.pos(),
+                        Math.signum(rv.motion_state.vel())
+                                * Math.max(mGoal.max_abs_vel(), Math.abs(rv.motion_state.vel())),
+                        0.0);
+            }
+            return rv;
+        }
+    }
+
+    private static void assertSameState(String message, MotionState expected, MotionState actual) {
+        assertEquals(message + " t", expected.t(), actual.t(), 0.0);
+        assertEquals(message + " pos", expected.pos(), actual.pos(), 0.0);
+        assertEquals(message + " vel", expected.vel(), actual.vel(), 0.0);
+        assertEquals(message + " acc", expected.acc(), actual.acc(), 0.0);
+    }
+
+    private static MotionProfile randomProfile(Random random) {
+        MotionProfileConstraints constraints = new MotionProfileConstraints(50 + 100 * random.nextDouble(),
+                50 + 100 * random.nextDouble());
+        MotionProfileGoal goal = new MotionProfileGoal(200 * random.nextDouble() - 100, 20 * random.nextDouble());
+        return MotionProfileGenerator.generateProfile(constraints, goal,
+                new MotionState(random.nextDouble(), 50 * random.nextDouble() - 25, 80 * random.nextDouble() - 40, 0));
+    }
+
+    @Test
+    public void testLookupTrimMatchesProfileTrim() {
+        Random random = new Random(1);
+        MotionProfileLookup.Sample sample = new MotionProfileLookup.Sample();
+        for (int k = 0; k < kNumProfiles; ++k) {
+            MotionProfile profile = randomProfile(random);
+            MotionProfileLookup lookup = new MotionProfileLookup(profile);
+            final double t0 = profile.startTime() - 0.1;
+            final double t1 = profile.endTime() + 0.1;
+            for (double t = t0; t <= t1; t += 0.05 * random.nextDouble()) {
+                profile.trimBeforeTime(t);
+                lookup.trimBeforeTime(t);
+                assertEquals(profile.isEmpty(), lookup.isEmpty());
+                if (profile.isEmpty()) {
+                    break;
+                }
+                assertEquals(profile.startTime(), lookup.startTime(), 0.0);
+                assertEquals(profile.startPos(), lookup.startPos(), 0.0);
+                final double query = t - 0.01 + 0.1 * random.nextDouble();
+                Optional<MotionState> expected = profile.stateByTime(query);
+                assertEquals(expected.isPresent(), lookup.stateByTime(query, sample));
+                if (expected.isPresent()) {
+                    assertSameState("stateByTime(" + query + ")", expected.get(), sample.toMotionState());
+                }
+                lookup.stateByTimeClamped(query, sample);
+                assertSameState("stateByTimeClamped(" + query + ")", profile.stateByTimeClamped(query),
+                        sample.toMotionState());
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesReferenceOnRandomProfiles() {
+        Random random = new Random(2);
+        for (int k = 0; k < kNumProfiles; ++k) {
+            MotionProfileConstraints constraints = new MotionProfileConstraints(50 + 100 * random.nextDouble(),
+                    50 + 100 * random.nextDouble());
+            MotionProfileGoal goal = new MotionProfileGoal(200 * random.nextDouble() - 100, 20 * random.nextDouble());
+            MotionState start = new MotionState(random.nextDouble(), 50 * random.nextDouble() - 25,
+                    80 * random.nextDouble() - 40, 0);
+            SetpointGenerator generator = new SetpointGenerator();
+            ReferenceSetpointGenerator reference = new ReferenceSetpointGenerator();
+            MotionState prev_state = start;
+            double t = start.t();
+            for (int i = 0; i < 400; ++i) {
+                t += 0.02 * random.nextDouble();
+                if (i == 200) {
+                    // Switch to a new goal part way through.
+                    goal = new MotionProfileGoal(200 * random.nextDouble() - 100, 20 * random.nextDouble());
+                } else if (random.nextInt(50) == 0) {
+                    // A disturbance: reset from a measured state.
+                    prev_state = new MotionState(prev_state.t(), prev_state.pos() + random.nextDouble(),
+                            prev_state.vel(), prev_state.acc());
+                }
+                SetpointGenerator.Setpoint expected = reference.getSetpoint(constraints, goal, prev_state, t);
+                SetpointGenerator.Setpoint actual = generator.getSetpoint(constraints, goal, prev_state, t);
+                final String message = "profile " + k + " step " + i;
+                assertEquals(message, expected.final_setpoint, actual.final_setpoint);
+                assertSameState(message, expected.motion_state, actual.motion_state);
+                prev_state = actual.motion_state;
+            }
+        }
+    }
+
+    @Test
+    public void testRegeneratesFromStateBeforeTrimmedStart() {
+        MotionProfileConstraints constraints = new MotionProfileConstraints(100.0, 100.0);
+        MotionProfileGoal goal = new MotionProfileGoal(100.0);
+        MotionState start = new MotionState(0.0, 0.0, 0.0, 0.0);
+        SetpointGenerator generator = new SetpointGenerator();
+        MotionState setpoint = generator.getSetpoint(constraints, goal, start, 0.5).motion_state;
+        MotionProfile profile = generator.getProfile();
+        // Following on from the last setpoint keeps the profile.
+        generator.getSetpoint(constraints, goal, setpoint, 0.6);
+        assertSame(profile, generator.getProfile());
+        // Everything before t = 0.6 has been trimmed, so the start state is no longer on the profile.
+        generator.getSetpoint(constraints, goal, start, 0.7);
+        assertNotSame(profile, generator.getProfile());
+    }
+}